@@ -0,0 +1,9 @@
+package combo;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncCombo {
+    <T> CompletableFuture<Void> publishFactAsync(String topicName, T fact);
+
+    <T> void subscribe(String topicName, Class<? extends T> classOfT, FactSubscriber<? super T> subscriber);
+}
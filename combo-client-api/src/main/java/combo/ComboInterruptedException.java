@@ -0,0 +1,7 @@
+package combo;
+
+public final class ComboInterruptedException extends RuntimeException {
+    public ComboInterruptedException(final InterruptedException cause) {
+        super(cause);
+    }
+}
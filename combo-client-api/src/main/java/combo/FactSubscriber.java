@@ -0,0 +1,15 @@
+package combo;
+
+/**
+ * Receives facts pushed from a topic, in the style of a reactive streams subscriber.
+ * <p>
+ * No facts are delivered until they are requested through the {@link FactSubscription} passed to
+ * {@link #onSubscribe(FactSubscription)}. Calls to a subscriber are never made concurrently.
+ */
+public interface FactSubscriber<T> {
+    void onSubscribe(FactSubscription subscription);
+
+    void onFact(T fact);
+
+    void onError(Throwable error);
+}
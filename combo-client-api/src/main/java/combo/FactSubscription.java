@@ -0,0 +1,7 @@
+package combo;
+
+public interface FactSubscription {
+    void request(long numberOfFacts);
+
+    void cancel();
+}
@@ -0,0 +1,32 @@
+package combo;
+
+import java.net.URI;
+
+import static combo.JdkHttpClient.jdkHttpClient;
+import static combo.RestTemplateHttpClient.restTemplateHttpClient;
+
+/**
+ * The {@link HttpClient} implementations benchmarks can be run against, by name.
+ */
+final class BenchmarkClients {
+
+    static HttpClient httpClient(final String name, final URI baseUri) {
+        switch (name) {
+            case "restTemplate":
+                return restTemplateHttpClient(baseUri);
+            case "jdk":
+                return jdkHttpClient(baseUri);
+            default:
+                throw new IllegalArgumentException("Unknown http client " + name);
+        }
+    }
+
+    static void close(final HttpClient httpClient) throws Exception {
+        if (httpClient instanceof AutoCloseable) {
+            ((AutoCloseable) httpClient).close();
+        }
+    }
+
+    private BenchmarkClients() {
+    }
+}
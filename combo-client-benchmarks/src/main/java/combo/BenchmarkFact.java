@@ -0,0 +1,61 @@
+package combo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fact of a few fields, which can be made small or large by the number of tags it carries.
+ */
+public final class BenchmarkFact {
+
+    private String name;
+    private long timestamp;
+    private double value;
+    private List<String> tags;
+
+    public BenchmarkFact() {
+    }
+
+    private BenchmarkFact(final String name, final long timestamp, final double value, final List<String> tags) {
+        this.name = name;
+        this.timestamp = timestamp;
+        this.value = value;
+        this.tags = tags;
+    }
+
+    static BenchmarkFact benchmarkFact(final String size) {
+        final int numberOfTags;
+        switch (size) {
+            case "small":
+                numberOfTags = 0;
+                break;
+            case "large":
+                numberOfTags = 100;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown fact size " + size);
+        }
+
+        final List<String> tags = new ArrayList<>(numberOfTags);
+        for (int i = 0; i < numberOfTags; i++) {
+            tags.add("tag-" + i);
+        }
+        return new BenchmarkFact("benchmark", 1234567890L, 12.5d, tags);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+}
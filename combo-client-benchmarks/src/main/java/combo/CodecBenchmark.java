@@ -0,0 +1,79 @@
+package combo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static combo.BenchmarkFact.benchmarkFact;
+import static combo.GsonFactCodec.gsonFactCodec;
+import static combo.JacksonFactCodec.cborFactCodec;
+import static combo.JacksonFactCodec.jacksonFactCodec;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * The cost of encoding and decoding one fact with each codec, for facts of different sizes decoded to a class of
+ * their own or to a {@code Map}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"gson", "jackson", "cbor"})
+    public String codec;
+
+    @Param({"small", "large"})
+    public String factSize;
+
+    @Param({"pojo", "map"})
+    public String factType;
+
+    private FactEncoder<Object> encoder;
+    private FactDecoder<?> decoder;
+    private Object fact;
+    private byte[] encodedFact;
+    private ByteArrayOutputStream body;
+
+    @SuppressWarnings("unchecked")
+    @Setup public void setUp() throws IOException {
+        final FactCodec factCodec = factCodec(codec);
+        final Class<?> factClass = "pojo".equals(factType) ? BenchmarkFact.class : Map.class;
+
+        body = new ByteArrayOutputStream();
+        factCodec.encoderFor(BenchmarkFact.class).encode(benchmarkFact(factSize), body);
+        encodedFact = body.toByteArray();
+
+        decoder = factCodec.decoderFor(factClass);
+        encoder = (FactEncoder<Object>) factCodec.encoderFor(factClass);
+        fact = decoder.read(new ByteArrayInputStream(encodedFact));
+    }
+
+    @Benchmark public Object decode() throws IOException {
+        return decoder.read(new ByteArrayInputStream(encodedFact));
+    }
+
+    @Benchmark public int encode() throws IOException {
+        body.reset();
+        encoder.encode(fact, body);
+        return body.size();
+    }
+
+    private static FactCodec factCodec(final String name) {
+        switch (name) {
+            case "gson":
+                return gsonFactCodec();
+            case "jackson":
+                return jacksonFactCodec();
+            case "cbor":
+                return cborFactCodec();
+            default:
+                throw new IllegalArgumentException("Unknown codec " + name);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package combo;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static combo.BenchmarkClients.httpClient;
+import static combo.BenchmarkFact.benchmarkFact;
+import static combo.ComboTestServer.comboTestServerBuilder;
+import static combo.HttpCombo.httpComboBuilder;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * How quickly facts can be consumed from a topic that always has a fact waiting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsumeBenchmark {
+
+    @Param({"restTemplate", "jdk"})
+    public String client;
+
+    @Param({"small", "large"})
+    public String factSize;
+
+    private ComboTestServer server;
+    private HttpClient httpClient;
+    private Stream<BenchmarkFact> facts;
+    private Iterator<BenchmarkFact> nextFacts;
+
+    @Setup public void setUp() throws Exception {
+        server = comboTestServerBuilder().withStandingFact(new Gson().toJson(benchmarkFact(factSize))).build();
+        httpClient = httpClient(client, server.baseUri());
+        facts = httpComboBuilder(httpClient).build().facts("benchmark", BenchmarkFact.class);
+        nextFacts = facts.iterator();
+    }
+
+    @TearDown public void tearDown() throws Exception {
+        facts.close();
+        BenchmarkClients.close(httpClient);
+        server.close();
+    }
+
+    @Benchmark public BenchmarkFact consumeFact() {
+        return nextFacts.next();
+    }
+}
@@ -0,0 +1,91 @@
+package combo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+
+import static combo.BenchmarkClients.httpClient;
+import static combo.BenchmarkFact.benchmarkFact;
+import static combo.ComboTestServer.comboTestServerBuilder;
+import static combo.HttpCombo.httpComboBuilder;
+import static combo.PublishBatching.publishBatching;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Publishing a fact, straight to the server and through the batching pipeline, measured as both throughput and
+ * the distribution of times to publish one fact.
+ * <p>
+ * Batches are only filled and lingered over by asynchronous publishes, so {@code publishBatchedFact} keeps up to
+ * {@link OutstandingPublishes#MAX_OUTSTANDING} of them outstanding per thread, waiting for the oldest before
+ * publishing another. {@code publishBlockingBatchedFact} waits for each fact instead, which sends it straight away.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublishBenchmark {
+
+    @Param({"restTemplate", "jdk"})
+    public String client;
+
+    @Param({"small", "large"})
+    public String factSize;
+
+    private ComboTestServer server;
+    private HttpClient httpClient;
+    private HttpCombo combo;
+    private HttpCombo batchingCombo;
+    private BenchmarkFact fact;
+
+    @Setup public void setUp() throws Exception {
+        server = comboTestServerBuilder().withStandingFact("{}").build();
+        httpClient = httpClient(client, server.baseUri());
+        combo = httpComboBuilder(httpClient).build();
+        batchingCombo = httpComboBuilder(httpClient).withPublishBatching(publishBatching()).build();
+        fact = benchmarkFact(factSize);
+    }
+
+    @TearDown public void tearDown() throws Exception {
+        BenchmarkClients.close(httpClient);
+        server.close();
+    }
+
+    @Benchmark public void publishFact() {
+        combo.publishFact("benchmark", fact);
+    }
+
+    @Benchmark @Threads(4) public void publishBatchedFact(final OutstandingPublishes outstanding) {
+        outstanding.add(batchingCombo.publishFactAsync("benchmark", fact));
+    }
+
+    @Benchmark @Threads(4) public void publishBlockingBatchedFact() {
+        batchingCombo.publishFact("benchmark", fact);
+    }
+
+    @State(Scope.Thread)
+    public static class OutstandingPublishes {
+
+        static final int MAX_OUTSTANDING = 256;
+
+        private final CompletableFuture<?>[] publishes = new CompletableFuture<?>[MAX_OUTSTANDING];
+        private int next;
+
+        void add(final CompletableFuture<?> publish) {
+            if (publishes[next] != null) {
+                publishes[next].join();
+            }
+            publishes[next] = publish;
+            next = (next + 1) % MAX_OUTSTANDING;
+        }
+
+        @TearDown public void awaitPublished() {
+            for (final CompletableFuture<?> publish : publishes) {
+                if (publish != null) {
+                    publish.join();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package combo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static combo.BenchmarkClients.httpClient;
+import static combo.BenchmarkFact.benchmarkFact;
+import static combo.ComboTestServer.comboTestServer;
+import static combo.HttpCombo.httpComboBuilder;
+import static combo.PollStrategy.noBackoff;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Publishing a fact and consuming it again through a subscription, against a server that queues facts for each
+ * subscription as a real one does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    @Param({"restTemplate", "jdk"})
+    public String client;
+
+    @Param({"small", "large"})
+    public String factSize;
+
+    private ComboTestServer server;
+    private HttpClient httpClient;
+    private HttpCombo combo;
+    private Stream<BenchmarkFact> facts;
+    private Iterator<BenchmarkFact> nextFacts;
+    private BenchmarkFact fact;
+
+    @Setup public void setUp() throws Exception {
+        server = comboTestServer();
+        httpClient = httpClient(client, server.baseUri());
+        combo = httpComboBuilder(httpClient).withPollStrategy(noBackoff()).build();
+        facts = combo.facts("benchmark", BenchmarkFact.class);
+        nextFacts = facts.iterator();
+        fact = benchmarkFact(factSize);
+    }
+
+    @TearDown public void tearDown() throws Exception {
+        facts.close();
+        BenchmarkClients.close(httpClient);
+        server.close();
+    }
+
+    @Benchmark public BenchmarkFact publishAndConsumeFact() {
+        combo.publishFact("benchmark", fact);
+        return nextFacts.next();
+    }
+}
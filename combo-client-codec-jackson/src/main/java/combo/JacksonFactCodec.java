@@ -0,0 +1,78 @@
+package combo;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
+
+/**
+ * Encodes and decodes facts with Jackson, using an {@link ObjectReader} and {@link ObjectWriter} resolved once per
+ * fact class.
+ * <p>
+ * {@link #jacksonFactCodec()} reads and writes json. {@link #cborFactCodec()} reads and writes CBOR, a compact binary
+ * form of json, which only suits topics where every publisher and consumer has agreed to use it.
+ * <p>
+ * An empty body decodes to null, as it does with {@link GsonFactCodec}, rather than failing.
+ */
+public final class JacksonFactCodec implements FactCodec {
+
+    public static final String APPLICATION_CBOR = "application/cbor";
+
+    private final ObjectMapper objectMapper;
+    private final String contentType;
+
+    private JacksonFactCodec(final ObjectMapper objectMapper, final String contentType) {
+        this.objectMapper = objectMapper;
+        this.contentType = contentType;
+    }
+
+    public static FactCodec jacksonFactCodec() {
+        return new JacksonFactCodec(new ObjectMapper().disable(FAIL_ON_UNKNOWN_PROPERTIES), APPLICATION_JSON);
+    }
+
+    public static FactCodec jacksonFactCodec(final ObjectMapper objectMapper) {
+        checkNotNull(objectMapper, "Cannot encode or decode facts without an object mapper");
+        return new JacksonFactCodec(objectMapper, APPLICATION_JSON);
+    }
+
+    public static FactCodec cborFactCodec() {
+        return new JacksonFactCodec(new ObjectMapper(new CBORFactory()).disable(FAIL_ON_UNKNOWN_PROPERTIES), APPLICATION_CBOR);
+    }
+
+    public static FactCodec cborFactCodec(final ObjectMapper objectMapper) {
+        checkNotNull(objectMapper, "Cannot encode or decode facts without an object mapper");
+        if (!(objectMapper.getFactory() instanceof CBORFactory)) {
+            throw new IllegalArgumentException("Cannot encode or decode CBOR facts with an object mapper for "
+                    + objectMapper.getFactory().getFormatName());
+        }
+        return new JacksonFactCodec(objectMapper, APPLICATION_CBOR);
+    }
+
+    @Override public String contentType() {
+        return contentType;
+    }
+
+    @Override public <T> FactDecoder<T> decoderFor(final Class<T> factClass) {
+        final ObjectReader reader = objectMapper.readerFor(factClass);
+        return body -> {
+            try (final JsonParser parser = reader.getFactory().createParser(body)) {
+                return parser.nextToken() == null ? null : reader.readValue(parser);
+            }
+        };
+    }
+
+    @Override public <T> FactEncoder<T> encoderFor(final Class<T> factClass) {
+        final ObjectWriter writer = objectMapper.writerFor(factClass).without(AUTO_CLOSE_TARGET);
+        return (fact, body) -> writer.writeValue(body, fact);
+    }
+
+    private static void checkNotNull(final Object argument, final String message) {
+        if (argument == null) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
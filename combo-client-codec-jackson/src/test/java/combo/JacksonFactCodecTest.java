@@ -0,0 +1,110 @@
+package combo;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static combo.JacksonFactCodec.cborFactCodec;
+import static combo.JacksonFactCodec.jacksonFactCodec;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public final class JacksonFactCodecTest {
+
+    @Test public void encodeAndDecodeJsonFacts() throws IOException {
+        //Given
+        final FactCodec codec = jacksonFactCodec();
+        final JacksonFact fact = new JacksonFact("field value", 42);
+
+        //When
+        final byte[] encoded = encode(codec, fact);
+
+        //Then
+        assertThat(codec.contentType(), is("application/json"));
+        assertThat(new String(encoded, UTF_8), is("{\"name\":\"field value\",\"count\":42}"));
+        assertThat(decode(codec, encoded), is(fact));
+    }
+
+    @Test public void ignoreUnknownJsonFields() throws IOException {
+        //Given
+        final FactCodec codec = jacksonFactCodec();
+
+        //When
+        final JacksonFact fact = decode(codec, "{\"name\":\"field value\",\"count\":42,\"other\":true}".getBytes(UTF_8));
+
+        //Then
+        assertThat(fact, is(new JacksonFact("field value", 42)));
+    }
+
+    @Test public void encodeAndDecodeCborFacts() throws IOException {
+        //Given
+        final FactCodec codec = cborFactCodec();
+        final JacksonFact fact = new JacksonFact("field value", 42);
+
+        //When
+        final byte[] encoded = encode(codec, fact);
+
+        //Then
+        assertThat(codec.contentType(), is("application/cbor"));
+        assertThat(decode(codec, encoded), is(fact));
+    }
+
+    @Test public void decodeEmptyBodiesAsNull() throws IOException {
+        //When
+        final JacksonFact jsonFact = decode(jacksonFactCodec(), new byte[0]);
+        final JacksonFact cborFact = decode(cborFactCodec(), new byte[0]);
+
+        //Then
+        assertThat(jsonFact, is(nullValue()));
+        assertThat(cborFact, is(nullValue()));
+    }
+
+    private static byte[] encode(final FactCodec codec, final JacksonFact fact) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        codec.encoderFor(JacksonFact.class).encode(fact, body);
+        return body.toByteArray();
+    }
+
+    private static JacksonFact decode(final FactCodec codec, final byte[] body) throws IOException {
+        return codec.decoderFor(JacksonFact.class).read(new ByteArrayInputStream(body));
+    }
+
+    public static final class JacksonFact {
+
+        private String name;
+        private int count;
+
+        public JacksonFact() {
+        }
+
+        JacksonFact(final String name, final int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            final JacksonFact that = (JacksonFact) o;
+
+            return count == that.count && !(name != null ? !name.equals(that.name) : that.name != null);
+        }
+
+        @Override public int hashCode() {
+            return 31 * (name != null ? name.hashCode() : 0) + count;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package combo;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Generates a json codec for each {@link ComboFact} class, reading and writing each field directly so that facts
+ * are not bound by reflection when they are consumed and published.
+ * <p>
+ * The codec for {@code Outer.Fact} is {@code Outer_Fact_ComboCodec} in the same package, a subclass of
+ * {@code GeneratedFactCodec} with a single {@code INSTANCE}. A class the codec cannot be generated for fails the
+ * build, naming what needs to change.
+ */
+@SupportedAnnotationTypes("combo.ComboFact")
+public final class ComboFactProcessor extends AbstractProcessor {
+
+    private static final String CODEC_SUFFIX = "_ComboCodec";
+    private static final String COMBO_FACT = "combo.ComboFact";
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+    private static final String JSON_READER = "com.google.gson.stream.JsonReader";
+    private static final String JSON_WRITER = "com.google.gson.stream.JsonWriter";
+    private static final String NULL_TOKEN = "com.google.gson.stream.JsonToken.NULL";
+
+    private static final Map<String, String> BOXES = new HashMap<>();
+
+    static {
+        BOXES.put("java.lang.Boolean", "boolean");
+        BOXES.put("java.lang.Byte", "byte");
+        BOXES.put("java.lang.Short", "short");
+        BOXES.put("java.lang.Integer", "int");
+        BOXES.put("java.lang.Long", "long");
+        BOXES.put("java.lang.Character", "char");
+        BOXES.put("java.lang.Float", "float");
+        BOXES.put("java.lang.Double", "double");
+    }
+
+    @Override public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment round) {
+        for (final TypeElement annotation : annotations) {
+            for (final Element element : round.getElementsAnnotatedWith(annotation)) {
+                try {
+                    generate(factClass(element));
+                } catch (final UnsupportedFact e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+                } catch (final IOException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "Cannot write the codec for @ComboFact: " + e.getMessage(), element);
+                }
+            }
+        }
+        return true;
+    }
+
+    private TypeElement factClass(final Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            throw new UnsupportedFact(element, "@ComboFact can only be put on classes");
+        }
+        final TypeElement factClass = (TypeElement) element;
+        if (factClass.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new UnsupportedFact(element, "@ComboFact classes cannot be private");
+        }
+        if (!factClass.getTypeParameters().isEmpty()) {
+            throw new UnsupportedFact(element, "@ComboFact classes cannot be generic");
+        }
+        if (factClass.getNestingKind() != NestingKind.TOP_LEVEL
+                && (factClass.getNestingKind() != NestingKind.MEMBER || !factClass.getModifiers().contains(Modifier.STATIC))) {
+            throw new UnsupportedFact(element, "@ComboFact classes must be top level or static nested classes");
+        }
+        if (!factClass.getSuperclass().toString().equals(Object.class.getName())) {
+            throw new UnsupportedFact(element, "@ComboFact classes cannot extend other classes");
+        }
+        return factClass;
+    }
+
+    private void generate(final TypeElement factClass) throws IOException {
+        final List<Field> fields = fields(factClass);
+        final ExecutableElement constructor = constructor(factClass, fields);
+        final String packageName = processingEnv.getElementUtils().getPackageOf(factClass).getQualifiedName().toString();
+        final String codecName = codecSimpleName(factClass);
+        final String factType = factClass.getQualifiedName().toString();
+
+        final StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append(format("/**%n * Generated from {@link %s}, do not edit.%n */%n", factType));
+        source.append(format("public final class %s extends combo.GeneratedFactCodec<%s> {%n%n", codecName, factType));
+        source.append(format("    public static final %1$s INSTANCE = new %1$s();%n%n", codecName));
+        if (constructor == null) {
+            source.append(format("    private static final %1$s BLANK = new %1$s();%n%n", factType));
+        }
+        source.append(format("    private %s() {%n    }%n%n", codecName));
+        appendRead(source, factType, fields, constructor);
+        source.append('\n');
+        appendWrite(source, factType, fields);
+        source.append("}\n");
+
+        final String qualifiedName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+        try (final Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, factClass).openWriter()) {
+            writer.write(source.toString());
+        }
+    }
+
+    private void appendRead(final StringBuilder source,
+                            final String factType,
+                            final List<Field> fields,
+                            final ExecutableElement constructor) {
+        if (constructor == null) {
+            appendReadInto(source, factType, fields);
+            source.append(format("    private %s readFields(final %s reader, final %s fact) throws java.io.IOException {%n", factType, JSON_READER, factType));
+        } else {
+            source.append(format("    @Override public %s readFact(final %s reader) throws java.io.IOException {%n", factType, JSON_READER));
+            for (final Field field : fields) {
+                source.append(format("        %s %s = %s;%n", field.type, field.local(), field.defaultValue()));
+            }
+        }
+
+        source.append("        reader.beginObject();\n");
+        source.append("        while (reader.hasNext()) {\n");
+        source.append("            switch (reader.nextName()) {\n");
+        for (final Field field : fields) {
+            final String target = constructor == null ? "fact." + field.name : field.local();
+            source.append(format("                case \"%s\":%n", escape(field.jsonName)));
+            if (field.isPrimitive()) {
+                //Gson leaves a primitive as it was when its value is null
+                source.append(format("                    if (reader.peek() == %s) {%n", NULL_TOKEN));
+                source.append("                        reader.nextNull();\n");
+                source.append("                    } else {\n");
+                source.append(format("                        %s = %s;%n", target, field.read()));
+                source.append("                    }\n");
+            } else {
+                source.append(format("                    %s = reader.peek() == %s ? readNull(reader) : %s;%n",
+                        target, NULL_TOKEN, field.read()));
+            }
+            source.append("                    break;\n");
+        }
+        source.append("                default:\n");
+        source.append("                    reader.skipValue();\n");
+        source.append("            }\n");
+        source.append("        }\n");
+        source.append("        reader.endObject();\n");
+
+        if (constructor == null) {
+            source.append("        return fact;\n");
+        } else {
+            final List<String> arguments = new ArrayList<>();
+            for (final VariableElement parameter : constructor.getParameters()) {
+                arguments.add(parameter.getSimpleName() + "_");
+            }
+            source.append(format("        return new %s(%s);%n", factType, String.join(", ", arguments)));
+        }
+        source.append("    }\n");
+    }
+
+    /**
+     * Facts created without a constructor can be read into a new instance or, resetting their fields first, into
+     * one being reused. Strings, boxed primitives and enums cannot change, so they are reset to the defaults of a
+     * single blank fact. Nested facts can, so they are reset to the defaults of a new fact, or the default of one
+     * reused fact would be shared with every other.
+     */
+    private void appendReadInto(final StringBuilder source, final String factType, final List<Field> fields) {
+        source.append(format("    @Override public %s readFact(final %s reader) throws java.io.IOException {%n", factType, JSON_READER));
+        source.append(format("        return readFields(reader, new %s());%n", factType));
+        source.append("    }\n\n");
+
+        source.append("    @Override public boolean readsInto() {\n");
+        source.append("        return true;\n");
+        source.append("    }\n\n");
+
+        source.append(format("    @Override public %1$s readFactInto(final %2$s reader, final %1$s fact) throws java.io.IOException {%n", factType, JSON_READER));
+        if (fields.stream().anyMatch(field -> field.kind == Kind.FACT)) {
+            source.append(format("        final %1$s defaults = new %1$s();%n", factType));
+        }
+        for (final Field field : fields) {
+            source.append(format("        fact.%1$s = %2$s.%1$s;%n", field.name, field.kind == Kind.FACT ? "defaults" : "BLANK"));
+        }
+        source.append("        return readFields(reader, fact);\n");
+        source.append("    }\n\n");
+    }
+
+    private void appendWrite(final StringBuilder source, final String factType, final List<Field> fields) {
+        source.append(format("    @Override public void writeFact(final %s writer, final %s fact) throws java.io.IOException {%n", JSON_WRITER, factType));
+        source.append("        writer.beginObject();\n");
+        for (final Field field : fields) {
+            if (field.isPrimitive()) {
+                source.append(format("        writer.name(\"%s\");%n", escape(field.jsonName)));
+                source.append(format("        %s;%n", field.write(field.access)));
+            } else {
+                source.append(format("        final %s %s = %s;%n", field.type, field.local(), field.access));
+                source.append(format("        if (%s != null) {%n", field.local()));
+                source.append(format("            writer.name(\"%s\");%n", escape(field.jsonName)));
+                source.append(format("            %s;%n", field.write(field.local())));
+                source.append("        }\n");
+            }
+        }
+        source.append("        writer.endObject();\n");
+        source.append("    }\n");
+    }
+
+    private List<Field> fields(final TypeElement factClass) {
+        final List<Field> fields = new ArrayList<>();
+        for (final VariableElement field : ElementFilter.fieldsIn(factClass.getEnclosedElements())) {
+            final Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            fields.add(new Field(field, kindOf(field), jsonName(field), access(factClass, field)));
+        }
+        return fields;
+    }
+
+    /**
+     * @return the constructor taking every field, or null if the fact is created with its no argument constructor
+     */
+    private ExecutableElement constructor(final TypeElement factClass, final List<Field> fields) {
+        ExecutableElement noArgs = null;
+        for (final ExecutableElement constructor : ElementFilter.constructorsIn(factClass.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            if (constructor.getParameters().isEmpty()) {
+                noArgs = constructor;
+            } else if (takesEvery(constructor, fields)) {
+                return constructor;
+            }
+        }
+
+        if (noArgs == null) {
+            throw new UnsupportedFact(factClass, "@ComboFact classes need a constructor whose parameters are named "
+                    + "and typed as their fields, or a constructor without parameters");
+        }
+        for (final Field field : fields) {
+            final Set<Modifier> modifiers = field.element.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+                throw new UnsupportedFact(field.element, "Fields of @ComboFact classes created without a constructor "
+                        + "taking every field must be neither private nor final");
+            }
+        }
+        return null;
+    }
+
+    private boolean takesEvery(final ExecutableElement constructor, final List<Field> fields) {
+        if (constructor.getParameters().size() != fields.size()) {
+            return false;
+        }
+        for (final VariableElement parameter : constructor.getParameters()) {
+            boolean matched = false;
+            for (final Field field : fields) {
+                if (field.name.equals(parameter.getSimpleName().toString())
+                        && processingEnv.getTypeUtils().isSameType(field.element.asType(), parameter.asType())) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Kind kindOf(final VariableElement field) {
+        final TypeMirror type = field.asType();
+        if (type.getKind().isPrimitive()) {
+            return Kind.PRIMITIVE;
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            final String name = type.toString();
+            if (name.equals(String.class.getName())) {
+                return Kind.STRING;
+            }
+            if (BOXES.containsKey(name)) {
+                return Kind.BOXED;
+            }
+            final TypeElement typeElement = (TypeElement) ((DeclaredType) type).asElement();
+            if (typeElement.getKind() == ElementKind.ENUM) {
+                for (final VariableElement constant : ElementFilter.fieldsIn(typeElement.getEnclosedElements())) {
+                    if (constant.getKind() == ElementKind.ENUM_CONSTANT && annotation(constant, SERIALIZED_NAME) != null) {
+                        throw new UnsupportedFact(field, "Enums in @ComboFact classes must be written by the names of "
+                                + "their constants, " + name + "." + constant.getSimpleName() + " is renamed");
+                    }
+                }
+                return Kind.ENUM;
+            }
+            if (annotation(typeElement, COMBO_FACT) != null) {
+                return Kind.FACT;
+            }
+        }
+        throw new UnsupportedFact(field, "Fields of @ComboFact classes must be Strings, primitives, boxed primitives, "
+                + "enums or other @ComboFact classes, not " + type);
+    }
+
+    private String access(final TypeElement factClass, final VariableElement field) {
+        final String name = field.getSimpleName().toString();
+        if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+            return "fact." + name;
+        }
+
+        final String capitalised = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (final ExecutableElement method : ElementFilter.methodsIn(factClass.getEnclosedElements())) {
+            final String methodName = method.getSimpleName().toString();
+            final boolean getter = methodName.equals("get" + capitalised)
+                    || (methodName.equals("is" + capitalised) && field.asType().getKind() == TypeKind.BOOLEAN);
+            if (getter
+                    && method.getParameters().isEmpty()
+                    && !method.getModifiers().contains(Modifier.PRIVATE)
+                    && !method.getModifiers().contains(Modifier.STATIC)
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())) {
+                return "fact." + methodName + "()";
+            }
+        }
+        throw new UnsupportedFact(field, "Private fields of @ComboFact classes need a getter, get" + capitalised + "()");
+    }
+
+    private static String jsonName(final VariableElement field) {
+        final AnnotationMirror serializedName = annotation(field, SERIALIZED_NAME);
+        if (serializedName != null) {
+            for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : serializedName.getElementValues().entrySet()) {
+                if (value.getKey().getSimpleName().contentEquals("value")) {
+                    return (String) value.getValue().getValue();
+                }
+            }
+        }
+        return field.getSimpleName().toString();
+    }
+
+    private static AnnotationMirror annotation(final Element element, final String annotationType) {
+        for (final AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private static String codecSimpleName(final TypeElement factClass) {
+        final StringBuilder name = new StringBuilder(factClass.getSimpleName());
+        Element enclosing = factClass.getEnclosingElement();
+        while (enclosing.getKind().isClass() || enclosing.getKind().isInterface()) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name.append(CODEC_SUFFIX).toString();
+    }
+
+    private static String escape(final String name) {
+        return name.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private enum Kind {
+        PRIMITIVE, BOXED, STRING, ENUM, FACT
+    }
+
+    private final class Field {
+
+        private final VariableElement element;
+        private final Kind kind;
+        private final String name;
+        private final String jsonName;
+        private final String access;
+        private final String type;
+
+        private Field(final VariableElement element, final Kind kind, final String jsonName, final String access) {
+            this.element = element;
+            this.kind = kind;
+            this.name = element.getSimpleName().toString();
+            this.jsonName = jsonName;
+            this.access = access;
+            this.type = element.asType().toString();
+        }
+
+        private boolean isPrimitive() {
+            return kind == Kind.PRIMITIVE;
+        }
+
+        /**
+         * Suffixed so that locals cannot clash with the reader, writer and fact.
+         */
+        private String local() {
+            return name + "_";
+        }
+
+        private String defaultValue() {
+            if (kind != Kind.PRIMITIVE) {
+                return "null";
+            }
+            return type.equals("boolean") ? "false" : "0";
+        }
+
+        private String read() {
+            switch (kind) {
+                case STRING:
+                    return "reader.nextString()";
+                case ENUM:
+                    return format("readEnum(reader, %s.class)", type);
+                case FACT:
+                    return format("%s.INSTANCE.readFact(reader)", codecOf(element.asType()));
+                case BOXED:
+                    return format("%s.valueOf(%s)", type, readPrimitive(BOXES.get(type)));
+                default:
+                    return readPrimitive(type);
+            }
+        }
+
+        private String write(final String value) {
+            switch (kind) {
+                case STRING:
+                    return format("writer.value(%s)", value);
+                case ENUM:
+                    return format("writer.value(%s.name())", value);
+                case FACT:
+                    return format("%s.INSTANCE.writeFact(writer, %s)", codecOf(element.asType()), value);
+                case BOXED:
+                    return writePrimitive(BOXES.get(type), format("%s.%sValue()", value, BOXES.get(type)));
+                default:
+                    return writePrimitive(type, value);
+            }
+        }
+
+        private String readPrimitive(final String primitive) {
+            switch (primitive) {
+                case "boolean":
+                    return "reader.nextBoolean()";
+                case "byte":
+                    return "(byte) reader.nextInt()";
+                case "short":
+                    return "(short) reader.nextInt()";
+                case "int":
+                    return "reader.nextInt()";
+                case "long":
+                    return "reader.nextLong()";
+                case "char":
+                    return "readChar(reader)";
+                case "float":
+                    return "(float) reader.nextDouble()";
+                default:
+                    return "reader.nextDouble()";
+            }
+        }
+
+        private String writePrimitive(final String primitive, final String value) {
+            switch (primitive) {
+                case "char":
+                    return format("writer.value(String.valueOf(%s))", value);
+                case "float":
+                    //As a Float, so that it is written as Gson writes it rather than widened to a double
+                    return format("writer.value(Float.valueOf(%s))", value);
+                default:
+                    return format("writer.value(%s)", value);
+            }
+        }
+
+        private String codecOf(final TypeMirror factType) {
+            final TypeElement factClass = (TypeElement) ((DeclaredType) factType).asElement();
+            final String packageName = processingEnv.getElementUtils().getPackageOf(factClass).getQualifiedName().toString();
+            return packageName.isEmpty() ? codecSimpleName(factClass) : packageName + "." + codecSimpleName(factClass);
+        }
+    }
+
+    private static final class UnsupportedFact extends RuntimeException {
+
+        private final Element element;
+
+        private UnsupportedFact(final Element element, final String message) {
+            super(message);
+            this.element = element;
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package chatbot;
 
 import combo.Combo;
+import combo.ComboFact;
+import combo.FactView;
+import combo.HttpCombo;
 
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import static chatbot.ChatBot.ChatMessage.chatMessage;
-import static combo.HttpCombo.httpCombo;
+import static combo.HttpCombo.httpComboBuilder;
 import static combo.RestTemplateHttpClient.restTemplateHttpClient;
 import static java.lang.String.format;
 import static java.net.URI.create;
@@ -17,10 +20,11 @@ final class ChatBot {
     private static final String NAME = "chat-bot";
 
     public static void main(final String[] args) {
-        final Combo combo = httpCombo(restTemplateHttpClient(create("http://combo-squirrel.herokuapp.com")));
+        final HttpCombo combo = httpComboBuilder(restTemplateHttpClient(create("http://combo-squirrel.herokuapp.com"))).build();
 
-        combo.facts(CHAT_TOPIC, ChatMessage.class)
+        combo.factViews(CHAT_TOPIC, ChatMessage.class)
                 .filter(ignoringMyself())
+                .map(FactView::getFact)
                 .forEach(replyWithGreeting(combo));
     }
 
@@ -28,10 +32,11 @@ final class ChatBot {
         return message -> combo.publishFact(CHAT_TOPIC, chatMessage(NAME, format("Hello %s, you said '%s'", message.getWho(), message.getSays())));
     }
 
-    private static Predicate<ChatMessage> ignoringMyself() {
-        return message -> !NAME.equals(message.getWho());
+    private static Predicate<FactView<ChatMessage>> ignoringMyself() {
+        return message -> !NAME.equals(message.getString("who"));
     }
 
+    @ComboFact
     static final class ChatMessage {
 
         private final String who;
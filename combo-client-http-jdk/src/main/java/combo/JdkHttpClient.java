@@ -0,0 +1,368 @@
+package combo;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static combo.HttpResponse.Status.NO_CONTENT;
+import static java.net.URI.create;
+import static java.net.http.HttpClient.Version.HTTP_2;
+
+/**
+ * A {@link HttpClient} built on {@code java.net.http}, which multiplexes concurrent requests over a few connections
+ * (one per server when HTTP/2 is available) and waits for responses on a single selector thread rather than a thread
+ * per request.
+ * <p>
+ * Share one {@code java.net.http.HttpClient} between instances with {@link Builder#withHttpClient} to share its
+ * connections and selector thread as well.
+ */
+public final class JdkHttpClient implements AsyncHttpClient {
+
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String APPLICATION_JSON = "application/json";
+
+    private final java.net.http.HttpClient httpClient;
+    private final String baseUri;
+    private final Duration requestTimeout;
+    private final RequestLimiter requestLimiter;
+    private final ComboMetrics metrics;
+
+    private JdkHttpClient(final java.net.http.HttpClient httpClient,
+                          final URI baseUri,
+                          final Duration requestTimeout,
+                          final RequestLimiter requestLimiter,
+                          final ComboMetrics metrics) {
+        this.httpClient = httpClient;
+        this.baseUri = baseUri.toString();
+        this.requestTimeout = requestTimeout;
+        this.requestLimiter = requestLimiter;
+        this.metrics = metrics;
+    }
+
+    @Override public <T> HttpResponse<T> get(final URI path, final Class<T> responseType) {
+        return join(getAsync(path, responseType));
+    }
+
+    @Override public <T> HttpResponse<T> post(final URI path, final Object requestBody, final Class<T> responseType) {
+        return join(postAsync(path, requestBody, responseType));
+    }
+
+    @Override public <T> HttpResponse<T> post(final URI path,
+                                              final byte[] requestBody,
+                                              final String contentType,
+                                              final Class<T> responseType) {
+        return join(postAsync(path, requestBody, contentType, responseType));
+    }
+
+    @Override public <T> HttpResponse<T> post(final URI path,
+                                              final BodyWriter requestBody,
+                                              final String contentType,
+                                              final Class<T> responseType) {
+        return join(postAsync(path, requestBody, contentType, responseType));
+    }
+
+    @Override public <T> CompletableFuture<HttpResponse<T>> getAsync(final URI path, final Class<T> responseType) {
+        return send(request(path).GET().build(), responseType);
+    }
+
+    /**
+     * Reads the body on the calling thread as it arrives. The response stream is fed by the client's executor, so
+     * reading it on one of the executor's threads could leave nothing to feed it.
+     * <p>
+     * The request keeps its place among the concurrent requests allowed until the body has been read or closed, as
+     * the response completes once its headers arrive.
+     */
+    @Override public <T> HttpResponse<T> get(final URI path, final BodyReader<T> bodyReader) {
+        final HttpRequest request = request(path).GET().build();
+        final long start = System.nanoTime();
+        final java.net.http.HttpResponse<InputStream> response = join(timed(start, requestLimiter.submitUntilReleased(release ->
+                httpClient.sendAsync(request, responseInfo -> BodySubscribers.mapping(BodySubscribers.ofInputStream(),
+                        body -> new ReleasingInputStream(body, release))))));
+        try (final InputStream body = response.body()) {
+            checkStatus(request, response);
+            return new HttpResponse<>(response.statusCode(), hasBody(response) ? bodyReader.read(body) : null);
+        } catch (final IOException e) {
+            throw new HttpClientException(e);
+        }
+    }
+
+    /**
+     * Reads the response body once all of it has arrived, so that reading it does not block the thread that
+     * completes the response.
+     */
+    @Override public <T> CompletableFuture<HttpResponse<T>> getAsync(final URI path, final BodyReader<T> bodyReader) {
+        final HttpRequest request = request(path).GET().build();
+        return exchange(request, BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    checkStatus(request, response);
+                    try {
+                        return new HttpResponse<>(response.statusCode(), hasBody(response) && response.body().length > 0
+                                ? bodyReader.read(new ByteArrayInputStream(response.body()))
+                                : null);
+                    } catch (final IOException e) {
+                        throw new HttpClientException(e);
+                    }
+                });
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> postAsync(final URI path, final Object requestBody, final Class<T> responseType) {
+        if (!(requestBody instanceof String)) {
+            throw new IllegalArgumentException("Request bodies must be serialised to a String before posting them");
+        }
+
+        return send(request(path)
+                .header(CONTENT_TYPE, APPLICATION_JSON)
+                .POST(BodyPublishers.ofString((String) requestBody))
+                .build(), responseType);
+    }
+
+    @Override public <T> CompletableFuture<HttpResponse<T>> postAsync(final URI path,
+                                                                     final byte[] requestBody,
+                                                                     final String contentType,
+                                                                     final Class<T> responseType) {
+        return send(request(path)
+                .header(CONTENT_TYPE, contentType)
+                .POST(BodyPublishers.ofByteArray(requestBody))
+                .build(), responseType);
+    }
+
+    /**
+     * Writes the body into a pooled buffer, which the request is sent from and which goes back to the pool once the
+     * response arrives.
+     */
+    @Override public <T> CompletableFuture<HttpResponse<T>> postAsync(final URI path,
+                                                                     final BodyWriter requestBody,
+                                                                     final String contentType,
+                                                                     final Class<T> responseType) {
+        checkResponseType(responseType);
+
+        final PooledBuffer buffer = PooledBuffer.acquire();
+        try {
+            requestBody.write(buffer);
+        } catch (final IOException e) {
+            buffer.release();
+            throw new HttpClientException(e);
+        }
+
+        final HttpRequest request = request(path)
+                .header(CONTENT_TYPE, contentType)
+                .POST(BodyPublishers.ofByteArray(buffer.array(), 0, buffer.size()))
+                .build();
+        return exchange(request, BodyHandlers.ofString())
+                .whenComplete((response, error) -> buffer.release())
+                .thenApply(response -> toHttpResponse(request, response, responseType));
+    }
+
+    public static HttpClient jdkHttpClient(final URI baseUri) {
+        return jdkHttpClientBuilder(baseUri).build();
+    }
+
+    public static Builder jdkHttpClientBuilder(final URI baseUri) {
+        if (baseUri == null) {
+            throw new IllegalArgumentException("Cannot create a http client without a base uri");
+        }
+        return new Builder(baseUri);
+    }
+
+    private HttpRequest.Builder request(final URI path) {
+        final HttpRequest.Builder request = HttpRequest.newBuilder(create(baseUri + path));
+        return requestTimeout == null ? request : request.timeout(requestTimeout);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> send(final HttpRequest request, final Class<T> responseType) {
+        checkResponseType(responseType);
+
+        return exchange(request, BodyHandlers.ofString())
+                .thenApply(response -> toHttpResponse(request, response, responseType));
+    }
+
+    private <B> CompletableFuture<java.net.http.HttpResponse<B>> exchange(final HttpRequest request,
+                                                                         final BodyHandler<B> bodyHandler) {
+        final long start = System.nanoTime();
+        return timed(start, requestLimiter.submit(() -> httpClient.sendAsync(request, bodyHandler)));
+    }
+
+    private <B> CompletableFuture<java.net.http.HttpResponse<B>> timed(final long start,
+                                                                      final CompletableFuture<java.net.http.HttpResponse<B>> response) {
+        if (metrics == ComboMetrics.NONE) {
+            return response;
+        }
+        return response.whenComplete((completedResponse, error) ->
+                metrics.requested(completedResponse != null ? completedResponse.statusCode() : 0, System.nanoTime() - start));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> HttpResponse<T> toHttpResponse(final HttpRequest request,
+                                                      final java.net.http.HttpResponse<String> response,
+                                                      final Class<T> responseType) {
+        checkStatus(request, response);
+
+        final String body = response.body();
+        return new HttpResponse<>(response.statusCode(),
+                responseType == Void.class || body == null || body.isEmpty() ? null : (T) body);
+    }
+
+    private static void checkStatus(final HttpRequest request, final java.net.http.HttpResponse<?> response) {
+        if (response.statusCode() >= 400) {
+            throw new HttpClientException(new UnexpectedStatusException(request.method(), request.uri(), response.statusCode()));
+        }
+    }
+
+    private static boolean hasBody(final java.net.http.HttpResponse<?> response) {
+        return response.statusCode() != NO_CONTENT
+                && response.headers().firstValueAsLong(CONTENT_LENGTH).orElse(-1L) != 0L;
+    }
+
+    private static void checkResponseType(final Class<?> responseType) {
+        if (responseType != String.class && responseType != Void.class) {
+            throw new IllegalArgumentException("Responses can only be read as a String or ignored with Void");
+        }
+    }
+
+    private static <R> R join(final CompletableFuture<R> response) {
+        try {
+            return response.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof HttpClientException) {
+                throw (HttpClientException) e.getCause();
+            }
+            throw new HttpClientException(e.getCause());
+        }
+    }
+
+    /**
+     * Runs its release once the body has been read to the end or closed, whichever comes first.
+     */
+    private static final class ReleasingInputStream extends FilterInputStream {
+
+        private final Runnable release;
+
+        private ReleasingInputStream(final InputStream body, final Runnable release) {
+            super(body);
+            this.release = release;
+        }
+
+        @Override public int read() throws IOException {
+            return releasedAtEnd(super.read());
+        }
+
+        @Override public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            return releasedAtEnd(super.read(bytes, offset, length));
+        }
+
+        @Override public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                release.run();
+            }
+        }
+
+        private int releasedAtEnd(final int read) {
+            if (read < 0) {
+                release.run();
+            }
+            return read;
+        }
+    }
+
+    public static final class Builder {
+
+        private final URI baseUri;
+        private java.net.http.HttpClient httpClient;
+        private java.net.http.HttpClient.Version version = HTTP_2;
+        private Duration connectTimeout;
+        private Duration requestTimeout;
+        private Executor executor;
+        private int maxConcurrentRequests = Integer.MAX_VALUE;
+        private ComboMetrics metrics = ComboMetrics.NONE;
+
+        private Builder(final URI baseUri) {
+            this.baseUri = baseUri;
+        }
+
+        /**
+         * Use an existing client, sharing its connections and selector thread. The version, connect timeout and
+         * executor of this builder are ignored.
+         */
+        public Builder withHttpClient(final java.net.http.HttpClient httpClient) {
+            this.httpClient = httpClient;
+            return this;
+        }
+
+        public Builder withVersion(final java.net.http.HttpClient.Version version) {
+            this.version = version;
+            return this;
+        }
+
+        public Builder withConnectTimeout(final Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        public Builder withRequestTimeout(final Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * Executor that completes responses. Defaults to the {@code java.net.http} default, a cached thread pool.
+         */
+        public Builder withExecutor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Limit the number of requests in flight at any time, further requests wait in turn. Over HTTP/1.1 this
+         * limits the number of connections opened, over HTTP/2 the number of streams multiplexed.
+         */
+        public Builder withMaxConcurrentRequests(final int maxConcurrentRequests) {
+            if (maxConcurrentRequests < 1) {
+                throw new IllegalArgumentException("Must allow at least one request at a time");
+            }
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        /**
+         * Metrics told the status and latency of every request. Defaults to {@link ComboMetrics#NONE}.
+         */
+        public Builder withMetrics(final ComboMetrics metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("Cannot record metrics without metrics, use ComboMetrics.NONE to record none");
+            }
+            this.metrics = metrics;
+            return this;
+        }
+
+        public JdkHttpClient build() {
+            return new JdkHttpClient(httpClient != null ? httpClient : newHttpClient(),
+                    baseUri, requestTimeout, new RequestLimiter(maxConcurrentRequests), metrics);
+        }
+
+        private java.net.http.HttpClient newHttpClient() {
+            final java.net.http.HttpClient.Builder builder = java.net.http.HttpClient.newBuilder().version(version);
+            if (connectTimeout != null) {
+                builder.connectTimeout(connectTimeout);
+            }
+            if (executor != null) {
+                builder.executor(executor);
+            }
+            return builder.build();
+        }
+    }
+}
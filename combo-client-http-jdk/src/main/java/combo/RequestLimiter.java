@@ -0,0 +1,98 @@
+package combo;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of asynchronous requests in flight without blocking, requests over the limit wait in a queue
+ * and are started in turn as others complete.
+ */
+final class RequestLimiter {
+
+    private final int maxConcurrentRequests;
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private final Queue<Runnable> waitingRequests = new ConcurrentLinkedQueue<>();
+
+    RequestLimiter(final int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    <T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> request) {
+        if (maxConcurrentRequests == Integer.MAX_VALUE) {
+            return request.get();
+        }
+
+        return submitUntilReleased(release -> request.get().whenComplete((result, error) -> release.run()));
+    }
+
+    /**
+     * Submits a request that holds on to its place after its response completes, as when the response body is still
+     * being read, until it runs the release it is given. The place is released regardless if the request fails.
+     * Running the release more than once has no further effect.
+     */
+    <T> CompletableFuture<T> submitUntilReleased(final Function<Runnable, CompletableFuture<T>> request) {
+        if (maxConcurrentRequests == Integer.MAX_VALUE) {
+            return request.apply(() -> {
+            });
+        }
+
+        final CompletableFuture<T> response = new CompletableFuture<>();
+        waitingRequests.add(() -> start(request, response));
+        startWaitingRequests();
+        return response;
+    }
+
+    private <T> void start(final Function<Runnable, CompletableFuture<T>> request, final CompletableFuture<T> response) {
+        final AtomicBoolean released = new AtomicBoolean();
+        final Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                complete();
+            }
+        };
+
+        final CompletableFuture<T> inFlight;
+        try {
+            inFlight = request.apply(release);
+        } catch (final Throwable t) {
+            release.run();
+            response.completeExceptionally(t);
+            return;
+        }
+
+        inFlight.whenComplete((result, error) -> {
+            if (error != null) {
+                release.run();
+                response.completeExceptionally(error);
+            } else {
+                response.complete(result);
+            }
+        });
+    }
+
+    private void complete() {
+        requestsInFlight.decrementAndGet();
+        startWaitingRequests();
+    }
+
+    private void startWaitingRequests() {
+        while (!waitingRequests.isEmpty()) {
+            final int inFlight = requestsInFlight.get();
+            if (inFlight >= maxConcurrentRequests) {
+                return;
+            }
+            if (requestsInFlight.compareAndSet(inFlight, inFlight + 1)) {
+                final Runnable waitingRequest = waitingRequests.poll();
+                if (waitingRequest == null) {
+                    requestsInFlight.decrementAndGet();
+                } else {
+                    waitingRequest.run();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package combo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static combo.JdkHttpClient.jdkHttpClient;
+import static combo.JdkHttpClient.jdkHttpClientBuilder;
+import static java.net.URI.create;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.rules.ExpectedException.none;
+
+public final class JdkHttpClientTest {
+
+    @Rule public final ExpectedException thrown = none();
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final CountDownLatch restOfBodySent = new CountDownLatch(1);
+
+    private HttpServer server;
+
+    @Before public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/fact", exchange -> respond(exchange, 200, "{\"field\":\"value\"}"));
+        server.createContext("/nothing", exchange -> respond(exchange, 204, null));
+        server.createContext("/missing", exchange -> respond(exchange, 404, null));
+        server.createContext("/facts", exchange -> {
+            requests.add(exchange.getRequestHeaders().getFirst("Content-Type") + " "
+                    + new String(exchange.getRequestBody().readAllBytes(), UTF_8));
+            respond(exchange, 200, null);
+        });
+        server.createContext("/slow-fact", exchange -> {
+            exchange.sendResponseHeaders(200, 2);
+            try (final OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write('{');
+                responseBody.flush();
+                restOfBodySent.await(5, SECONDS);
+                responseBody.write('}');
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.setExecutor(newCachedThreadPool());
+        server.start();
+    }
+
+    @After public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test public void getsResponseBody() {
+        //When
+        final HttpResponse<String> response = jdkHttpClient(baseUri()).get(create("/fact"), String.class);
+
+        //Then
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getBody(), is("{\"field\":\"value\"}"));
+    }
+
+    @Test public void readsResponseBodyFromStream() throws Exception {
+        //Given
+        final BodyReader<String> bodyReader = body -> new String(body.readAllBytes(), UTF_8).toUpperCase();
+
+        //When
+        final HttpResponse<String> response = jdkHttpClient(baseUri()).get(create("/fact"), bodyReader);
+        final HttpResponse<String> asyncResponse = jdkHttpClientBuilder(baseUri()).build()
+                .getAsync(create("/fact"), bodyReader).get(5, SECONDS);
+
+        //Then
+        assertThat(response.getBody(), is("{\"FIELD\":\"VALUE\"}"));
+        assertThat(asyncResponse.getBody(), is("{\"FIELD\":\"VALUE\"}"));
+    }
+
+    @Test public void readsResponseBodyOnTheCallingThread() {
+        //Given
+        final List<Thread> readers = new CopyOnWriteArrayList<>();
+        final BodyReader<String> bodyReader = body -> {
+            readers.add(Thread.currentThread());
+            return new String(body.readAllBytes(), UTF_8);
+        };
+
+        //When
+        final HttpResponse<String> response = jdkHttpClientBuilder(baseUri())
+                .withExecutor(newSingleThreadExecutor())
+                .build()
+                .get(create("/fact"), bodyReader);
+
+        //Then
+        assertThat(response.getBody(), is("{\"field\":\"value\"}"));
+        assertThat(readers, contains(Thread.currentThread()));
+    }
+
+    @Test public void noContentHasNoBody() {
+        //When
+        final HttpResponse<String> response = jdkHttpClient(baseUri()).get(create("/nothing"), String.class);
+
+        //Then
+        assertThat(response.getStatusCode(), is(204));
+        assertThat(response.getBody(), is(nullValue()));
+    }
+
+    @Test public void postsJson() {
+        //When
+        jdkHttpClient(baseUri()).post(create("/facts"), "{\"field\":\"value\"}", Void.class);
+
+        //Then
+        assertThat(requests, contains("application/json {\"field\":\"value\"}"));
+    }
+
+    @Test public void postsWrittenBodies() throws Exception {
+        //Given
+        final JdkHttpClient httpClient = jdkHttpClientBuilder(baseUri()).build();
+
+        //When
+        httpClient.post(create("/facts"), body -> body.write("fact 1".getBytes(UTF_8)), "text/plain", Void.class);
+        httpClient.postAsync(create("/facts"), body -> body.write("fact 2".getBytes(UTF_8)), "text/plain", Void.class)
+                .get(5, SECONDS);
+
+        //Then
+        assertThat(requests, contains("text/plain fact 1", "text/plain fact 2"));
+    }
+
+    @Test public void throwsExceptionWhenResponseIsAnError() {
+        //Expect
+        thrown.expect(HttpClientException.class);
+        thrown.expectMessage("responded with status 404");
+
+        //When
+        jdkHttpClient(baseUri()).get(create("/missing"), String.class);
+    }
+
+    @Test public void limitsConcurrentRequests() throws Exception {
+        //Given
+        final JdkHttpClient httpClient = jdkHttpClientBuilder(baseUri()).withMaxConcurrentRequests(1).build();
+
+        //When
+        final CompletableFuture<?>[] responses = new CompletableFuture<?>[10];
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = httpClient.postAsync(create("/facts"), "fact " + i, Void.class);
+        }
+        allOf(responses).get(5, SECONDS);
+
+        //Then
+        assertThat(requests.size(), is(10));
+    }
+
+    @Test public void limitsConcurrentRequestsUntilStreamedBodiesAreRead() throws Exception {
+        //Given
+        final JdkHttpClient httpClient = jdkHttpClientBuilder(baseUri()).withMaxConcurrentRequests(1).build();
+
+        //And
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CompletableFuture<HttpResponse<String>> slowFact = supplyAsync(() -> httpClient.get(create("/slow-fact"), body -> {
+            reading.countDown();
+            return new String(body.readAllBytes(), UTF_8);
+        }));
+        assertThat(reading.await(5, SECONDS), is(true));
+
+        //When
+        final CompletableFuture<HttpResponse<Void>> posted = httpClient.postAsync(create("/facts"), "fact", Void.class);
+        Thread.sleep(200L);
+
+        //Then
+        assertThat(requests.size(), is(0));
+
+        //When
+        restOfBodySent.countDown();
+
+        //Then
+        assertThat(slowFact.get(5, SECONDS).getBody(), is("{}"));
+        posted.get(5, SECONDS);
+        assertThat(requests.size(), is(1));
+    }
+
+    private java.net.URI baseUri() {
+        return create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            final byte[] bytes = body.getBytes(UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (final OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+}
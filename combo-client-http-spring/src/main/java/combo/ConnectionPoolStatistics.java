@@ -0,0 +1,50 @@
+package combo;
+
+public final class ConnectionPoolStatistics {
+
+    private final int leased;
+    private final int available;
+    private final int pending;
+    private final int max;
+
+    ConnectionPoolStatistics(final int leased, final int available, final int pending, final int max) {
+        this.leased = leased;
+        this.available = available;
+        this.pending = pending;
+        this.max = max;
+    }
+
+    /**
+     * @return connections currently in use by a request
+     */
+    public int getLeased() {
+        return leased;
+    }
+
+    /**
+     * @return idle connections kept alive for reuse
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * @return requests waiting for a connection
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    @Override public String toString() {
+        return "ConnectionPoolStatistics{" +
+                "leased=" + leased +
+                ", available=" + available +
+                ", pending=" + pending +
+                ", max=" + max +
+                '}';
+    }
+}
@@ -1,40 +1,163 @@
 package combo;
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static java.net.URI.create;
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.NO_CONTENT;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
-public final class RestTemplateHttpClient implements HttpClient {
+public final class RestTemplateHttpClient implements HttpClient, Closeable {
 
     private final RestTemplate restTemplate;
+    private final AbsoluteUris absoluteUris;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final IdleConnectionEvictor idleConnectionEvictor;
+    private final ComboMetrics metrics;
 
-    private RestTemplateHttpClient(final RestTemplate restTemplate) {
+    private RestTemplateHttpClient(final RestTemplate restTemplate,
+                                   final URI baseUri,
+                                   final PoolingHttpClientConnectionManager connectionManager,
+                                   final IdleConnectionEvictor idleConnectionEvictor,
+                                   final ComboMetrics metrics) {
         this.restTemplate = restTemplate;
+        this.absoluteUris = new AbsoluteUris(baseUri);
+        this.connectionManager = connectionManager;
+        this.idleConnectionEvictor = idleConnectionEvictor;
+        this.metrics = metrics;
     }
 
     @Override public <T> HttpResponse<T> get(final URI path, final Class<T> classOfT) {
+        final long start = System.nanoTime();
         try {
-            final ResponseEntity<T> response = restTemplate.getForEntity(path, classOfT);
-            return new HttpResponse<>(response.getStatusCode().value(), response.getBody());
+            final ResponseEntity<T> response = restTemplate.getForEntity(absoluteUris.resolve(path), classOfT);
+            return requested(start, new HttpResponse<>(response.getStatusCode().value(), response.getBody()));
         } catch (final HttpClientErrorException e) {
-            throw new HttpClientException(e);
+            throw new HttpClientException(failed(start, e));
+        } catch (final RuntimeException e) {
+            throw failed(start, e);
+        }
+    }
+
+    @Override public <T> HttpResponse<T> get(final URI path, final BodyReader<T> bodyReader) {
+        final long start = System.nanoTime();
+        try {
+            return requested(start, restTemplate.execute(absoluteUris.resolve(path), GET, null, response -> {
+                final int statusCode = response.getRawStatusCode();
+                return new HttpResponse<>(statusCode, hasBody(response) ? bodyReader.read(response.getBody()) : null);
+            }));
+        } catch (final HttpClientErrorException e) {
+            throw new HttpClientException(failed(start, e));
+        } catch (final RuntimeException e) {
+            throw failed(start, e);
         }
     }
 
     @Override public <T> HttpResponse<T> post(final URI path, final Object requestBody, final Class<T> responseType) {
-        final ResponseEntity<T> response = restTemplate.postForEntity(path, jsonEntity(requestBody), responseType);
-        return new HttpResponse<>(response.getStatusCode().value(), response.getBody());
+        final long start = System.nanoTime();
+        try {
+            final ResponseEntity<T> response = restTemplate.postForEntity(absoluteUris.resolve(path), jsonEntity(requestBody), responseType);
+            return requested(start, new HttpResponse<>(response.getStatusCode().value(), response.getBody()));
+        } catch (final RuntimeException e) {
+            throw failed(start, e);
+        }
+    }
+
+    @Override public <T> HttpResponse<T> post(final URI path,
+                                              final byte[] requestBody,
+                                              final String contentType,
+                                              final Class<T> responseType) {
+        final long start = System.nanoTime();
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(contentType));
+        try {
+            final ResponseEntity<T> response = restTemplate.postForEntity(absoluteUris.resolve(path), new HttpEntity<>(requestBody, headers), responseType);
+            return requested(start, new HttpResponse<>(response.getStatusCode().value(), response.getBody()));
+        } catch (final RuntimeException e) {
+            throw failed(start, e);
+        }
+    }
+
+    /**
+     * Writes the body straight to the connection as the request is sent, in chunks, rather than buffering it first.
+     */
+    @Override public <T> HttpResponse<T> post(final URI path,
+                                              final BodyWriter requestBody,
+                                              final String contentType,
+                                              final Class<T> responseType) {
+        final long start = System.nanoTime();
+        final ResponseExtractor<T> bodyExtractor = responseType == Void.class
+                ? null
+                : new HttpMessageConverterExtractor<>(responseType, restTemplate.getMessageConverters());
+        try {
+            return requested(start, restTemplate.execute(absoluteUris.resolve(path), POST, request -> {
+                request.getHeaders().setContentType(MediaType.parseMediaType(contentType));
+                if (request instanceof StreamingHttpOutputMessage) {
+                    ((StreamingHttpOutputMessage) request).setBody(requestBody::write);
+                } else {
+                    requestBody.write(request.getBody());
+                }
+            }, response -> new HttpResponse<>(response.getRawStatusCode(), bodyExtractor == null ? null : bodyExtractor.extractData(response))));
+        } catch (final RuntimeException e) {
+            throw failed(start, e);
+        }
+    }
+
+    /**
+     * Finds the status of the {@link HttpStatusCodeException} that {@link RestTemplate} fails with on error statuses.
+     */
+    @Override public int statusOf(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpStatusCodeException) {
+                return ((HttpStatusCodeException) cause).getStatusCode().value();
+            }
+        }
+        return HttpClient.super.statusOf(failure);
+    }
+
+    private <T> HttpResponse<T> requested(final long start, final HttpResponse<T> response) {
+        metrics.requested(response.getStatusCode(), System.nanoTime() - start);
+        return response;
+    }
+
+    private <E extends RuntimeException> E failed(final long start, final E e) {
+        metrics.requested(e instanceof HttpStatusCodeException ? ((HttpStatusCodeException) e).getStatusCode().value() : 0,
+                System.nanoTime() - start);
+        return e;
+    }
+
+    private static boolean hasBody(final ClientHttpResponse response) throws IOException {
+        return response.getRawStatusCode() != NO_CONTENT.value() && response.getHeaders().getContentLength() != 0;
     }
 
     private static HttpEntity<Object> jsonEntity(final Object body) {
@@ -43,37 +166,163 @@ public final class RestTemplateHttpClient implements HttpClient {
         }}));
     }
 
-    public static HttpClient restTemplateHttpClient(final URI baseUri) {
-        return new RestTemplateHttpClient(restTemplate(baseUri));
+    public ConnectionPoolStatistics poolStatistics() {
+        final PoolStats totalStats = connectionManager.getTotalStats();
+        return new ConnectionPoolStatistics(totalStats.getLeased(), totalStats.getAvailable(), totalStats.getPending(), totalStats.getMax());
     }
 
-    private static RestTemplate restTemplate(final URI baseUri) {
-        final RestTemplate restTemplate = new RestTemplate(singletonList(new StringHttpMessageConverter()));
-        restTemplate.getInterceptors().add((request, body, execution)
-                -> execution.execute(new BaseUriRequestDecorator(request, baseUri), body));
+    @Override public void close() {
+        if (idleConnectionEvictor != null) {
+            idleConnectionEvictor.shutdown();
+        }
+        connectionManager.close();
+    }
+
+    public static RestTemplateHttpClient restTemplateHttpClient(final URI baseUri) {
+        return restTemplateHttpClientBuilder(baseUri).build();
+    }
+
+    public static Builder restTemplateHttpClientBuilder(final URI baseUri) {
+        if (baseUri == null) {
+            throw new IllegalArgumentException("Cannot create a http client without a base uri");
+        }
+        return new Builder(baseUri);
+    }
+
+    private static RestTemplate restTemplate(final ClientHttpRequestFactory requestFactory) {
+        final RestTemplate restTemplate = new RestTemplate(asList(new StringHttpMessageConverter(), new ByteArrayHttpMessageConverter()));
+        restTemplate.setRequestFactory(requestFactory);
         return restTemplate;
     }
 
-    private static final class BaseUriRequestDecorator implements HttpRequest {
+    /**
+     * Builds a client whose requests share a pool of keep-alive connections, so polling and publishing reuse warm
+     * connections instead of opening one per request.
+     */
+    public static final class Builder {
 
-        private final HttpRequest request;
         private final URI baseUri;
+        private int maxConnections = 20;
+        private int maxConnectionsPerRoute = 20;
+        private int connectTimeout = 5000;
+        private int socketTimeout = 60000;
+        private int connectionRequestTimeout = 5000;
+        private long maxIdleTime = 30000;
+        private ComboMetrics metrics = ComboMetrics.NONE;
 
-        private BaseUriRequestDecorator(final HttpRequest request, final URI baseUri) {
-            this.request = request;
+        private Builder(final URI baseUri) {
             this.baseUri = baseUri;
         }
 
-        @Override public HttpMethod getMethod() {
-            return request.getMethod();
+        public Builder withMaxConnections(final int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder withMaxConnectionsPerRoute(final int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+
+        public Builder withConnectTimeout(final int connectTimeoutMillis) {
+            this.connectTimeout = connectTimeoutMillis;
+            return this;
+        }
+
+        public Builder withSocketTimeout(final int socketTimeoutMillis) {
+            this.socketTimeout = socketTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * How long a request waits for a connection from the pool when all of them are in use.
+         */
+        public Builder withConnectionRequestTimeout(final int connectionRequestTimeoutMillis) {
+            this.connectionRequestTimeout = connectionRequestTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Close pooled connections that have been idle for longer than this, zero to keep them until the server
+         * closes them.
+         */
+        public Builder withMaxIdleTime(final long maxIdleTimeMillis) {
+            this.maxIdleTime = maxIdleTimeMillis;
+            return this;
         }
 
-        @Override public URI getURI() {
-            return create(baseUri + request.getURI().toString());
+        /**
+         * Metrics told the status and latency of every request. Defaults to {@link ComboMetrics#NONE}.
+         */
+        public Builder withMetrics(final ComboMetrics metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("Cannot record metrics without metrics, use ComboMetrics.NONE to record none");
+            }
+            this.metrics = metrics;
+            return this;
         }
 
-        @Override public HttpHeaders getHeaders() {
-            return request.getHeaders();
+        public RestTemplateHttpClient build() {
+            final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(maxConnections);
+            connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+            final IdleConnectionEvictor idleConnectionEvictor = maxIdleTime > 0
+                    ? new IdleConnectionEvictor(connectionManager, maxIdleTime, MILLISECONDS)
+                    : null;
+            if (idleConnectionEvictor != null) {
+                idleConnectionEvictor.start();
+            }
+
+            final CloseableHttpClient httpClient = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectTimeout(connectTimeout)
+                            .setSocketTimeout(socketTimeout)
+                            .setConnectionRequestTimeout(connectionRequestTimeout)
+                            .build())
+                    .build();
+
+            //Stream request bodies rather than buffer them, so facts are written straight to the connection
+            final HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+            requestFactory.setBufferRequestBody(false);
+
+            return new RestTemplateHttpClient(
+                    restTemplate(requestFactory),
+                    baseUri,
+                    connectionManager,
+                    idleConnectionEvictor,
+                    metrics);
+        }
+    }
+
+    /**
+     * Resolves paths against the base uri, remembering the paths it has seen. Subscriptions are polled at the same
+     * path over and over, so most requests are sent without building a uri.
+     */
+    private static final class AbsoluteUris {
+
+        private static final int MAX_CACHED_URIS = 1024;
+
+        private final String baseUri;
+        private final ConcurrentMap<URI, URI> absoluteUris = new ConcurrentHashMap<>();
+
+        private AbsoluteUris(final URI baseUri) {
+            this.baseUri = baseUri.toString();
+        }
+
+        private URI resolve(final URI path) {
+            final URI absoluteUri = absoluteUris.get(path);
+            if (absoluteUri != null) {
+                return absoluteUri;
+            }
+
+            if (absoluteUris.size() >= MAX_CACHED_URIS) {
+                absoluteUris.clear();
+            }
+            final URI resolved = create(baseUri + path);
+            absoluteUris.put(path, resolved);
+            return resolved;
         }
     }
 }
@@ -0,0 +1,38 @@
+package combo;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import static combo.ComboServerRule.ComboServerResponse.ok;
+import static combo.RestTemplateHttpClient.restTemplateHttpClientBuilder;
+import static java.lang.String.format;
+import static java.net.URI.create;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public final class RestTemplateHttpClientTest {
+
+    @Rule public final ComboServerRule comboServer = new ComboServerRule(8080);
+
+    @Test public void reusesPooledConnections() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        comboServer.whenFactIsPublished(topicName).thenRespondWith(ok());
+
+        //And
+        try (final RestTemplateHttpClient httpClient = restTemplateHttpClientBuilder(create("http://localhost:8080"))
+                .withMaxConnections(4)
+                .build()) {
+
+            //When
+            for (int i = 0; i < 5; i++) {
+                httpClient.post(create(format("/topics/%s/facts", topicName)), "{}", String.class);
+            }
+
+            //Then
+            assertThat(httpClient.poolStatistics().getLeased(), is(0));
+            assertThat(httpClient.poolStatistics().getAvailable(), is(1));
+            assertThat(httpClient.poolStatistics().getMax(), is(4));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package combo;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Limits the requests in flight to a limit that grows while requests are quick and shrinks as soon as they slow
+ * down or fail, so that the limit settles around the concurrency the server handles best.
+ * <p>
+ * The limit only grows while at least half of it is in use, so a quiet period does not leave it far above what
+ * was last seen to work.
+ */
+final class AimdLimiter implements Limiter {
+
+    private static final double BACKOFF_RATIO = 0.9d;
+    private static final double MIN_LIMIT = 1.0d;
+
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final long maxWaitMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    //Guarded by lock
+    private double limit;
+    private int inFlight;
+
+    AimdLimiter(final int initialLimit, final int maxLimit, final long latencyThresholdMillis, final long maxWaitMillis) {
+        if (initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException(format(
+                    "Limits must allow at least one request, and start no higher than they can go, not %d and %d", initialLimit, maxLimit));
+        }
+        if (latencyThresholdMillis < 1L) {
+            throw new IllegalArgumentException("Requests cannot be expected to take less than 1ms");
+        }
+        if (maxWaitMillis < 0L) {
+            throw new IllegalArgumentException("Cannot wait a negative amount of time for a request to be allowed");
+        }
+        this.limit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override public void acquire() {
+        lock.lock();
+        try {
+            long remainingNanos = MILLISECONDS.toNanos(maxWaitMillis);
+            while (inFlight >= (int) limit) {
+                if (remainingNanos <= 0L) {
+                    throw new LimitExceededException(format(
+                            "Request not allowed within %dms by a limit of %d requests in flight", maxWaitMillis, (int) limit));
+                }
+                remainingNanos = released.awaitNanos(remainingNanos);
+            }
+            inFlight++;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ComboInterruptedException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override public void release(final long latencyNanos, final boolean succeeded) {
+        lock.lock();
+        try {
+            if (!succeeded || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+            } else if (inFlight * 2 >= limit && limit < maxLimit) {
+                limit = Math.min(maxLimit, limit + 1.0d);
+                //Room for one more as well as the request released
+                released.signal();
+            }
+            inFlight--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package combo;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * A {@link HttpClient} that can also make requests without blocking the calling thread.
+ * <p>
+ * {@link HttpCombo} uses these methods for pushed subscriptions, merged topics and asynchronous publishing when
+ * its client implements this interface, so waiting for a response does not occupy a thread.
+ */
+public interface AsyncHttpClient extends HttpClient {
+
+    <T> CompletableFuture<HttpResponse<T>> getAsync(URI path, Class<T> responseType);
+
+    <T> CompletableFuture<HttpResponse<T>> postAsync(URI path, Object requestBody, Class<T> responseType);
+
+    /**
+     * Posts an encoded body of the given content type, see {@link HttpClient#post(URI, byte[], String, Class)}. By
+     * default json bodies are posted asynchronously as a String and other bodies are posted on the calling thread.
+     */
+    default <T> CompletableFuture<HttpResponse<T>> postAsync(final URI path,
+                                                             final byte[] requestBody,
+                                                             final String contentType,
+                                                             final Class<T> responseType) {
+        if (contentType.startsWith(FactCodec.APPLICATION_JSON)) {
+            return postAsync(path, new String(requestBody, UTF_8), responseType);
+        }
+        return completedFuture(post(path, requestBody, contentType, responseType));
+    }
+
+    /**
+     * Posts a body written by the writer, see {@link HttpClient#post(URI, BodyWriter, String, Class)}. The body is
+     * written before this returns. By default it is written to a byte array and posted as
+     * {@link #postAsync(URI, byte[], String, Class)} posts it.
+     */
+    default <T> CompletableFuture<HttpResponse<T>> postAsync(final URI path,
+                                                             final BodyWriter requestBody,
+                                                             final String contentType,
+                                                             final Class<T> responseType) {
+        return postAsync(path, BodyWriters.writeAllBytes(requestBody), contentType, responseType);
+    }
+
+    /**
+     * Reads the response body with the given reader once the response arrives, see
+     * {@link HttpClient#get(URI, BodyReader)}. By default the body is read as a String first, which only suits
+     * text bodies, as for {@link HttpClient#get(URI, BodyReader)}.
+     */
+    default <T> CompletableFuture<HttpResponse<T>> getAsync(final URI path, final BodyReader<T> bodyReader) {
+        return getAsync(path, String.class).thenApply(response -> BodyReaders.readBody(response, bodyReader));
+    }
+
+}
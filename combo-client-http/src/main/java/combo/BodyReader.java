@@ -0,0 +1,12 @@
+package combo;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a response body straight from the response stream, so that it need not be held in memory as a String first.
+ */
+@FunctionalInterface
+public interface BodyReader<T> {
+    T read(InputStream body) throws IOException;
+}
@@ -0,0 +1,36 @@
+package combo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+final class BodyReaders {
+
+    static <T> HttpResponse<T> readBody(final HttpResponse<String> response, final BodyReader<T> bodyReader) {
+        if (response.getBody() == null) {
+            return response.withBody(null);
+        }
+
+        try {
+            return response.withBody(bodyReader.read(new ByteArrayInputStream(response.getBody().getBytes(UTF_8))));
+        } catch (final IOException e) {
+            throw new HttpClientException(e);
+        }
+    }
+
+    static byte[] readAllBytes(final InputStream body) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private BodyReaders() {
+    }
+}
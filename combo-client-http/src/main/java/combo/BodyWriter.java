@@ -0,0 +1,15 @@
+package combo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a request body straight to the request stream, so that it need not be held in memory as a String first.
+ * <p>
+ * A body may be written more than once, for instance when a request is retried, and must write the same bytes each
+ * time.
+ */
+@FunctionalInterface
+public interface BodyWriter {
+    void write(OutputStream body) throws IOException;
+}
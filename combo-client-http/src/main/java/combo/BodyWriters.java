@@ -0,0 +1,21 @@
+package combo;
+
+import java.io.IOException;
+
+final class BodyWriters {
+
+    static byte[] writeAllBytes(final BodyWriter bodyWriter) {
+        final PooledBuffer buffer = PooledBuffer.acquire();
+        try {
+            bodyWriter.write(buffer);
+            return buffer.toByteArray();
+        } catch (final IOException e) {
+            throw new HttpClientException(e);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private BodyWriters() {
+    }
+}
@@ -0,0 +1,25 @@
+package combo;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a fact class for which {@code combo-client-codegen} generates a json codec at compile time. Json codecs
+ * in {@link HttpCombo} use the generated codec for the class instead of binding it by reflection.
+ * <p>
+ * The class must not be private, generic, a non-static inner class or extend another class. Its fields, other than
+ * static and transient ones, must be Strings, primitives and their boxes, enums or other {@code @ComboFact} classes,
+ * and each must be readable directly or through a getter. The class is created either through a constructor whose parameters are
+ * named after its fields, or through a no argument constructor followed by setting each field directly.
+ * <p>
+ * Facts are encoded as a default {@code Gson} would: fields named as they are declared or by Gson's
+ * {@code SerializedName}, null fields left out and enums written by the names of their constants.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ComboFact {
+}
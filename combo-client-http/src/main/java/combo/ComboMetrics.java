@@ -0,0 +1,60 @@
+package combo;
+
+/**
+ * Told what a combo and its http client are doing, and how long it took, so that it can be measured.
+ * <p>
+ * Methods are called on the thread doing the work, often the thread polling for facts, so they should record
+ * quickly and must not block. Every method does nothing by default, implementations need only override what they
+ * are interested in. {@link #NONE}, the default, records nothing.
+ */
+public interface ComboMetrics {
+
+    ComboMetrics NONE = new ComboMetrics() {
+    };
+
+    /**
+     * @param latencyNanos the time taken to create the subscription on the combo server
+     */
+    default void subscribed(final String topicName, final long latencyNanos) {
+    }
+
+    /**
+     * @param hadFact      whether the poll returned a fact, or no content
+     * @param latencyNanos the time taken by the poll, including decoding any fact
+     */
+    default void polled(final String topicName, final boolean hadFact, final long latencyNanos) {
+    }
+
+    /**
+     * @param latencyNanos the time taken to decode a fact as it was read from a response
+     */
+    default void decoded(final String topicName, final long latencyNanos) {
+    }
+
+    /**
+     * @param latencyNanos the time taken to post a fact to the combo server
+     */
+    default void published(final String topicName, final long latencyNanos) {
+    }
+
+    /**
+     * A fact from the topic was thrown away, or replaced by a newer one, because the consumer fell behind.
+     */
+    default void dropped(final String topicName) {
+    }
+
+    /**
+     * Subscribing to, polling or publishing to the topic failed.
+     */
+    default void failed(final String topicName, final Throwable error) {
+    }
+
+    /**
+     * Called by http clients for each request they make, whichever topic it is for.
+     *
+     * @param statusCode   the status of the response, or 0 if there was no response
+     * @param latencyNanos the time taken for the request, including any time spent waiting to be sent
+     */
+    default void requested(final int statusCode, final long latencyNanos) {
+    }
+}
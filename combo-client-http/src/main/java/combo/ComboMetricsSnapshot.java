@@ -0,0 +1,43 @@
+package combo;
+
+import java.util.Map;
+
+/**
+ * What has happened on each topic, and to each request, since metrics started being recorded.
+ */
+public final class ComboMetricsSnapshot {
+
+    private final Map<String, TopicMetricsSnapshot> topics;
+    private final long failedRequests;
+    private final LatencySnapshot requestLatency;
+
+    ComboMetricsSnapshot(final Map<String, TopicMetricsSnapshot> topics,
+                         final long failedRequests,
+                         final LatencySnapshot requestLatency) {
+        this.topics = topics;
+        this.failedRequests = failedRequests;
+        this.requestLatency = requestLatency;
+    }
+
+    /**
+     * @return the metrics of each topic that anything has happened on, by topic name
+     */
+    public Map<String, TopicMetricsSnapshot> getTopics() {
+        return topics;
+    }
+
+    /**
+     * @return the number of requests that got no response or responded with a status of 400 or above
+     */
+    public long getFailedRequests() {
+        return failedRequests;
+    }
+
+    public LatencySnapshot getRequestLatency() {
+        return requestLatency;
+    }
+
+    @Override public String toString() {
+        return "topics=" + topics + ", failedRequests=" + failedRequests + ", requestLatency=[" + requestLatency + "]";
+    }
+}
@@ -0,0 +1,62 @@
+package combo;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Options for dropping facts a subscription has already seen, such as facts seen again after resubscribing.
+ * <p>
+ * Each fact is fingerprinted with a 64 bit hash of its body, or of the value of an id field in its json, and
+ * dropped before it is decoded if the fingerprint is among those of the most recent facts. Only a bounded window of
+ * fingerprints is kept, so a fact seen longer ago than that is not recognised. Two different facts with the same
+ * fingerprint are very unlikely, but the later one would be dropped.
+ * <p>
+ * Instances are immutable, each {@code with} method returns a copy with the given option changed.
+ */
+public final class Deduplication {
+
+    private static final int DEFAULT_WINDOW = 4096;
+
+    private final byte[] idField;
+    private final int window;
+
+    private Deduplication(final byte[] idField, final int window) {
+        this.idField = idField;
+        this.window = window;
+    }
+
+    /**
+     * Fingerprint facts by their whole body, as sent by the server.
+     */
+    public static Deduplication deduplicateByBody() {
+        return new Deduplication(null, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Fingerprint facts by the value of a top level field of their json. Facts without the field, or that are not
+     * json, are fingerprinted by their whole body.
+     */
+    public static Deduplication deduplicateByField(final String idField) {
+        if (idField == null) {
+            throw new IllegalArgumentException("Cannot deduplicate facts by a null field");
+        }
+        return new Deduplication(idField.getBytes(UTF_8), DEFAULT_WINDOW);
+    }
+
+    /**
+     * The number of most recent fingerprints to remember. Defaults to 4096, taking 24 bytes each.
+     */
+    public Deduplication withWindow(final int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Deduplication must remember at least one fact");
+        }
+        return new Deduplication(idField, window);
+    }
+
+    byte[] idField() {
+        return idField;
+    }
+
+    int window() {
+        return window;
+    }
+}
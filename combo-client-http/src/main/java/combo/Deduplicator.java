@@ -0,0 +1,151 @@
+package combo;
+
+import java.io.ByteArrayInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Remembers the fingerprints of the most recent facts of one subscription, to tell when a fact is seen again.
+ * <p>
+ * Fingerprints are kept in a ring, oldest first, and indexed by an open addressing hash set of primitive longs, so
+ * remembering a fact allocates nothing. Safe to use from several threads.
+ */
+final class Deduplicator {
+
+    /**
+     * Decoded in place of a fact seen before.
+     */
+    static final Object DUPLICATE = new Object();
+
+    //Marks an empty slot of the hash set, fingerprints of zero are stored as one
+    private static final long EMPTY = 0L;
+
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final byte[] idField;
+    private final long[] ring;
+    private final long[] slots;
+    private final int mask;
+    private int oldest;
+    private int size;
+
+    Deduplicator(final Deduplication deduplication) {
+        this.idField = deduplication.idField();
+        this.ring = new long[deduplication.window()];
+        this.slots = new long[Integer.highestOneBit(deduplication.window() * 2 - 1) << 1];
+        this.mask = slots.length - 1;
+    }
+
+    /**
+     * Remembers the fact, dropping the oldest fingerprint if the window is full.
+     *
+     * @return true if the fact was among the most recent facts already
+     */
+    synchronized boolean seenBefore(final byte[] body) {
+        final long fingerprint = fingerprint(body);
+        if (contains(fingerprint)) {
+            return true;
+        }
+
+        if (size == ring.length) {
+            remove(ring[oldest]);
+        } else {
+            size++;
+        }
+        ring[oldest] = fingerprint;
+        oldest = (oldest + 1) % ring.length;
+        add(fingerprint);
+        return false;
+    }
+
+    /**
+     * @param decoder the decoder for facts, or null for String facts
+     * @return a decoder that decodes facts not seen before and gives {@link #DUPLICATE} for the others
+     */
+    FactDecoder<Object> decoderFor(final FactDecoder<?> decoder) {
+        return body -> {
+            final byte[] bytes = BodyReaders.readAllBytes(body);
+            if (seenBefore(bytes)) {
+                return DUPLICATE;
+            }
+            return decoder == null ? new String(bytes, UTF_8) : decoder.read(new ByteArrayInputStream(bytes));
+        };
+    }
+
+    private long fingerprint(final byte[] body) {
+        if (idField != null) {
+            final long field = JsonFields.field(body, 0, body.length, idField);
+            if (field != JsonFields.NOT_FOUND) {
+                return hash(body, JsonFields.valueStart(field), JsonFields.valueEnd(field));
+            }
+        }
+        return hash(body, 0, body.length);
+    }
+
+    private boolean contains(final long fingerprint) {
+        for (int slot = slotOf(fingerprint); slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (slots[slot] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void add(final long fingerprint) {
+        int slot = slotOf(fingerprint);
+        while (slots[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = fingerprint;
+    }
+
+    /**
+     * Removes the fingerprint and shifts back any fingerprints after it that would no longer be found.
+     */
+    private void remove(final long fingerprint) {
+        int slot = slotOf(fingerprint);
+        while (slots[slot] != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+
+        int next = (slot + 1) & mask;
+        while (slots[next] != EMPTY) {
+            final int home = slotOf(slots[next]);
+            //Move the fingerprint into the gap unless its home lies cyclically between the gap and where it is
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                slots[slot] = slots[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[slot] = EMPTY;
+    }
+
+    private int slotOf(final long fingerprint) {
+        return (int) (fingerprint ^ fingerprint >>> 32) & mask;
+    }
+
+    /**
+     * A 64 bit hash of the bytes, eight at a time, never zero.
+     */
+    static long hash(final byte[] bytes, final int start, final int end) {
+        long hash = PRIME_2 + (end - start);
+        int i = start;
+        for (; i + 8 <= end; i += 8) {
+            long word = 0L;
+            for (int b = 7; b >= 0; b--) {
+                word = word << 8 | (bytes[i + b] & 0xFFL);
+            }
+            hash = Long.rotateLeft(hash ^ word * PRIME_1, 27) * PRIME_2;
+        }
+        for (; i < end; i++) {
+            hash = Long.rotateLeft(hash ^ (bytes[i] & 0xFFL) * PRIME_1, 11) * PRIME_2;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME_1;
+        hash ^= hash >>> 29;
+        return hash == EMPTY ? 1L : hash;
+    }
+}
@@ -0,0 +1,288 @@
+package combo;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+import static combo.HttpResponse.Status.REQUEST_TIMEOUT;
+import static combo.HttpResponse.Status.TOO_MANY_REQUESTS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Keeps published facts on local disk until the combo server has accepted them, so that facts published while the
+ * server is slow or down are neither lost nor hold up the publisher.
+ * <p>
+ * A combo built {@link HttpCombo.Builder#withOutbox(DurableOutbox) with an outbox} writes each published fact to a
+ * journal of memory-mapped segment files and returns straight away. Facts are then published from the journal in
+ * the order they were written, one at a time, retrying each until the server accepts it. Facts left in the journal
+ * when the process stops are published once an outbox is opened on the same directory again. A fact may be published
+ * twice if the process stops just after publishing it.
+ * <p>
+ * A fact the server rejects with a client error, other than a request timeout or too many requests, would be rejected
+ * however often it was sent, so it is handed to the {@link OutboxListener} as undeliverable and the outbox moves on.
+ * So is a fact that has failed to publish {@code maxAttempts} times, which by default is never. Failures of the
+ * journal itself are also told to the listener, and the outbox carries on draining after the retry delay.
+ * <p>
+ * Facts survive the process dying as soon as they are written, but the journal is only forced to disk every
+ * {@code forceInterval}, so facts written since may be lost, or read back torn, if the machine itself goes down.
+ * <p>
+ * The journal takes at most {@code maxSegments} segments of {@code segmentSize} bytes. Publishing a fact that would
+ * take more throws an {@link OutboxFullException}.
+ */
+public final class DurableOutbox implements AutoCloseable {
+
+    private static final long POLL_MILLIS = 100L;
+
+    private final OutboxJournal journal;
+    private final long retryDelayMillis;
+    private final int maxAttempts;
+    private final long forceIntervalNanos;
+    private final OutboxListener listener;
+
+    private Future<?> drainer;
+    private volatile boolean closed;
+
+    private DurableOutbox(final OutboxJournal journal,
+                          final long retryDelayMillis,
+                          final int maxAttempts,
+                          final long forceIntervalMillis,
+                          final OutboxListener listener) {
+        this.journal = journal;
+        this.retryDelayMillis = retryDelayMillis;
+        this.maxAttempts = maxAttempts;
+        this.forceIntervalNanos = MILLISECONDS.toNanos(forceIntervalMillis);
+        this.listener = listener;
+    }
+
+    public static DurableOutbox durableOutbox(final Path directory) {
+        return durableOutboxBuilder(directory).build();
+    }
+
+    public static Builder durableOutboxBuilder(final Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Cannot keep facts without a directory to keep them in");
+        }
+        return new Builder(directory);
+    }
+
+    /**
+     * @return true if every fact written to the outbox has been published
+     */
+    public boolean isDrained() {
+        return journal.isEmpty();
+    }
+
+    /**
+     * Stops publishing facts from the outbox. Facts not yet published stay on disk.
+     */
+    @Override public void close() {
+        closed = true;
+        synchronized (this) {
+            if (drainer != null) {
+                drainer.cancel(true);
+            }
+        }
+        journal.force();
+    }
+
+    void write(final String topicName, final EncodedFact fact) {
+        if (closed) {
+            throw new IllegalStateException("Cannot publish facts through a closed outbox");
+        }
+        journal.append(topicName, fact);
+    }
+
+    /**
+     * @param statusOf finds the status of the response publishing a fact failed with, or 0 if there was none
+     */
+    synchronized void drainTo(final BiConsumer<String, EncodedFact> publisher,
+                              final ToIntFunction<Throwable> statusOf,
+                              final ExecutorService executor) {
+        if (drainer != null) {
+            throw new IllegalStateException("An outbox can only be drained by one combo");
+        }
+        drainer = executor.submit(() -> drain(publisher, statusOf));
+    }
+
+    private void drain(final BiConsumer<String, EncodedFact> publisher, final ToIntFunction<Throwable> statusOf) {
+        long forced = System.nanoTime();
+        while (!closed) {
+            try {
+                final OutboxJournal.Record record = journal.next(POLL_MILLIS);
+                if (record != null) {
+                    publish(record, publisher, statusOf);
+                    journal.commit(record);
+                }
+                if (System.nanoTime() - forced >= forceIntervalNanos) {
+                    journal.force();
+                    forced = System.nanoTime();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final RuntimeException e) {
+                drainFailed(e);
+                if (!pause()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void publish(final OutboxJournal.Record record,
+                         final BiConsumer<String, EncodedFact> publisher,
+                         final ToIntFunction<Throwable> statusOf) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                publisher.accept(record.topicName(), record.fact());
+                return;
+            } catch (final RuntimeException e) {
+                if (closed) {
+                    throw new InterruptedException("Outbox closed");
+                }
+                if (rejected(statusOf.applyAsInt(e)) || attempt >= maxAttempts) {
+                    undeliverable(record, e);
+                    return;
+                }
+                //Failures are recorded by the publisher's metrics, keep trying until the server is back
+                Thread.sleep(retryDelayMillis);
+            }
+        }
+    }
+
+    /**
+     * The record is committed whether or not the listener copes with it, otherwise it would be handed over again and
+     * again.
+     */
+    private void undeliverable(final OutboxJournal.Record record, final RuntimeException failure) {
+        try {
+            listener.undeliverable(record.topicName(), record.fact().contentType(), record.fact().bytes(), failure);
+        } catch (final RuntimeException e) {
+            drainFailed(e);
+        }
+    }
+
+    /**
+     * A listener failing must not stop the outbox being drained, and there is nobody left to tell.
+     */
+    private void drainFailed(final RuntimeException failure) {
+        try {
+            listener.drainFailed(failure);
+        } catch (final RuntimeException ignored) {
+        }
+    }
+
+    /**
+     * Client errors fail however often the fact is sent, except for timeouts and throttling, which may clear up.
+     */
+    private static boolean rejected(final int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && statusCode != REQUEST_TIMEOUT && statusCode != TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * @return false if interrupted while waiting
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(retryDelayMillis);
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public static final class Builder {
+
+        private final Path directory;
+        private int segmentSize = 16 * 1024 * 1024;
+        private int maxSegments = 64;
+        private long retryDelayMillis = 1000L;
+        private int maxAttempts = Integer.MAX_VALUE;
+        private long forceIntervalMillis = 1000L;
+        private OutboxListener listener = OutboxListener.NONE;
+
+        private Builder(final Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * The size of each segment file, which is also the largest a fact can be. Defaults to 16MB.
+         */
+        public Builder withSegmentSize(final int segmentSize) {
+            if (segmentSize < 64) {
+                throw new IllegalArgumentException("Outbox segments must be at least 64 bytes");
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * The most segment files kept at once, bounding the disk taken by facts waiting to be published. Defaults
+         * to 64.
+         */
+        public Builder withMaxSegments(final int maxSegments) {
+            if (maxSegments < 1) {
+                throw new IllegalArgumentException("An outbox needs at least one segment");
+            }
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        /**
+         * How long to wait before publishing a fact again after the server failed to accept it. Defaults to 1s.
+         */
+        public Builder withRetryDelay(final long retryDelayMillis) {
+            if (retryDelayMillis < 0) {
+                throw new IllegalArgumentException("Cannot wait a negative amount of time between retries");
+            }
+            this.retryDelayMillis = retryDelayMillis;
+            return this;
+        }
+
+        /**
+         * The most times a fact is published before the outbox gives up on it and tells the listener it was
+         * undeliverable. Defaults to no limit, retrying until the server is back however long it is down.
+         */
+        public Builder withMaxAttempts(final int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Facts must be published at least once");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * How often facts written to the outbox, and how far it has been drained, are forced to disk. Facts written
+         * since may be lost if the machine goes down, though not if only the process dies. Defaults to 1s.
+         */
+        public Builder withForceInterval(final long forceIntervalMillis) {
+            if (forceIntervalMillis < 0) {
+                throw new IllegalArgumentException("Cannot force the outbox to disk at a negative interval");
+            }
+            this.forceIntervalMillis = forceIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Told of facts the outbox gives up on and of failures draining it. Defaults to {@link OutboxListener#NONE}.
+         */
+        public Builder withListener(final OutboxListener listener) {
+            if (listener == null) {
+                throw new IllegalArgumentException("Cannot tell a null listener of failures, use OutboxListener.NONE to tell none");
+            }
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Opens the outbox, finding any facts left unpublished in the directory.
+         */
+        public DurableOutbox build() {
+            return new DurableOutbox(new OutboxJournal(directory, segmentSize, maxSegments),
+                    retryDelayMillis, maxAttempts, forceIntervalMillis, listener);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package combo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A fact ready to be posted as a body of some content type, either already encoded or encoded as it is written to
+ * the request.
+ */
+final class EncodedFact implements BodyWriter {
+
+    private final String contentType;
+    private final byte[] bytes;
+    private final BodyWriter writer;
+
+    private EncodedFact(final String contentType, final byte[] bytes, final BodyWriter writer) {
+        this.contentType = contentType;
+        this.bytes = bytes;
+        this.writer = writer;
+    }
+
+    static EncodedFact text(final String text) {
+        return encoded(FactCodec.APPLICATION_JSON, text.getBytes(UTF_8));
+    }
+
+    static EncodedFact encoded(final String contentType, final byte[] bytes) {
+        return new EncodedFact(contentType, bytes, null);
+    }
+
+    /**
+     * A fact encoded straight into the request as it is written, for facts published while the publisher waits,
+     * which are neither queued nor kept.
+     */
+    static EncodedFact streamed(final String contentType, final BodyWriter writer) {
+        return new EncodedFact(contentType, null, writer);
+    }
+
+    @Override public void write(final OutputStream body) throws IOException {
+        if (bytes != null) {
+            body.write(bytes);
+        } else {
+            writer.write(body);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the fact is {@link #streamed(String, BodyWriter) streamed}
+     */
+    byte[] bytes() {
+        if (bytes == null) {
+            throw new IllegalStateException("Streamed facts are only encoded as they are posted");
+        }
+        return bytes;
+    }
+
+    String contentType() {
+        return contentType;
+    }
+
+    int size() {
+        return bytes().length;
+    }
+}
@@ -0,0 +1,41 @@
+package combo;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+final class ExponentialBackoff implements PollStrategy {
+
+    private final long initialDelay;
+    private final long maximumDelay;
+    private final double jitter;
+
+    ExponentialBackoff(final long initialDelay, final long maximumDelay, final double jitter) {
+        if (initialDelay < 0 || maximumDelay < initialDelay) {
+            throw new IllegalArgumentException("Backoff delays must satisfy 0 <= initialDelay <= maximumDelay");
+        }
+        if (jitter < 0.0d || jitter > 1.0d) {
+            throw new IllegalArgumentException("Backoff jitter must be between 0.0 and 1.0");
+        }
+        this.initialDelay = initialDelay;
+        this.maximumDelay = maximumDelay;
+        this.jitter = jitter;
+    }
+
+    @Override public long delayAfterEmptyPolls(final int consecutiveEmptyPolls) {
+        final long delay = cappedDelay(consecutiveEmptyPolls);
+
+        if (jitter == 0.0d || delay == 0L) {
+            return delay;
+        }
+
+        final double spread = delay * jitter;
+        return (long) (delay - spread + ThreadLocalRandom.current().nextDouble() * spread * 2);
+    }
+
+    private long cappedDelay(final int consecutiveEmptyPolls) {
+        final int doublings = Math.max(0, consecutiveEmptyPolls - 1);
+        if (doublings >= Long.numberOfLeadingZeros(Math.max(initialDelay, 1L)) - 1) {
+            return maximumDelay;
+        }
+        return Math.min(initialDelay << doublings, maximumDelay);
+    }
+}
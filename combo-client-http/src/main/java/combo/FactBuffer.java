@@ -0,0 +1,149 @@
+package combo;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded buffer of facts between the threads that fetch them and the thread that consumes them, which applies
+ * an {@link OverflowPolicy} when it is full.
+ * <p>
+ * A failure is never dropped. It waits for room when the policy is to block or conflate, and otherwise takes the
+ * place of the oldest fact.
+ */
+final class FactBuffer<T> {
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Runnable dropped;
+
+    //Conflated facts by key, in the order their keys arrived, otherwise facts in the order they arrived
+    private final Map<Object, Object> elements = new LinkedHashMap<>();
+    private final ArrayDeque<Object> queue = new ArrayDeque<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    FactBuffer(final int capacity, final OverflowPolicy policy, final Runnable dropped) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.dropped = dropped;
+    }
+
+    void put(final T fact) throws InterruptedException {
+        final Object element = fact == null ? new NullFact() : fact;
+
+        lock.lockInterruptibly();
+        try {
+            switch (policy.kind()) {
+                case BLOCK:
+                    awaitRoom();
+                    queue.addLast(element);
+                    break;
+                case DROP_OLDEST:
+                    if (queue.size() >= capacity) {
+                        queue.removeFirst();
+                        dropped.run();
+                    }
+                    queue.addLast(element);
+                    break;
+                case DROP_NEWEST:
+                    if (queue.size() >= capacity) {
+                        dropped.run();
+                        return;
+                    }
+                    queue.addLast(element);
+                    break;
+                case CONFLATE:
+                    final Object key = fact == null ? element : policy.key().apply(fact);
+                    if (elements.containsKey(key)) {
+                        elements.put(key, element);
+                        dropped.run();
+                        return;
+                    }
+                    awaitRoom();
+                    elements.put(key, element);
+                    break;
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void fail(final Throwable t) throws InterruptedException {
+        final Failure failure = new Failure(t);
+
+        lock.lockInterruptibly();
+        try {
+            switch (policy.kind()) {
+                case CONFLATE:
+                    awaitRoom();
+                    elements.put(failure, failure);
+                    break;
+                case BLOCK:
+                    awaitRoom();
+                    queue.addLast(failure);
+                    break;
+                default:
+                    if (queue.size() >= capacity) {
+                        queue.removeFirst();
+                        dropped.run();
+                    }
+                    queue.addLast(failure);
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    T take() throws InterruptedException {
+        final Object element;
+
+        lock.lockInterruptibly();
+        try {
+            while (size() == 0) {
+                notEmpty.await();
+            }
+            element = removeFirst();
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (element instanceof Failure) {
+            throw ((Failure) element).rethrow();
+        }
+        return element instanceof NullFact ? null : (T) element;
+    }
+
+    private void awaitRoom() throws InterruptedException {
+        while (size() >= capacity) {
+            notFull.await();
+        }
+    }
+
+    private int size() {
+        return policy.kind() == OverflowPolicy.Kind.CONFLATE ? elements.size() : queue.size();
+    }
+
+    private Object removeFirst() {
+        if (policy.kind() != OverflowPolicy.Kind.CONFLATE) {
+            return queue.removeFirst();
+        }
+
+        final Iterator<Object> iterator = elements.values().iterator();
+        final Object element = iterator.next();
+        iterator.remove();
+        return element;
+    }
+
+    private static final class NullFact {
+    }
+}
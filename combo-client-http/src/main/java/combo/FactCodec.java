@@ -0,0 +1,22 @@
+package combo;
+
+/**
+ * Turns facts into request bodies and response bodies into facts.
+ * <p>
+ * {@link HttpCombo} asks for a fact class's decoder once, when a subscription is created, and for its encoder once,
+ * the first time a fact of that class is published. Implementations should resolve whatever they need for the
+ * class up front so that encoding and decoding each fact is as cheap as possible.
+ */
+public interface FactCodec {
+
+    String APPLICATION_JSON = "application/json";
+
+    /**
+     * @return the media type of encoded facts, facts of any other type are posted as binary
+     */
+    String contentType();
+
+    <T> FactDecoder<T> decoderFor(Class<T> factClass);
+
+    <T> FactEncoder<T> encoderFor(Class<T> factClass);
+}
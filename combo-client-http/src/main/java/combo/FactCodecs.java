@@ -0,0 +1,136 @@
+package combo;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static combo.EncodedFact.encoded;
+import static combo.EncodedFact.streamed;
+import static combo.EncodedFact.text;
+import static java.lang.String.format;
+
+/**
+ * Chooses the codec for each topic and caches each codec's encoders and decoders per fact class.
+ * <p>
+ * String facts bypass the codecs, they are published and consumed as they are. Json codecs hand {@link ComboFact}
+ * classes to their generated codecs.
+ */
+final class FactCodecs {
+
+    private final CachedCodec defaultCodec;
+    private final Map<String, CachedCodec> topicCodecs;
+
+    FactCodecs(final FactCodec defaultCodec, final Map<String, FactCodec> topicCodecs) {
+        this.defaultCodec = new CachedCodec(defaultCodec);
+        this.topicCodecs = new HashMap<>();
+        topicCodecs.forEach((topicName, codec) -> this.topicCodecs.put(topicName, new CachedCodec(codec)));
+    }
+
+    /**
+     * @return the decoder for facts of the class on the topic, or null for String facts
+     */
+    @SuppressWarnings("unchecked")
+    <T> FactDecoder<T> decoderFor(final String topicName, final Class<T> factClass) {
+        return String.class == factClass ? null : (FactDecoder<T>) codecFor(topicName).decoders.get(factClass);
+    }
+
+    /**
+     * @return true if facts on the topic are text, which survives being read as a String before it is decoded
+     */
+    boolean isText(final String topicName) {
+        return codecFor(topicName).text;
+    }
+
+    /**
+     * @return a decoder that reads each fact on the topic into the given fact rather than a new one
+     * @throws IllegalArgumentException if the fact's class has no generated codec that reads into facts, or the
+     *                                  topic's codec is not json
+     */
+    @SuppressWarnings("unchecked")
+    <T> FactDecoder<T> reusingDecoderFor(final String topicName, final T reusedFact) {
+        final GeneratedFactCodec<T> generated = (GeneratedFactCodec<T>) codecFor(topicName).generatedCodecFor(reusedFact.getClass());
+        if (generated == null || !generated.readsInto()) {
+            throw new IllegalArgumentException(format(
+                    "Cannot reuse facts of %s on topic %s, they must be @ComboFact classes created without a constructor "
+                            + "taking every field, on a topic with a json codec", reusedFact.getClass().getName(), topicName));
+        }
+        return body -> generated.read(body, reusedFact);
+    }
+
+    /**
+     * Encodes the fact into a pooled buffer, then copies it out at its exact size.
+     */
+    EncodedFact encode(final String topicName, final Object fact) {
+        if (fact instanceof String) {
+            return text((String) fact);
+        }
+
+        final CachedCodec codec = codecFor(topicName);
+        final PooledBuffer body = PooledBuffer.acquire();
+        try {
+            codec.encoderFor(fact).encode(fact, body);
+            return encoded(codec.codec.contentType(), body.toByteArray());
+        } catch (final IOException e) {
+            throw new IllegalStateException("Could not encode fact " + fact, e);
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * @return the fact to be encoded straight into the request as it is posted, so it must not change until then
+     */
+    EncodedFact stream(final String topicName, final Object fact) {
+        if (fact instanceof String) {
+            return text((String) fact);
+        }
+
+        final CachedCodec codec = codecFor(topicName);
+        final FactEncoder<Object> encoder = codec.encoderFor(fact);
+        return streamed(codec.codec.contentType(), body -> encoder.encode(fact, body));
+    }
+
+    private CachedCodec codecFor(final String topicName) {
+        final CachedCodec topicCodec = topicCodecs.get(topicName);
+        return topicCodec != null ? topicCodec : defaultCodec;
+    }
+
+    private static final class CachedCodec {
+
+        private final FactCodec codec;
+        private final boolean json;
+        private final boolean text;
+
+        private final ClassValue<FactDecoder<?>> decoders = new ClassValue<FactDecoder<?>>() {
+            @Override protected FactDecoder<?> computeValue(final Class<?> factClass) {
+                final GeneratedFactCodec<?> generated = generatedCodecFor(factClass);
+                return generated != null ? generated : codec.decoderFor(factClass);
+            }
+        };
+
+        private final ClassValue<FactEncoder<?>> encoders = new ClassValue<FactEncoder<?>>() {
+            @Override protected FactEncoder<?> computeValue(final Class<?> factClass) {
+                final GeneratedFactCodec<?> generated = generatedCodecFor(factClass);
+                return generated != null ? generated : codec.encoderFor(factClass);
+            }
+        };
+
+        private CachedCodec(final FactCodec codec) {
+            this.codec = codec;
+            this.json = FactCodec.APPLICATION_JSON.equals(codec.contentType());
+            this.text = codec.contentType().startsWith(FactCodec.APPLICATION_JSON) || codec.contentType().startsWith("text/");
+        }
+
+        @SuppressWarnings("unchecked")
+        private FactEncoder<Object> encoderFor(final Object fact) {
+            return (FactEncoder<Object>) encoders.get(fact.getClass());
+        }
+
+        /**
+         * Generated codecs write json, so they only stand in for json codecs.
+         */
+        private GeneratedFactCodec<?> generatedCodecFor(final Class<?> factClass) {
+            return json ? GeneratedFactCodec.generatedCodecFor(factClass) : null;
+        }
+    }
+}
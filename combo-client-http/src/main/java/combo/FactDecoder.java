@@ -0,0 +1,5 @@
+package combo;
+
+@FunctionalInterface
+public interface FactDecoder<T> extends BodyReader<T> {
+}
@@ -0,0 +1,12 @@
+package combo;
+
+/**
+ * Thrown when a fact polled from the combo server cannot be decoded. Subscribing again would not help, the fact is
+ * gone from the subscription either way, so a combo {@link HttpCombo.Builder#withRecovery(PollStrategy) recovering}
+ * failed subscriptions passes this straight to the consumer.
+ */
+public final class FactDecodingException extends RuntimeException {
+    public FactDecodingException(final Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,9 @@
+package combo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@FunctionalInterface
+public interface FactEncoder<T> {
+    void encode(T fact, OutputStream body) throws IOException;
+}
@@ -0,0 +1,84 @@
+package combo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A fact as the server sent it, whose top level fields can be read without decoding the whole fact. The fact is
+ * only decoded when {@link #getFact()} is first called, so facts can be filtered on a field or two and most of them
+ * thrown away without ever being decoded.
+ * <p>
+ * Field lookups scan the json each time they are made. Facts that are not json have no fields, but can still be
+ * decoded.
+ */
+public final class FactView<T> {
+
+    private final byte[] body;
+    private final FactDecoder<? extends T> decoder;
+
+    private volatile T fact;
+    private volatile boolean decoded;
+
+    /**
+     * @param decoder the decoder for the fact, or null for String facts
+     */
+    FactView(final byte[] body, final FactDecoder<? extends T> decoder) {
+        this.body = body;
+        this.decoder = decoder;
+    }
+
+    public boolean has(final String fieldName) {
+        return field(fieldName) != JsonFields.NOT_FOUND;
+    }
+
+    /**
+     * @return the value of the field, unescaped if it is a string and otherwise as it appears in the json, or null
+     * if the field is missing or null
+     */
+    public String getString(final String fieldName) {
+        final long field = field(fieldName);
+        return field == JsonFields.NOT_FOUND
+                ? null
+                : JsonFields.string(body, JsonFields.valueStart(field), JsonFields.valueEnd(field));
+    }
+
+    /**
+     * @return the json of the field's value, such as a nested object, or null if the field is missing
+     */
+    public String getJson(final String fieldName) {
+        final long field = field(fieldName);
+        return field == JsonFields.NOT_FOUND
+                ? null
+                : new String(body, JsonFields.valueStart(field), JsonFields.valueEnd(field) - JsonFields.valueStart(field), UTF_8);
+    }
+
+    /**
+     * @return the fact, decoded the first time it is asked for
+     */
+    @SuppressWarnings("unchecked")
+    public T getFact() {
+        if (!decoded) {
+            try {
+                fact = decoder == null ? (T) new String(body, UTF_8) : decoder.read(new ByteArrayInputStream(body));
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            decoded = true;
+        }
+        return fact;
+    }
+
+    @Override public String toString() {
+        return "FactView{" + new String(body, UTF_8) + '}';
+    }
+
+    private long field(final String fieldName) {
+        if (fieldName == null) {
+            throw new IllegalArgumentException("Cannot look up a null field");
+        }
+        return JsonFields.field(body, 0, body.length, fieldName.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,23 @@
+package combo;
+
+/**
+ * Carries a failure from the thread that fetched facts to the thread that consumes them.
+ */
+final class Failure {
+
+    private final Throwable cause;
+
+    Failure(final Throwable cause) {
+        this.cause = cause;
+    }
+
+    RuntimeException rethrow() {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+    }
+}
@@ -0,0 +1,59 @@
+package combo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A {@link SubscriptionStore} backed by a properties file. The file is read once, when the store is created, and
+ * rewritten whole on each save. A save writes a new file and moves it over the old one, so the file is never left
+ * half written.
+ */
+public final class FileSubscriptionStore implements SubscriptionStore {
+
+    private final Path file;
+    private final Properties subscriptionIds = new Properties();
+
+    private FileSubscriptionStore(final Path file) {
+        this.file = file;
+        if (Files.exists(file)) {
+            try (final InputStream in = Files.newInputStream(file)) {
+                subscriptionIds.load(in);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public static FileSubscriptionStore fileSubscriptionStore(final Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("Cannot store subscriptions without a file to store them in");
+        }
+        return new FileSubscriptionStore(file);
+    }
+
+    @Override public synchronized String load(final String subscriptionKey) {
+        return subscriptionIds.getProperty(subscriptionKey);
+    }
+
+    @Override public synchronized void save(final String subscriptionKey, final String subscriptionId) {
+        subscriptionIds.setProperty(subscriptionKey, subscriptionId);
+
+        final Path saving = file.resolveSibling(file.getFileName() + ".saving");
+        try {
+            try (final OutputStream out = Files.newOutputStream(saving)) {
+                subscriptionIds.store(out, "Combo subscription ids");
+            }
+            Files.move(saving, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package combo;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The base of the json codecs generated for {@link ComboFact} classes, which read and write each field directly
+ * rather than by reflection. The codec for a class {@code Outer.Fact} is {@code Outer_Fact_ComboCodec} in the same
+ * package, and is found by that name when a codec is first needed for the class.
+ */
+public abstract class GeneratedFactCodec<T> implements FactDecoder<T>, FactEncoder<T> {
+
+    static final String CODEC_SUFFIX = "_ComboCodec";
+
+    private static final ClassValue<GeneratedFactCodec<?>> GENERATED_CODECS = new ClassValue<GeneratedFactCodec<?>>() {
+        @Override protected GeneratedFactCodec<?> computeValue(final Class<?> factClass) {
+            if (!factClass.isAnnotationPresent(ComboFact.class)) {
+                return null;
+            }
+
+            final String name = factClass.getName();
+            final int packageEnd = name.lastIndexOf('.') + 1;
+            final String codecName = name.substring(0, packageEnd)
+                    + name.substring(packageEnd).replace('$', '_')
+                    + CODEC_SUFFIX;
+            try {
+                return (GeneratedFactCodec<?>) Class.forName(codecName, true, factClass.getClassLoader())
+                        .getField("INSTANCE")
+                        .get(null);
+            } catch (final ReflectiveOperationException e) {
+                //Not generated, for instance because the processor did not run, so bind by reflection instead
+                return null;
+            }
+        }
+    };
+
+    /**
+     * @param reader positioned at a json object
+     */
+    public abstract T readFact(JsonReader reader) throws IOException;
+
+    /**
+     * @return true if facts can be read into an existing instance, which they can for classes created without a
+     * constructor taking every field
+     */
+    public boolean readsInto() {
+        return false;
+    }
+
+    /**
+     * Reads the fact into the given instance rather than a new one, first setting every field back to the value it
+     * has in a new instance so that nothing is left over from the fact read into it before.
+     *
+     * @param reader positioned at a json object
+     * @throws UnsupportedOperationException if the codec does not {@link #readsInto() read into} facts
+     */
+    public T readFactInto(final JsonReader reader, final T fact) throws IOException {
+        throw new UnsupportedOperationException("Cannot read into facts created with a constructor taking every field");
+    }
+
+    /**
+     * @param fact not null
+     */
+    public abstract void writeFact(JsonWriter writer, T fact) throws IOException;
+
+    @Override public final T read(final InputStream body) throws IOException {
+        return read(body, null);
+    }
+
+    /**
+     * @param reusedFact the fact to read into, or null to read a new one
+     */
+    final T read(final InputStream body, final T reusedFact) throws IOException {
+        final JsonReader reader = new JsonReader(new InputStreamReader(body, UTF_8));
+        reader.setLenient(true);
+        try {
+            if (reader.peek() == JsonToken.NULL) {
+                return readNull(reader);
+            }
+        } catch (final EOFException e) {
+            return null;
+        }
+        return reusedFact == null ? readFact(reader) : readFactInto(reader, reusedFact);
+    }
+
+    @Override public final void encode(final T fact, final OutputStream body) throws IOException {
+        final JsonWriter writer = new JsonWriter(new OutputStreamWriter(body, UTF_8));
+        writer.setSerializeNulls(false);
+        writer.setHtmlSafe(true);
+        if (fact == null) {
+            writer.nullValue();
+        } else {
+            writeFact(writer, fact);
+        }
+        writer.flush();
+    }
+
+    protected static <V> V readNull(final JsonReader reader) throws IOException {
+        reader.nextNull();
+        return null;
+    }
+
+    protected static char readChar(final JsonReader reader) throws IOException {
+        final String value = reader.nextString();
+        if (value.length() != 1) {
+            throw new IOException("Expected a single character but was '" + value + "'");
+        }
+        return value.charAt(0);
+    }
+
+    /**
+     * @return the constant with the name read, or null if there is none, as Gson reads enums
+     */
+    protected static <E extends Enum<E>> E readEnum(final JsonReader reader, final Class<E> enumClass) throws IOException {
+        final String name = reader.nextString();
+        try {
+            return Enum.valueOf(enumClass, name);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the generated codec for the class, or null if it is not a {@link ComboFact} or its codec was not
+     * generated
+     */
+    @SuppressWarnings("unchecked")
+    static <T> GeneratedFactCodec<T> generatedCodecFor(final Class<T> factClass) {
+        return (GeneratedFactCodec<T>) GENERATED_CODECS.get(factClass);
+    }
+}
@@ -0,0 +1,69 @@
+package combo;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.EOFException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes and decodes facts as json with Gson, resolving each fact class's type adapter once.
+ * <p>
+ * Facts are written as a default {@code Gson} would write them: null fields are left out and html characters are
+ * escaped.
+ */
+public final class GsonFactCodec implements FactCodec {
+
+    private final Gson gson;
+
+    private GsonFactCodec(final Gson gson) {
+        this.gson = gson;
+    }
+
+    public static FactCodec gsonFactCodec() {
+        return new GsonFactCodec(new Gson());
+    }
+
+    public static FactCodec gsonFactCodec(final Gson gson) {
+        if (gson == null) {
+            throw new IllegalArgumentException("Cannot encode or decode facts without a Gson");
+        }
+        return new GsonFactCodec(gson);
+    }
+
+    @Override public String contentType() {
+        return APPLICATION_JSON;
+    }
+
+    @Override public <T> FactDecoder<T> decoderFor(final Class<T> factClass) {
+        final TypeAdapter<T> typeAdapter = gson.getAdapter(factClass);
+
+        return body -> {
+            final JsonReader reader = new JsonReader(new InputStreamReader(body, UTF_8));
+            reader.setLenient(true);
+            try {
+                reader.peek();
+            } catch (final EOFException e) {
+                return null;
+            }
+            return typeAdapter.read(reader);
+        };
+    }
+
+    @Override public <T> FactEncoder<T> encoderFor(final Class<T> factClass) {
+        final TypeAdapter<T> typeAdapter = gson.getAdapter(factClass);
+
+        return (fact, body) -> {
+            final JsonWriter writer = new JsonWriter(new OutputStreamWriter(body, UTF_8));
+            writer.setSerializeNulls(false);
+            writer.setHtmlSafe(true);
+            typeAdapter.write(writer, fact);
+            writer.flush();
+        };
+    }
+}
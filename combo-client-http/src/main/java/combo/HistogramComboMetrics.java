@@ -0,0 +1,94 @@
+package combo;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * Counts what happens on each topic and records latencies in histograms, which can be read at any time with
+ * {@link #snapshot()}.
+ * <p>
+ * Recording never takes a lock, and only allocates the first time something happens on a topic. Give the same
+ * instance to a combo and its http client to see both in one snapshot.
+ */
+public final class HistogramComboMetrics implements ComboMetrics {
+
+    private final ConcurrentMap<String, TopicMetrics> topics = new ConcurrentHashMap<>();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    private HistogramComboMetrics() {
+    }
+
+    public static HistogramComboMetrics histogramComboMetrics() {
+        return new HistogramComboMetrics();
+    }
+
+    @Override public void subscribed(final String topicName, final long latencyNanos) {
+        topic(topicName).subscribeLatency.record(latencyNanos);
+    }
+
+    @Override public void polled(final String topicName, final boolean hadFact, final long latencyNanos) {
+        final TopicMetrics topic = topic(topicName);
+        (hadFact ? topic.facts : topic.emptyPolls).incrementAndGet();
+        topic.pollLatency.record(latencyNanos);
+    }
+
+    @Override public void decoded(final String topicName, final long latencyNanos) {
+        topic(topicName).decodeLatency.record(latencyNanos);
+    }
+
+    @Override public void published(final String topicName, final long latencyNanos) {
+        final TopicMetrics topic = topic(topicName);
+        topic.published.incrementAndGet();
+        topic.publishLatency.record(latencyNanos);
+    }
+
+    @Override public void dropped(final String topicName) {
+        topic(topicName).dropped.incrementAndGet();
+    }
+
+    @Override public void failed(final String topicName, final Throwable error) {
+        topic(topicName).failures.incrementAndGet();
+    }
+
+    @Override public void requested(final int statusCode, final long latencyNanos) {
+        if (statusCode == 0 || statusCode >= 400) {
+            failedRequests.incrementAndGet();
+        }
+        requestLatency.record(latencyNanos);
+    }
+
+    public ComboMetricsSnapshot snapshot() {
+        final Map<String, TopicMetricsSnapshot> topicSnapshots = new TreeMap<>();
+        topics.forEach((topicName, topic) -> topicSnapshots.put(topicName, topic.snapshot()));
+        return new ComboMetricsSnapshot(unmodifiableMap(topicSnapshots), failedRequests.get(), requestLatency.snapshot());
+    }
+
+    private TopicMetrics topic(final String topicName) {
+        final TopicMetrics topic = topics.get(topicName);
+        return topic != null ? topic : topics.computeIfAbsent(topicName, name -> new TopicMetrics());
+    }
+
+    private static final class TopicMetrics {
+
+        private final AtomicLong facts = new AtomicLong();
+        private final AtomicLong emptyPolls = new AtomicLong();
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final LatencyHistogram subscribeLatency = new LatencyHistogram();
+        private final LatencyHistogram pollLatency = new LatencyHistogram();
+        private final LatencyHistogram decodeLatency = new LatencyHistogram();
+        private final LatencyHistogram publishLatency = new LatencyHistogram();
+
+        private TopicMetricsSnapshot snapshot() {
+            return new TopicMetricsSnapshot(facts.get(), emptyPolls.get(), published.get(), dropped.get(), failures.get(),
+                    subscribeLatency.snapshot(), pollLatency.snapshot(), decodeLatency.snapshot(), publishLatency.snapshot());
+        }
+    }
+}
@@ -2,10 +2,57 @@ package combo;
 
 import java.net.URI;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public interface HttpClient {
 
     <T> HttpResponse<T> get(URI path, Class<T> responseType);
 
     <T> HttpResponse<T> post(URI path, Object requestBody, Class<T> responseType);
 
+    /**
+     * Posts an encoded body of the given content type. By default only json bodies can be posted, as a String.
+     */
+    default <T> HttpResponse<T> post(final URI path, final byte[] requestBody, final String contentType, final Class<T> responseType) {
+        if (!contentType.startsWith(FactCodec.APPLICATION_JSON)) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot post " + contentType + " bodies");
+        }
+        return post(path, new String(requestBody, UTF_8), responseType);
+    }
+
+    /**
+     * Posts a body of the given content type written straight to the request by the writer.
+     * <p>
+     * Implementations should hand the writer the request stream, or a buffer of their own that they reuse. By default
+     * the body is written to a byte array and posted as {@link #post(URI, byte[], String, Class)} posts it.
+     */
+    default <T> HttpResponse<T> post(final URI path, final BodyWriter requestBody, final String contentType, final Class<T> responseType) {
+        return post(path, BodyWriters.writeAllBytes(requestBody), contentType, responseType);
+    }
+
+    /**
+     * Reads the response body with the given reader, which is not called when the response has no body.
+     * <p>
+     * Implementations should pass the reader the response stream as it arrives. By default the body is read as a
+     * String first and handed to the reader as UTF-8, which corrupts binary bodies, so {@link HttpCombo} will not
+     * consume facts from topics with a binary {@link FactCodec} through a client that does not override this.
+     */
+    default <T> HttpResponse<T> get(final URI path, final BodyReader<T> bodyReader) {
+        return BodyReaders.readBody(get(path, String.class), bodyReader);
+    }
+
+    /**
+     * @return the status of the response a request of this client failed with, or 0 if it failed without a response,
+     * as when the server could not be reached. By default the status of an {@link UnexpectedStatusException} among
+     * the failure's causes, clients that report statuses with exceptions of their own should override this.
+     */
+    default int statusOf(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnexpectedStatusException) {
+                return ((UnexpectedStatusException) cause).getStatusCode();
+            }
+        }
+        return 0;
+    }
+
 }
@@ -2,51 +2,454 @@ package combo;
 
 import com.google.gson.Gson;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import static combo.HttpResponse.Status.NOT_FOUND;
 import static combo.HttpResponse.Status.NO_CONTENT;
+import static combo.HttpResponse.Status.REQUEST_TIMEOUT;
+import static combo.HttpResponse.Status.TOO_MANY_REQUESTS;
 import static combo.HttpResponse.noContent;
+import static combo.PrefetchBuffer.prefetch;
+import static combo.PushSubscription.pushFacts;
+import static combo.SubscriptionOptions.subscriptionOptions;
 import static java.lang.String.format;
 import static java.net.URI.create;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static java.util.stream.Stream.generate;
 
-public final class HttpCombo implements Combo {
+public final class HttpCombo implements Combo, AsyncCombo {
 
+    private static final int MERGED_FACTS_BUFFER_SIZE = 256;
+    private static final int SHARED_FACTS_BUFFER_SIZE = 256;
+
+    private final HttpClient httpClient;
     private final FactProvider factProvider;
     private final FactPublisher factPublisher;
     private final TopicSubscriber topicSubscriber;
+    private final PollStrategy pollStrategy;
+    private final PollStrategy recovery;
+    private final SubscriptionStore subscriptionStore;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final FactCodecs factCodecs;
+    private final ComboMetrics metrics;
+    private final PublishPipeline publishPipeline;
+    private final DurableOutbox outbox;
+    private final SharedSubscriptions sharedSubscriptions;
+    private final boolean nonBlocking;
+    private final boolean readsBodyStreams;
+    private final String httpClientName;
+
+    private HttpCombo(final HttpClient httpClient,
+                      final PollStrategy pollStrategy,
+                      final PollStrategy recovery,
+                      final SubscriptionStore subscriptionStore,
+                      final ExecutorService executor,
+                      final ScheduledExecutorService scheduler,
+                      final PublishBatching publishBatching,
+                      final DurableOutbox outbox,
+                      final FactCodecs factCodecs,
+                      final Limiter publishLimiter,
+                      final Limiter pollLimiter,
+                      final ComboMetrics metrics) {
+        final GsonHttpClient gsonHttpClient = gsonHttpClient(httpClient, new Gson());
+        this.httpClient = httpClient;
+        this.factProvider = new FactProvider(gsonHttpClient, pollStrategy, pollLimiter, metrics);
+        this.factPublisher = new FactPublisher(gsonHttpClient, publishLimiter, metrics);
+        this.topicSubscriber = new TopicSubscriber(gsonHttpClient, metrics);
+        this.pollStrategy = pollStrategy;
+        this.recovery = recovery;
+        this.subscriptionStore = subscriptionStore;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.factCodecs = factCodecs;
+        this.metrics = metrics;
+        this.publishPipeline = publishBatching == null
+                ? null
+                : new PublishPipeline(publishBatching, this::sendFact, executor, scheduler);
+        this.outbox = outbox;
+        if (outbox != null) {
+            outbox.drainTo(factPublisher::publishFact, httpClient::statusOf, executor);
+        }
+        this.sharedSubscriptions = new SharedSubscriptions(topicName -> {
+            final Subscription subscription = openSubscription(topicName, null);
+            return () -> subscription.nextFact(byte[].class, FactProvider.RAW_FACT);
+        }, executor);
+        this.nonBlocking = httpClient instanceof AsyncHttpClient;
+        this.readsBodyStreams = overrides(httpClient, "get")
+                && (!nonBlocking || overrides(httpClient, "getAsync"));
+        this.httpClientName = httpClient.getClass().getSimpleName();
+    }
 
-    private HttpCombo(final HttpClient httpClient) {
-        final HttpClient gsonHttpClient = gsonHttpClient(httpClient);
-        this.factProvider = new FactProvider(gsonHttpClient);
-        this.factPublisher = new FactPublisher(gsonHttpClient);
-        this.topicSubscriber = new TopicSubscriber(gsonHttpClient);
+    /**
+     * @return false if the client reads bodies with the interface's default, which reads them as a String first
+     */
+    private static boolean overrides(final HttpClient httpClient, final String bodyReaderMethod) {
+        try {
+            return !httpClient.getClass().getMethod(bodyReaderMethod, URI.class, BodyReader.class).isDefault();
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
     }
 
     @Override public <T> Stream<T> facts(final String topicName, final Class<? extends T> factClass) {
+        return facts(topicName, factClass, subscriptionOptions());
+    }
+
+    /**
+     * Consumes facts from the topic as {@link #facts(String, Class)} does, with options for this subscription.
+     * <p>
+     * Close the stream when finished with it to stop any background fetching.
+     */
+    public <T> Stream<T> facts(final String topicName, final Class<? extends T> factClass, final SubscriptionOptions options) {
+        checkNotNull(topicName, "Cannot consume facts from null topic");
+        checkNotNull(factClass, "Cannot consume facts of an unspecified type. Use 'Map.class' if you don't have a more specific type");
+        checkNotNull(options, "Cannot consume facts without subscription options");
+
+        return facts(topicName, factClass, decoderFor(topicName, factClass), factClass, options);
+    }
+
+    public <T> Stream<FactView<T>> factViews(final String topicName, final Class<? extends T> factClass) {
+        return factViews(topicName, factClass, subscriptionOptions());
+    }
+
+    /**
+     * Consumes facts from the topic as views of the facts as they were sent, which are only decoded to the given
+     * type when {@link FactView#getFact()} is called. Filtering on a field of the view before asking for the fact
+     * saves decoding the facts that are filtered out:
+     * <pre>{@code
+     * combo.factViews("chat", ChatMessage.class, subscriptionOptions())
+     *         .filter(view -> !"chat-bot".equals(view.getString("who")))
+     *         .map(FactView::getFact)
+     * }</pre>
+     */
+    public <T> Stream<FactView<T>> factViews(final String topicName,
+                                             final Class<? extends T> factClass,
+                                             final SubscriptionOptions options) {
         checkNotNull(topicName, "Cannot consume facts from null topic");
         checkNotNull(factClass, "Cannot consume facts of an unspecified type. Use 'Map.class' if you don't have a more specific type");
+        checkNotNull(options, "Cannot consume facts without subscription options");
 
-        final SubscriptionId subscriptionId = topicSubscriber.subscribeTo(topicName);
+        final FactDecoder<? extends T> factDecoder = decoderFor(topicName, factClass);
+        final FactDecoder<FactView<T>> viewDecoder = body -> new FactView<>(BodyReaders.readAllBytes(body), factDecoder);
+        @SuppressWarnings("unchecked")
+        final Class<FactView<T>> viewClass = (Class<FactView<T>>) (Class<?>) FactView.class;
+        return facts(topicName, viewClass, viewDecoder, asList(FactView.class, factClass), options);
+    }
 
-        return generate(() -> factProvider.nextFact(subscriptionId, factClass));
+    public <T> Stream<T> reusingFacts(final String topicName, final T reusedFact) {
+        return reusingFacts(topicName, reusedFact, subscriptionOptions());
+    }
+
+    /**
+     * Consumes facts from the topic by reading each one into the given fact, rather than decoding it into a new
+     * one, for topics with so many facts that allocating them all is a burden. Every element of the stream is the
+     * given fact holding the latest fact from the topic, so it is only valid until the next element is taken:
+     * <pre>{@code
+     * combo.reusingFacts("readings", new Reading(), subscriptionOptions())
+     *         .filter(reading -> reading.value > threshold)
+     *         .forEach(reading -> alert(reading.sensor, reading.value))
+     * }</pre>
+     * Copy anything that is needed for longer, and do not use stream operations that hold on to elements, such as
+     * {@code sorted} or {@code collect}.
+     * <p>
+     * The fact's class must be a {@link ComboFact} created without a constructor taking every field, and the topic
+     * must have a json codec. Facts are read as they are taken, so the options cannot prefetch or share the
+     * subscription.
+     */
+    public <T> Stream<T> reusingFacts(final String topicName, final T reusedFact, final SubscriptionOptions options) {
+        checkNotNull(topicName, "Cannot consume facts from null topic");
+        checkNotNull(reusedFact, "Cannot consume facts into a null fact");
+        checkNotNull(options, "Cannot consume facts without subscription options");
+        if (options.prefetching() || options.shared()) {
+            throw new IllegalArgumentException("Cannot prefetch or share facts read into a single reused fact");
+        }
+
+        @SuppressWarnings("unchecked")
+        final Class<? extends T> factClass = (Class<? extends T>) reusedFact.getClass();
+        final FactDecoder<T> decoder = forPolling(topicName, factCodecs.reusingDecoderFor(topicName, reusedFact));
+        return facts(topicName, factClass, decoder, reusedFact, options);
+    }
+
+    /**
+     * @param decodedAs identifies how facts are decoded, so that shared subscriptions decode each fact once for all
+     *                  the streams that decode it the same way
+     */
+    private <T> Stream<T> facts(final String topicName,
+                                final Class<? extends T> factClass,
+                                final FactDecoder<? extends T> decoder,
+                                final Object decodedAs,
+                                final SubscriptionOptions options) {
+        if (options.shared()) {
+            return sharedFacts(topicName, decoder, decodedAs, options);
+        }
+
+        final Subscription subscription = openSubscription(topicName, options.subscriptionName());
+        final Supplier<T> nextFact = options.deduplication() == null
+                ? () -> subscription.nextFact(factClass, decoder)
+                : deduplicated(subscription, decoder, new Deduplicator(options.deduplication()));
+
+        if (!options.prefetching()) {
+            return generate(nextFact);
+        }
+
+        final PrefetchBuffer<T> prefetchBuffer = prefetch(nextFact,
+                options.prefetchBufferSize(), options.prefetchRequestsInFlight(), options.overflowPolicy(),
+                () -> metrics.dropped(topicName), executor);
+        return generate(prefetchBuffer::next).onClose(prefetchBuffer::close);
+    }
+
+    /**
+     * Handles facts from the topic on several worker threads of the executor, while keeping a single subscription.
+     * Facts with the same key, as given by the key function, are handled by the same worker in the order they
+     * arrived. Facts with different keys may be handled in any order.
+     * <p>
+     * Processing occupies a thread per worker plus one to poll, until the returned processor is closed.
+     */
+    public <T> PartitionedFactProcessor<T> processFacts(final String topicName,
+                                                        final Class<? extends T> factClass,
+                                                        final Function<? super T, ?> key,
+                                                        final Consumer<? super T> handler,
+                                                        final ParallelProcessing processing) {
+        checkNotNull(topicName, "Cannot consume facts from null topic");
+        checkNotNull(factClass, "Cannot consume facts of an unspecified type. Use 'Map.class' if you don't have a more specific type");
+        checkNotNull(key, "Cannot share facts between workers without a key");
+        checkNotNull(handler, "Cannot process facts without a handler");
+        checkNotNull(processing, "Cannot process facts without processing options");
+
+        final Subscription subscription = openSubscription(topicName, null);
+        final FactDecoder<? extends T> decoder = decoderFor(topicName, factClass);
+        final Supplier<T> nextFact = () -> subscription.nextFact(factClass, decoder);
+
+        return PartitionedFactProcessor.processFacts(nextFact, key, handler, processing, executor);
+    }
+
+    /**
+     * Consumes facts from several topics as one stream, each fact tagged with the topic it came from.
+     * <p>
+     * The topics are polled on the scheduler rather than with a thread each, taking turns so that a busy topic
+     * cannot starve a quiet one. Close the stream when finished with it to stop polling.
+     */
+    public <T> Stream<TopicFact<T>> facts(final Set<String> topicNames, final Class<? extends T> factClass) {
+        checkNotNull(topicNames, "Cannot consume facts from null topics");
+        checkNotNull(factClass, "Cannot consume facts of an unspecified type. Use 'Map.class' if you don't have a more specific type");
+        if (topicNames.contains(null)) {
+            throw new IllegalArgumentException("Cannot consume facts from null topic");
+        }
+
+        final MergedFacts<T> mergedFacts = new MergedFacts<>(MERGED_FACTS_BUFFER_SIZE);
+        topicNames.forEach(topicName -> subscribe(topicName, factClass, mergedFacts.subscriberFor(topicName)));
+
+        return generate(mergedFacts::next).onClose(mergedFacts::close);
     }
 
     @Override public <T> void publishFact(final String topicName, final T fact) {
         checkNotNull(topicName, "Cannot publish facts to a null topic");
 
-        factPublisher.publishFact(topicName, fact);
+        if (outbox != null) {
+            outbox.write(topicName, factCodecs.encode(topicName, fact));
+        } else if (publishPipeline == null) {
+            //Nothing else sees the fact before the request is sent, so it is encoded straight into the request
+            factPublisher.publishFact(topicName, factCodecs.stream(topicName, fact));
+        } else {
+            awaitPublished(publishPipeline.publish(topicName, factCodecs.encode(topicName, fact), true));
+        }
+    }
+
+    @Override public <T> CompletableFuture<Void> publishFactAsync(final String topicName, final T fact) {
+        checkNotNull(topicName, "Cannot publish facts to a null topic");
+
+        final EncodedFact encodedFact = factCodecs.encode(topicName, fact);
+        if (outbox != null) {
+            return writeToOutbox(topicName, encodedFact);
+        }
+        if (publishPipeline != null) {
+            return publishPipeline.publish(topicName, encodedFact, false);
+        }
+        return sendFact(topicName, encodedFact);
+    }
+
+    private CompletableFuture<Void> sendFact(final String topicName, final EncodedFact encodedFact) {
+        return nonBlocking
+                ? factPublisher.publishFactAsync(topicName, encodedFact)
+                : runAsync(() -> factPublisher.publishFact(topicName, encodedFact), executor);
+    }
+
+    /**
+     * Pushes facts from the topic to the subscriber as they are requested. Polls are made on the scheduler and
+     * only while there is outstanding demand, so many subscriptions can share a few threads.
+     */
+    @Override public <T> void subscribe(final String topicName,
+                                        final Class<? extends T> factClass,
+                                        final FactSubscriber<? super T> subscriber) {
+        checkNotNull(topicName, "Cannot consume facts from null topic");
+        checkNotNull(factClass, "Cannot consume facts of an unspecified type. Use 'Map.class' if you don't have a more specific type");
+        checkNotNull(subscriber, "Cannot push facts without a subscriber");
+
+        final FactDecoder<? extends T> decoder = decoderFor(topicName, factClass);
+        pushFacts(() -> topicSubscriber.subscribeTo(topicName),
+                subscriptionId -> factProvider.pollAsync(subscriptionId, factClass, decoder),
+                subscriber, pollStrategy, scheduler);
     }
 
     public static Combo httpCombo(final HttpClient httpClient) {
-        return new HttpCombo(httpClient);
+        return httpComboBuilder(httpClient).build();
+    }
+
+    public static Builder httpComboBuilder(final HttpClient httpClient) {
+        checkNotNull(httpClient, "Cannot create a combo without a http client");
+        return new Builder(httpClient);
     }
 
-    private static GsonHttpClient gsonHttpClient(final HttpClient httpClient) {
-        return new GsonHttpClient(httpClient, new Gson());
+    private static GsonHttpClient gsonHttpClient(final HttpClient httpClient, final Gson gson) {
+        return new GsonHttpClient(httpClient, gson);
+    }
+
+    private <T> Stream<T> sharedFacts(final String topicName,
+                                      final FactDecoder<? extends T> decoder,
+                                      final Object decodedAs,
+                                      final SubscriptionOptions options) {
+        final FactBuffer<T> buffer = new FactBuffer<>(
+                options.prefetching() ? options.prefetchBufferSize() : SHARED_FACTS_BUFFER_SIZE,
+                options.overflowPolicy(), () -> metrics.dropped(topicName));
+        final Deduplicator deduplicator = options.deduplication() == null ? null : new Deduplicator(options.deduplication());
+        final SharedSubscriptions.LocalSubscription<T> local = sharedSubscriptions.join(topicName, decodedAs, decoder, deduplicator, buffer);
+        return generate(local::next).onClose(local::close);
+    }
+
+    /**
+     * Subscribes to the topic, or for a named subscription carries on with the id saved in the subscription store
+     * if there is one.
+     */
+    private Subscription openSubscription(final String topicName, final String subscriptionName) {
+        final String subscriptionKey = subscriptionStore == null || subscriptionName == null
+                ? null
+                : topicName + "/" + subscriptionName;
+        final String savedId = subscriptionKey == null ? null : subscriptionStore.load(subscriptionKey);
+
+        final Subscription subscription = new Subscription(topicName, subscriptionKey);
+        if (savedId != null) {
+            subscription.subscriptionId = new SubscriptionId(topicName, savedId);
+        } else {
+            subscription.resubscribe(null);
+        }
+        return subscription;
+    }
+
+    /**
+     * Polls for facts until one that is not a duplicate arrives. Duplicates are dropped before they are decoded.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Supplier<T> deduplicated(final Subscription subscription,
+                                         final FactDecoder<? extends T> decoder,
+                                         final Deduplicator deduplicator) {
+        final FactDecoder<Object> deduplicatingDecoder = deduplicator.decoderFor(decoder);
+        return () -> {
+            Object fact;
+            do {
+                fact = subscription.nextFact(Object.class, deduplicatingDecoder);
+            } while (fact == Deduplicator.DUPLICATE);
+            return (T) fact;
+        };
+    }
+
+    /**
+     * @throws UnsupportedOperationException if facts on the topic are binary and the http client would read them as
+     *                                       a String, corrupting them, before they are decoded
+     */
+    private <T> FactDecoder<T> decoderFor(final String topicName, final Class<T> factClass) {
+        if (!readsBodyStreams && !factCodecs.isText(topicName)) {
+            throw new UnsupportedOperationException(format("Cannot consume binary facts from topic %s with %s, it must "
+                    + "override get(URI, BodyReader) to read them from the response stream", topicName, httpClientName));
+        }
+        return forPolling(topicName, factCodecs.decoderFor(topicName, factClass));
+    }
+
+    /**
+     * Times the decoder, and with recovery tells its failures apart from failures reading the response, so that a
+     * fact that cannot be decoded is not taken for a lost subscription.
+     */
+    private <T> FactDecoder<T> forPolling(final String topicName, final FactDecoder<T> decoder) {
+        final FactDecoder<T> timed = timed(topicName, decoder);
+        if (timed == null || recovery == null) {
+            return timed;
+        }
+
+        return body -> {
+            final ResponseStream response = new ResponseStream(body);
+            try {
+                return timed.read(response);
+            } catch (final IOException | RuntimeException e) {
+                if (response.failed || e instanceof ComboInterruptedException) {
+                    throw e;
+                }
+                throw new FactDecodingException(e);
+            }
+        };
+    }
+
+    private <T> FactDecoder<T> timed(final String topicName, final FactDecoder<T> decoder) {
+        if (decoder == null || metrics == ComboMetrics.NONE) {
+            return decoder;
+        }
+
+        return body -> {
+            final long start = System.nanoTime();
+            final T fact = decoder.read(body);
+            metrics.decoded(topicName, System.nanoTime() - start);
+            return fact;
+        };
+    }
+
+    private static boolean causedBy(final Throwable failure, final Class<? extends Throwable> causeClass) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (causeClass.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CompletableFuture<Void> writeToOutbox(final String topicName, final EncodedFact encodedFact) {
+        final CompletableFuture<Void> written = new CompletableFuture<>();
+        try {
+            outbox.write(topicName, encodedFact);
+            written.complete(null);
+        } catch (final RuntimeException e) {
+            written.completeExceptionally(e);
+        }
+        return written;
+    }
+
+    private static void awaitPublished(final CompletableFuture<Void> published) {
+        try {
+            published.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     private static void checkNotNull(final Object argument, final String message) {
@@ -55,7 +458,191 @@ public final class HttpCombo implements Combo {
         }
     }
 
-    private static final class GsonHttpClient implements HttpClient {
+    public static final class Builder {
+
+        private final HttpClient httpClient;
+        private PollStrategy pollStrategy = PollStrategy.defaultPollStrategy();
+        private PollStrategy recovery;
+        private SubscriptionStore subscriptionStore;
+        private ExecutorService executor;
+        private ScheduledExecutorService scheduler;
+        private PublishBatching publishBatching;
+        private DurableOutbox outbox;
+        private FactCodec codec = GsonFactCodec.gsonFactCodec();
+        private final Map<String, FactCodec> topicCodecs = new HashMap<>();
+        private Limiter publishLimiter = Limiter.NONE;
+        private Limiter pollLimiter = Limiter.NONE;
+        private ComboMetrics metrics = ComboMetrics.NONE;
+
+        private Builder(final HttpClient httpClient) {
+            this.httpClient = httpClient;
+        }
+
+        public Builder withPollStrategy(final PollStrategy pollStrategy) {
+            checkNotNull(pollStrategy, "Cannot poll for facts without a poll strategy");
+            this.pollStrategy = pollStrategy;
+            return this;
+        }
+
+        /**
+         * Keep streams of facts alive when polling fails, for instance because the server restarted and no longer
+         * knows the subscription. After each failure the stream waits as long as the backoff gives for the number
+         * of failures in a row. If the server could not be reached, or responded that it does not know the
+         * subscription, the stream then subscribes to the topic again and carries on polling, and facts left on the
+         * old subscription are lost. After a server error, a request timeout or too many requests it polls the same
+         * subscription again. Other failures, such as a client error or a {@link FactDecodingException} for a fact
+         * that could not be decoded, are passed to the consumer, as subscribing again would not help.
+         * <p>
+         * Without recovery, which is the default, a failure to poll ends the stream.
+         */
+        public Builder withRecovery(final PollStrategy backoff) {
+            checkNotNull(backoff, "Cannot recover subscriptions without a backoff");
+            this.recovery = backoff;
+            return this;
+        }
+
+        /**
+         * Save the ids of named subscriptions, so that a restarted process carries on polling them rather than
+         * subscribing again. A saved subscription may be unknown to the server by the time it is used again, so
+         * this is best combined with {@link #withRecovery(PollStrategy) recovery}.
+         *
+         * @see SubscriptionOptions#withSubscriptionName(String)
+         */
+        public Builder withSubscriptionStore(final SubscriptionStore subscriptionStore) {
+            checkNotNull(subscriptionStore, "Cannot save subscriptions without a subscription store");
+            this.subscriptionStore = subscriptionStore;
+            return this;
+        }
+
+        /**
+         * Executor used for blocking background work such as prefetching facts, processing facts in parallel
+         * and asynchronous publishing. Each prefetching subscription occupies one thread per request in flight.
+         * Defaults to a shared pool of daemon threads.
+         */
+        public Builder withExecutor(final ExecutorService executor) {
+            checkNotNull(executor, "Cannot do background work without an executor");
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Scheduler used to poll subscriptions made through {@link #subscribe(String, Class, FactSubscriber)}.
+         * Defaults to a shared pool with a daemon thread per processor.
+         */
+        public Builder withScheduler(final ScheduledExecutorService scheduler) {
+            checkNotNull(scheduler, "Cannot poll subscriptions without a scheduler");
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Publish facts through a batching pipeline. Both {@link #publishFact(String, Object)} and
+         * {@link #publishFactAsync(String, Object)} go through the pipeline. The former does not linger, it sends its
+         * topic's queued facts straight away and waits for its own to be sent.
+         */
+        public Builder withPublishBatching(final PublishBatching publishBatching) {
+            checkNotNull(publishBatching, "Cannot batch published facts without batching options");
+            this.publishBatching = publishBatching;
+            return this;
+        }
+
+        /**
+         * Publish facts through a durable outbox on local disk. Both {@link #publishFact(String, Object)} and
+         * {@link #publishFactAsync(String, Object)} return once the fact is written to the outbox, and facts are
+         * published from it in the background, in order and one at a time. Publish batching does not apply to
+         * facts published through an outbox.
+         */
+        public Builder withOutbox(final DurableOutbox outbox) {
+            checkNotNull(outbox, "Cannot publish facts through an outbox without an outbox");
+            this.outbox = outbox;
+            return this;
+        }
+
+        /**
+         * Limits the facts posted to the server, whether published directly, through batching or from an outbox.
+         * A publish the limiter rejects fails with a {@link LimitExceededException}, and is retried from an outbox
+         * as a failed post would be. Defaults to {@link Limiter#NONE}.
+         */
+        public Builder withPublishLimiter(final Limiter publishLimiter) {
+            checkNotNull(publishLimiter, "Cannot limit publishing without a limiter, use Limiter.NONE to allow every publish");
+            this.publishLimiter = publishLimiter;
+            return this;
+        }
+
+        /**
+         * Limits the polls made for streams of facts, which fail with a {@link LimitExceededException} when the
+         * limiter rejects a poll. With {@link #withRecovery(PollStrategy) recovery} the stream instead backs off and
+         * polls the same subscription again. Pushed subscriptions already poll only as facts are requested, and are
+         * not limited. Defaults to {@link Limiter#NONE}.
+         */
+        public Builder withPollLimiter(final Limiter pollLimiter) {
+            checkNotNull(pollLimiter, "Cannot limit polling without a limiter, use Limiter.NONE to allow every poll");
+            this.pollLimiter = pollLimiter;
+            return this;
+        }
+
+        /**
+         * Codec for facts on every topic without a codec of its own. Defaults to json with Gson. String facts are
+         * always published and consumed as they are.
+         */
+        public Builder withCodec(final FactCodec codec) {
+            checkNotNull(codec, "Cannot encode or decode facts without a codec");
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * Codec for facts on one topic, for instance a binary codec for a topic where publishers and consumers have
+         * agreed on it.
+         */
+        public Builder withTopicCodec(final String topicName, final FactCodec codec) {
+            checkNotNull(topicName, "Cannot encode or decode facts for a null topic");
+            checkNotNull(codec, "Cannot encode or decode facts without a codec");
+            this.topicCodecs.put(topicName, codec);
+            return this;
+        }
+
+        /**
+         * Metrics told about subscribing, polling, decoding and publishing on each topic. Defaults to
+         * {@link ComboMetrics#NONE}.
+         */
+        public Builder withMetrics(final ComboMetrics metrics) {
+            checkNotNull(metrics, "Cannot record metrics without metrics, use ComboMetrics.NONE to record none");
+            this.metrics = metrics;
+            return this;
+        }
+
+        public HttpCombo build() {
+            return new HttpCombo(httpClient, pollStrategy, recovery, subscriptionStore,
+                    executor != null ? executor : DefaultExecutors.EXECUTOR,
+                    scheduler != null ? scheduler : DefaultExecutors.SCHEDULER,
+                    publishBatching,
+                    outbox,
+                    new FactCodecs(codec, topicCodecs),
+                    publishLimiter,
+                    pollLimiter,
+                    metrics);
+        }
+    }
+
+    private static final class DefaultExecutors {
+
+        private static final ExecutorService EXECUTOR = newCachedThreadPool(daemonThreads("combo-"));
+
+        private static final ScheduledExecutorService SCHEDULER = newScheduledThreadPool(
+                Runtime.getRuntime().availableProcessors(), daemonThreads("combo-scheduler-"));
+
+        private static ThreadFactory daemonThreads(final String namePrefix) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            return runnable -> {
+                final Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    private static final class GsonHttpClient implements AsyncHttpClient {
 
         private final HttpClient httpClient;
         private final Gson gson;
@@ -65,9 +652,17 @@ public final class HttpCombo implements Combo {
             this.gson = gson;
         }
 
+        @SuppressWarnings("unchecked")
         @Override public <T> HttpResponse<T> get(final URI path, final Class<T> responseType) {
-            return responseBodyTransformer(gson, responseType)
-                    .apply(httpClient.get(path, String.class));
+            if (String.class == responseType) {
+                return (HttpResponse<T>) httpClient.get(path, String.class);
+            }
+
+            return responseBodyTransformer(gson, responseType).apply(httpClient.get(path, String.class));
+        }
+
+        @Override public <T> HttpResponse<T> get(final URI path, final BodyReader<T> bodyReader) {
+            return noContentWithoutBody(httpClient.get(path, bodyReader));
         }
 
         @Override
@@ -78,12 +673,95 @@ public final class HttpCombo implements Combo {
                     .apply(httpClient.post(path, requestBodyString, String.class));
         }
 
+        @Override public <T> HttpResponse<T> post(final URI path,
+                                                  final byte[] requestBody,
+                                                  final String contentType,
+                                                  final Class<T> responseType) {
+            return responseBodyTransformer(gson, responseType)
+                    .apply(httpClient.post(path, requestBody, contentType, String.class));
+        }
+
+        @Override public <T> HttpResponse<T> post(final URI path,
+                                                  final BodyWriter requestBody,
+                                                  final String contentType,
+                                                  final Class<T> responseType) {
+            return responseBodyTransformer(gson, responseType)
+                    .apply(httpClient.post(path, requestBody, contentType, String.class));
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override public <T> CompletableFuture<HttpResponse<T>> getAsync(final URI path, final Class<T> responseType) {
+            if (!(httpClient instanceof AsyncHttpClient)) {
+                return completedFuture(get(path, responseType));
+            }
+
+            if (String.class == responseType) {
+                return (CompletableFuture<HttpResponse<T>>) (CompletableFuture<?>) ((AsyncHttpClient) httpClient).getAsync(path, String.class);
+            }
+
+            return ((AsyncHttpClient) httpClient).getAsync(path, String.class)
+                    .thenApply(responseBodyTransformer(gson, responseType));
+        }
+
+        @Override public <T> CompletableFuture<HttpResponse<T>> getAsync(final URI path, final BodyReader<T> bodyReader) {
+            if (!(httpClient instanceof AsyncHttpClient)) {
+                return completedFuture(get(path, bodyReader));
+            }
+
+            return ((AsyncHttpClient) httpClient).getAsync(path, bodyReader)
+                    .thenApply(GsonHttpClient::noContentWithoutBody);
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> postAsync(final URI path, final Object requestBody, final Class<T> responseType) {
+            if (!(httpClient instanceof AsyncHttpClient)) {
+                return completedFuture(post(path, requestBody, responseType));
+            }
+
+            final String requestBodyString = requestBodyTransformer(gson).apply(requestBody);
+
+            return ((AsyncHttpClient) httpClient).postAsync(path, requestBodyString, String.class)
+                    .thenApply(responseBodyTransformer(gson, responseType));
+        }
+
+        @Override public <T> CompletableFuture<HttpResponse<T>> postAsync(final URI path,
+                                                                         final byte[] requestBody,
+                                                                         final String contentType,
+                                                                         final Class<T> responseType) {
+            if (!(httpClient instanceof AsyncHttpClient)) {
+                return completedFuture(post(path, requestBody, contentType, responseType));
+            }
+
+            return ((AsyncHttpClient) httpClient).postAsync(path, requestBody, contentType, String.class)
+                    .thenApply(responseBodyTransformer(gson, responseType));
+        }
+
+        @Override public <T> CompletableFuture<HttpResponse<T>> postAsync(final URI path,
+                                                                         final BodyWriter requestBody,
+                                                                         final String contentType,
+                                                                         final Class<T> responseType) {
+            if (!(httpClient instanceof AsyncHttpClient)) {
+                return completedFuture(post(path, requestBody, contentType, responseType));
+            }
+
+            return ((AsyncHttpClient) httpClient).postAsync(path, requestBody, contentType, String.class)
+                    .thenApply(responseBodyTransformer(gson, responseType));
+        }
+
+        @Override public int statusOf(final Throwable failure) {
+            return httpClient.statusOf(failure);
+        }
+
         private static Function<Object, String> requestBodyTransformer(final Gson gson) {
             return requestBody -> requestBody instanceof String
                     ? (String) requestBody
                     : gson.toJson(requestBody);
         }
 
+        private static <T> HttpResponse<T> noContentWithoutBody(final HttpResponse<T> response) {
+            return response.getStatusCode() == NO_CONTENT ? noContent() : response;
+        }
+
         @SuppressWarnings("unchecked")
         private static <T> Function<HttpResponse<String>, HttpResponse<T>> responseBodyTransformer(final Gson gson, final Class<? extends T> responseType) {
             return response -> {
@@ -100,33 +778,249 @@ public final class HttpCombo implements Combo {
 
     private static final class FactProvider {
 
-        private final HttpClient httpClient;
+        /**
+         * Reads a fact as it was sent, for a shared subscription to decode for each of its consumers.
+         */
+        private static final FactDecoder<byte[]> RAW_FACT = BodyReaders::readAllBytes;
 
-        private FactProvider(final HttpClient httpClient) {
+        private final AsyncHttpClient httpClient;
+        private final PollStrategy pollStrategy;
+        private final Limiter limiter;
+        private final ComboMetrics metrics;
+
+        private FactProvider(final AsyncHttpClient httpClient,
+                             final PollStrategy pollStrategy,
+                             final Limiter limiter,
+                             final ComboMetrics metrics) {
             this.httpClient = httpClient;
+            this.pollStrategy = pollStrategy;
+            this.limiter = limiter;
+            this.metrics = metrics;
+        }
+
+        private <T> HttpResponse<? extends T> poll(final SubscriptionId subscriptionId,
+                                                   final Class<? extends T> classOfFact,
+                                                   final FactDecoder<? extends T> decoder) {
+            final HttpResponse<? extends T> response;
+            final long start;
+            try {
+                limiter.acquire();
+            } catch (final RuntimeException e) {
+                metrics.failed(subscriptionId.topicName(), e);
+                throw e;
+            }
+            start = System.nanoTime();
+            try {
+                response = decoder == null
+                        ? httpClient.get(subscriptionId.nextFact(), classOfFact)
+                        : httpClient.get(subscriptionId.nextFact(), decoder);
+            } catch (final RuntimeException e) {
+                limiter.release(System.nanoTime() - start, false);
+                metrics.failed(subscriptionId.topicName(), e);
+                throw e;
+            }
+            final long latency = System.nanoTime() - start;
+            limiter.release(latency, true);
+            metrics.polled(subscriptionId.topicName(), response.getStatusCode() != NO_CONTENT, latency);
+            return response;
+        }
+
+        private <T> CompletableFuture<? extends HttpResponse<? extends T>> pollAsync(final SubscriptionId subscriptionId,
+                                                                                     final Class<? extends T> classOfFact,
+                                                                                     final FactDecoder<? extends T> decoder) {
+            final long start = System.nanoTime();
+            final CompletableFuture<? extends HttpResponse<? extends T>> response = decoder == null
+                    ? httpClient.getAsync(subscriptionId.nextFact(), classOfFact)
+                    : httpClient.getAsync(subscriptionId.nextFact(), decoder);
+
+            if (metrics == ComboMetrics.NONE) {
+                return response;
+            }
+            return response.whenComplete((completedResponse, error) -> {
+                if (error != null) {
+                    metrics.failed(subscriptionId.topicName(), error);
+                } else {
+                    metrics.polled(subscriptionId.topicName(), completedResponse.getStatusCode() != NO_CONTENT, System.nanoTime() - start);
+                }
+            });
+        }
+
+        private <T> T nextFact(final SubscriptionId subscriptionId,
+                               final Class<? extends T> classOfFact,
+                               final FactDecoder<? extends T> decoder) {
+            int consecutiveEmptyPolls = 0;
+
+            while (true) {
+                final HttpResponse<? extends T> response = poll(subscriptionId, classOfFact, decoder);
+
+                if (response.getStatusCode() != NO_CONTENT) {
+                    return response.getBody();
+                }
+
+                if (consecutiveEmptyPolls < Integer.MAX_VALUE) {
+                    consecutiveEmptyPolls++;
+                }
+                pause(pollStrategy.delayAfterEmptyPolls(consecutiveEmptyPolls));
+            }
+        }
+
+        private static void pause(final long delay) {
+            if (delay <= 0L) {
+                return;
+            }
+
+            try {
+                Thread.sleep(delay);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ComboInterruptedException(e);
+            }
+        }
+    }
+
+    /**
+     * A response body that notes whether reading it failed, as opposed to decoding what was read.
+     */
+    private static final class ResponseStream extends FilterInputStream {
+
+        private boolean failed;
+
+        private ResponseStream(final InputStream body) {
+            super(body);
+        }
+
+        @Override public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (final IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            try {
+                return super.read(bytes, offset, length);
+            } catch (final IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override public long skip(final long count) throws IOException {
+            try {
+                return super.skip(count);
+            } catch (final IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A subscription to a topic, which with recovery is replaced by a new one when the server loses it.
+     */
+    private final class Subscription {
+
+        private final String topicName;
+        private final String subscriptionKey;
+
+        private volatile SubscriptionId subscriptionId;
+
+        private Subscription(final String topicName, final String subscriptionKey) {
+            this.topicName = topicName;
+            this.subscriptionKey = subscriptionKey;
         }
 
-        private <T> T nextFact(final SubscriptionId subscriptionId, final Class<? extends T> classOfFact) {
-            final HttpResponse<? extends T> response = httpClient.get(Paths.nextFact(subscriptionId), classOfFact);
+        private <T> T nextFact(final Class<? extends T> classOfFact, final FactDecoder<? extends T> decoder) {
+            if (recovery == null) {
+                return factProvider.nextFact(subscriptionId, classOfFact, decoder);
+            }
+
+            int consecutiveFailures = 0;
+            while (true) {
+                final SubscriptionId failed = subscriptionId;
+                try {
+                    return factProvider.nextFact(failed, classOfFact, decoder);
+                } catch (final ComboInterruptedException e) {
+                    throw e;
+                } catch (final LimitExceededException e) {
+                    //The poll was never sent, the subscription is fine
+                    if (consecutiveFailures < Integer.MAX_VALUE) {
+                        consecutiveFailures++;
+                    }
+                    FactProvider.pause(recovery.delayAfterEmptyPolls(consecutiveFailures));
+                } catch (final RuntimeException e) {
+                    final int statusCode = httpClient.statusOf(e);
+                    if (causedBy(e, FactDecodingException.class) || !lost(statusCode) && !struggling(statusCode)) {
+                        throw e;
+                    }
+                    if (consecutiveFailures < Integer.MAX_VALUE) {
+                        consecutiveFailures++;
+                    }
+                    FactProvider.pause(recovery.delayAfterEmptyPolls(consecutiveFailures));
+                    if (lost(statusCode)) {
+                        try {
+                            resubscribe(failed);
+                        } catch (final RuntimeException resubscribeFailure) {
+                            //Recorded by the metrics, try again after the next failure
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return true if the server no longer knows the subscription, or could not be reached to ask, as when it
+         * restarted
+         */
+        private boolean lost(final int statusCode) {
+            return statusCode == 0 || statusCode == NOT_FOUND;
+        }
+
+        /**
+         * @return true if the server failed the poll but may well answer the next one on the same subscription
+         */
+        private boolean struggling(final int statusCode) {
+            return statusCode >= 500 || statusCode == REQUEST_TIMEOUT || statusCode == TOO_MANY_REQUESTS;
+        }
 
-            if (response.getStatusCode() == NO_CONTENT) {
-                return nextFact(subscriptionId, classOfFact);
+        /**
+         * Subscribes again, unless another thread polling the same subscription already has.
+         */
+        private synchronized void resubscribe(final SubscriptionId failed) {
+            if (subscriptionId != failed) {
+                return;
             }
 
-            return response.getBody();
+            subscriptionId = topicSubscriber.subscribeTo(topicName);
+            if (subscriptionKey != null) {
+                subscriptionStore.save(subscriptionKey, subscriptionId.comboId());
+            }
         }
     }
 
     private static final class TopicSubscriber {
 
         private final HttpClient httpClient;
+        private final ComboMetrics metrics;
 
-        private TopicSubscriber(final HttpClient httpClient) {
+        private TopicSubscriber(final HttpClient httpClient, final ComboMetrics metrics) {
             this.httpClient = httpClient;
+            this.metrics = metrics;
         }
 
         private SubscriptionId subscribeTo(final String topicName) {
-            final HttpResponse<Map> response = httpClient.post(Paths.subscriptions(topicName), "", Map.class);
+            final long start = System.nanoTime();
+            final HttpResponse<Map> response;
+            try {
+                response = httpClient.post(Paths.subscriptions(topicName), "", Map.class);
+            } catch (final RuntimeException e) {
+                metrics.failed(topicName, e);
+                throw e;
+            }
+            metrics.subscribed(topicName, System.nanoTime() - start);
+
             final String comboId = (String) response.getBody().get("subscription_id");
             return new SubscriptionId(topicName, comboId);
         }
@@ -134,25 +1028,85 @@ public final class HttpCombo implements Combo {
 
     private static final class FactPublisher {
 
-        private final HttpClient httpClient;
+        private final AsyncHttpClient httpClient;
+        private final Limiter limiter;
+        private final ComboMetrics metrics;
 
-        private FactPublisher(final HttpClient httpClient) {
+        private FactPublisher(final AsyncHttpClient httpClient, final Limiter limiter, final ComboMetrics metrics) {
             this.httpClient = httpClient;
+            this.limiter = limiter;
+            this.metrics = metrics;
         }
 
-        private <T> void publishFact(final String topicName, final T fact) {
-            httpClient.post(Paths.facts(topicName), fact, Void.class);
+        /**
+         * Waits for the limiter before posting. Latencies are timed from when the post is allowed, so that time spent
+         * waiting for the limiter does not look like the server slowing down.
+         */
+        private void publishFact(final String topicName, final EncodedFact fact) {
+            acquire(topicName);
+            final long start = System.nanoTime();
+            try {
+                httpClient.post(Paths.facts(topicName), fact, fact.contentType(), Void.class);
+            } catch (final RuntimeException e) {
+                limiter.release(System.nanoTime() - start, false);
+                metrics.failed(topicName, e);
+                throw e;
+            }
+            final long latency = System.nanoTime() - start;
+            limiter.release(latency, true);
+            metrics.published(topicName, latency);
+        }
+
+        /**
+         * Waits for the limiter on the calling thread, and fails the returned future if the limiter rejects the post.
+         */
+        private CompletableFuture<Void> publishFactAsync(final String topicName, final EncodedFact fact) {
+            try {
+                acquire(topicName);
+            } catch (final RuntimeException e) {
+                final CompletableFuture<Void> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(e);
+                return rejected;
+            }
+
+            final long start = System.nanoTime();
+            final CompletableFuture<HttpResponse<Void>> posted =
+                    httpClient.postAsync(Paths.facts(topicName), fact, fact.contentType(), Void.class);
+            return posted.handle((response, error) -> {
+                final long latency = System.nanoTime() - start;
+                limiter.release(latency, error == null);
+                if (error != null) {
+                    metrics.failed(topicName, error);
+                    throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+                }
+                metrics.published(topicName, latency);
+                return null;
+            });
+        }
+
+        private void acquire(final String topicName) {
+            try {
+                limiter.acquire();
+            } catch (final RuntimeException e) {
+                metrics.failed(topicName, e);
+                throw e;
+            }
         }
     }
 
+    /**
+     * Identifies a subscription, along with the uri it is polled at so that polling does not build a uri each time.
+     */
     private static final class SubscriptionId {
 
         private final String topicName;
         private final String comboId;
+        private final URI nextFact;
 
         private SubscriptionId(final String topicName, final String comboId) {
             this.topicName = topicName;
             this.comboId = comboId;
+            this.nextFact = Paths.nextFact(topicName, comboId);
         }
 
         private String topicName() {
@@ -162,6 +1116,10 @@ public final class HttpCombo implements Combo {
         private String comboId() {
             return comboId;
         }
+
+        private URI nextFact() {
+            return nextFact;
+        }
     }
 
     private static final class Paths {
@@ -169,8 +1127,8 @@ public final class HttpCombo implements Combo {
             return create(format("/topics/%s/subscriptions", topicName));
         }
 
-        private static URI nextFact(final SubscriptionId subscriptionId) {
-            return create(format("/topics/%s/subscriptions/%s/next", subscriptionId.topicName(), subscriptionId.comboId()));
+        private static URI nextFact(final String topicName, final String comboId) {
+            return create(format("/topics/%s/subscriptions/%s/next", topicName, comboId));
         }
 
         public static URI facts(final String topicName) {
@@ -4,6 +4,8 @@ import static combo.HttpResponse.Status.NO_CONTENT;
 
 public final class HttpResponse<T> {
 
+    private static final HttpResponse<?> NO_CONTENT_RESPONSE = new HttpResponse<>(NO_CONTENT, null);
+
     private final int statusCode;
     private final T body;
 
@@ -24,11 +26,15 @@ public final class HttpResponse<T> {
         return new HttpResponse<>(statusCode, body);
     }
 
+    @SuppressWarnings("unchecked")
     public static <T> HttpResponse<T> noContent() {
-        return new HttpResponse<>(NO_CONTENT, null);
+        return (HttpResponse<T>) NO_CONTENT_RESPONSE;
     }
 
     public static final class Status {
         public static final int NO_CONTENT = 204;
+        public static final int NOT_FOUND = 404;
+        public static final int REQUEST_TIMEOUT = 408;
+        public static final int TOO_MANY_REQUESTS = 429;
     }
 }
@@ -0,0 +1,205 @@
+package combo;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Finds fields in json held as UTF-8 bytes without parsing it, by skipping over the values of other fields.
+ * <p>
+ * Field names are compared as they appear in the json, so a name written with escapes is not matched by its
+ * unescaped form. Malformed json is treated as not having the field.
+ */
+final class JsonFields {
+
+    static final long NOT_FOUND = -1L;
+
+    /**
+     * @param start the offset of the opening brace of an object, or of whitespace before it
+     * @param end   the offset just past the end of the object
+     * @return the offsets of the start of the field's value and just past its end, packed as
+     * {@code start << 32 | end}, or {@link #NOT_FOUND}
+     */
+    static long field(final byte[] json, final int start, final int end, final byte[] name) {
+        int i = skipWhitespace(json, start, end);
+        if (i >= end || json[i] != '{') {
+            return NOT_FOUND;
+        }
+        i = skipWhitespace(json, i + 1, end);
+        if (i < end && json[i] == '}') {
+            return NOT_FOUND;
+        }
+
+        while (i < end && json[i] == '"') {
+            final int nameStart = i + 1;
+            final int afterName = skipString(json, i, end);
+            if (afterName < 0) {
+                return NOT_FOUND;
+            }
+            final int nameEnd = afterName - 1;
+            i = skipWhitespace(json, afterName, end);
+            if (i >= end || json[i] != ':') {
+                return NOT_FOUND;
+            }
+
+            final int valueStart = skipWhitespace(json, i + 1, end);
+            final int valueEnd = skipValue(json, valueStart, end);
+            if (valueEnd < 0) {
+                return NOT_FOUND;
+            }
+            if (equals(json, nameStart, nameEnd, name)) {
+                return (long) valueStart << 32 | valueEnd;
+            }
+
+            i = skipWhitespace(json, valueEnd, end);
+            if (i >= end || json[i] != ',') {
+                return NOT_FOUND;
+            }
+            i = skipWhitespace(json, i + 1, end);
+        }
+        return NOT_FOUND;
+    }
+
+    static int valueStart(final long field) {
+        return (int) (field >>> 32);
+    }
+
+    static int valueEnd(final long field) {
+        return (int) field;
+    }
+
+    /**
+     * @return the value between the offsets as a String, unescaped if it is a json string, or null if it is null
+     */
+    static String string(final byte[] json, final int start, final int end) {
+        if (end - start == 4 && json[start] == 'n' && json[start + 1] == 'u' && json[start + 2] == 'l' && json[start + 3] == 'l') {
+            return null;
+        }
+        if (end - start < 2 || json[start] != '"') {
+            return new String(json, start, end - start, UTF_8);
+        }
+
+        int i = start + 1;
+        while (i < end - 1 && json[i] != '\\') {
+            i++;
+        }
+        if (i == end - 1) {
+            //Nothing escaped, the usual case
+            return new String(json, start + 1, end - start - 2, UTF_8);
+        }
+
+        final StringBuilder string = new StringBuilder(end - start);
+        int from = start + 1;
+        while (i < end - 1) {
+            if (json[i] != '\\') {
+                i++;
+                continue;
+            }
+            string.append(new String(json, from, i - from, UTF_8));
+            final byte escaped = json[i + 1];
+            switch (escaped) {
+                case 'b': string.append('\b'); break;
+                case 'f': string.append('\f'); break;
+                case 'n': string.append('\n'); break;
+                case 'r': string.append('\r'); break;
+                case 't': string.append('\t'); break;
+                case 'u':
+                    string.append((char) Integer.parseInt(new String(json, i + 2, 4, UTF_8), 16));
+                    i += 4;
+                    break;
+                default: string.append((char) escaped);
+            }
+            i += 2;
+            from = i;
+        }
+        return string.append(new String(json, from, end - 1 - from, UTF_8)).toString();
+    }
+
+    /**
+     * @return the offset just past the value starting at the offset, or -1 if the json ends first
+     */
+    static int skipValue(final byte[] json, final int start, final int end) {
+        if (start >= end) {
+            return -1;
+        }
+
+        switch (json[start]) {
+            case '"':
+                return skipString(json, start, end);
+            case '{':
+            case '[':
+                return skipContainer(json, start, end);
+            default:
+                int i = start;
+                while (i < end && !endOfLiteral(json[i])) {
+                    i++;
+                }
+                return i;
+        }
+    }
+
+    private static int skipContainer(final byte[] json, final int start, final int end) {
+        int depth = 0;
+        int i = start;
+        while (i < end) {
+            final byte b = json[i];
+            if (b == '"') {
+                i = skipString(json, i, end);
+                if (i < 0) {
+                    return -1;
+                }
+                continue;
+            }
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if ((b == '}' || b == ']') && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the offset just past the closing quote of the string opening at the offset, or -1 if it is not closed
+     */
+    private static int skipString(final byte[] json, final int start, final int end) {
+        int i = start + 1;
+        while (i < end) {
+            final byte b = json[i];
+            if (b == '\\') {
+                i += 2;
+            } else if (b == '"') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(final byte[] json, final int start, final int end) {
+        int i = start;
+        while (i < end && (json[i] == ' ' || json[i] == '\n' || json[i] == '\r' || json[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean endOfLiteral(final byte b) {
+        return b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean equals(final byte[] json, final int start, final int end, final byte[] name) {
+        if (end - start != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (json[start + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private JsonFields() {
+    }
+}
@@ -0,0 +1,80 @@
+package combo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.lang.Long.numberOfLeadingZeros;
+
+/**
+ * Counts latencies in buckets that grow exponentially, with {@value #SUB_BUCKETS} buckets between each power of
+ * two, so any latency is recorded to within about 12% of its value. Recording never allocates or takes a lock.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final long[] UPPER_BOUNDS = new long[BUCKETS];
+
+    static {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            UPPER_BOUNDS[bucket] = upperBoundOf(bucket);
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(final long latencyNanos) {
+        final long latency = latencyNanos < 0L ? 0L : latencyNanos;
+
+        counts.incrementAndGet(bucketOf(latency));
+        total.addAndGet(latency);
+
+        long currentMax;
+        while (latency > (currentMax = max.get()) && !max.compareAndSet(currentMax, latency)) {
+            //Try again, another thread recorded a new max
+        }
+    }
+
+    /**
+     * The count is summed from the buckets rather than kept apart, so that it always agrees with them.
+     */
+    LatencySnapshot snapshot() {
+        final long[] bucketCounts = new long[BUCKETS];
+        long snapshotCount = 0L;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            bucketCounts[bucket] = counts.get(bucket);
+            snapshotCount += bucketCounts[bucket];
+        }
+
+        return new LatencySnapshot(snapshotCount, total.get(), max.get(), bucketCounts, UPPER_BOUNDS);
+    }
+
+    /**
+     * Latencies below {@value #SUB_BUCKETS} have a bucket each, above that each power of two is split into
+     * {@value #SUB_BUCKETS} buckets by the bits following the highest.
+     */
+    static int bucketOf(final long latency) {
+        if (latency < SUB_BUCKETS) {
+            return (int) latency;
+        }
+
+        final int highestBit = 63 - numberOfLeadingZeros(latency);
+        final int subBucket = (int) (latency >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        final int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = bucket % SUB_BUCKETS;
+        final long lowerBound = (1L << highestBit) | (subBucket << (highestBit - SUB_BUCKET_BITS));
+        final long width = 1L << (highestBit - SUB_BUCKET_BITS);
+        return lowerBound + width - 1 < 0L ? Long.MAX_VALUE : lowerBound + width - 1;
+    }
+}
@@ -0,0 +1,67 @@
+package combo;
+
+import static java.lang.Math.ceil;
+
+/**
+ * The latencies recorded for one operation, in nanoseconds. Percentiles are accurate to within about 12%.
+ */
+public final class LatencySnapshot {
+
+    private final long count;
+    private final long total;
+    private final long max;
+    private final long[] bucketCounts;
+    private final long[] upperBounds;
+
+    LatencySnapshot(final long count, final long total, final long max, final long[] bucketCounts, final long[] upperBounds) {
+        this.count = count;
+        this.total = total;
+        this.max = max;
+        this.bucketCounts = bucketCounts;
+        this.upperBounds = upperBounds;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0L ? 0.0d : (double) total / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100, e.g. 99.9
+     * @return the latency that the given percentage of latencies were no greater than, or 0 if none were recorded
+     */
+    public long getPercentile(final double percentile) {
+        if (percentile < 0.0d || percentile > 100.0d) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        if (count == 0L) {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L, (long) ceil(percentile / 100.0d * count));
+        long seen = 0L;
+        for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+            seen += bucketCounts[bucket];
+            if (seen >= rank) {
+                return Math.min(upperBounds[bucket], max);
+            }
+        }
+        return max;
+    }
+
+    @Override public String toString() {
+        return "count=" + count
+                + ", mean=" + (long) getMean()
+                + ", p50=" + getPercentile(50.0d)
+                + ", p99=" + getPercentile(99.0d)
+                + ", p99.9=" + getPercentile(99.9d)
+                + ", max=" + max;
+    }
+}
@@ -0,0 +1,10 @@
+package combo;
+
+/**
+ * Thrown when a {@link Limiter} rejects a request because it could not be allowed within the limiter's maximum wait.
+ */
+public final class LimitExceededException extends RuntimeException {
+    public LimitExceededException(final String message) {
+        super(message);
+    }
+}
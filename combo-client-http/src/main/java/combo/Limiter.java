@@ -0,0 +1,57 @@
+package combo;
+
+/**
+ * Limits the requests a combo makes to the combo server, so that many threads sharing a combo do not overwhelm a
+ * slow server, or themselves, with requests.
+ * <p>
+ * Each request waits in {@link #acquire()} until the limiter allows it, and once it completes is handed back with
+ * {@link #release(long, boolean)}, so that limiters can adapt to how the server is coping. A limiter that cannot allow
+ * a request within its maximum wait rejects it with a {@link LimitExceededException}. With no wait at all requests
+ * over the limit are rejected straight away, otherwise they queue.
+ * <p>
+ * Limiters are shared by every thread using the combo and must be thread-safe. {@link #NONE}, the default, allows
+ * every request.
+ */
+public interface Limiter {
+
+    Limiter NONE = new Limiter() {
+        @Override public void acquire() {
+        }
+
+        @Override public void release(final long latencyNanos, final boolean succeeded) {
+        }
+    };
+
+    /**
+     * Waits until a request is allowed.
+     *
+     * @throws LimitExceededException if the request is not allowed within the limiter's maximum wait
+     */
+    void acquire();
+
+    /**
+     * @param latencyNanos the time the request took, not counting the time it waited to be allowed
+     * @param succeeded    false if the request failed
+     */
+    void release(long latencyNanos, boolean succeeded);
+
+    /**
+     * Allows requests at a steady rate, with bursts of up to {@code burst} requests after a quiet spell.
+     */
+    static Limiter tokenBucket(final double permitsPerSecond, final int burst, final long maxWaitMillis) {
+        return new TokenBucketLimiter(permitsPerSecond, burst, maxWaitMillis);
+    }
+
+    /**
+     * Allows as many requests in flight at once as the server handles without slowing down, finding that limit by
+     * additive increase and multiplicative decrease. The limit starts at {@code initialLimit} and grows by one for
+     * each request that completes within {@code latencyThresholdMillis} while the limit was at least half used. It
+     * is cut by a tenth for each request that fails or is slower than that, down to a limit of one.
+     */
+    static Limiter aimd(final int initialLimit,
+                        final int maxLimit,
+                        final long latencyThresholdMillis,
+                        final long maxWaitMillis) {
+        return new AimdLimiter(initialLimit, maxLimit, latencyThresholdMillis, maxWaitMillis);
+    }
+}
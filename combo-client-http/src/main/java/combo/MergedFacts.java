@@ -0,0 +1,112 @@
+package combo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Merges facts pushed from several topics into one queue drained by a single consumer.
+ * <p>
+ * Each topic has at most one fact requested at a time. A topic is only asked for another fact while the queue holds
+ * fewer than {@code bufferSize} facts, otherwise it waits until the consumer takes a fact, so the queue never holds
+ * more than one fact per topic beyond its size.
+ */
+final class MergedFacts<T> implements AutoCloseable {
+
+    private final int bufferSize;
+    private final BlockingQueue<Object> buffer = new LinkedBlockingQueue<>();
+    private final Queue<FactSubscription> waitingTopics = new ConcurrentLinkedQueue<>();
+    private final List<FactSubscription> subscriptions = new ArrayList<>();
+
+    private volatile boolean closed;
+
+    MergedFacts(final int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    FactSubscriber<T> subscriberFor(final String topicName) {
+        return new TopicSubscriber(topicName);
+    }
+
+    @SuppressWarnings("unchecked")
+    TopicFact<T> next() {
+        final Object element = take();
+
+        if (element instanceof Failure) {
+            close();
+            throw ((Failure) element).rethrow();
+        }
+
+        resumeWaitingTopic();
+
+        return (TopicFact<T>) element;
+    }
+
+    @Override public void close() {
+        closed = true;
+        synchronized (subscriptions) {
+            subscriptions.forEach(FactSubscription::cancel);
+        }
+    }
+
+    private void resumeWaitingTopic() {
+        final FactSubscription waitingTopic = waitingTopics.poll();
+        if (waitingTopic != null) {
+            waitingTopic.request(1);
+        }
+    }
+
+    private Object take() {
+        try {
+            return buffer.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ComboInterruptedException(e);
+        }
+    }
+
+    private final class TopicSubscriber implements FactSubscriber<T> {
+
+        private final String topicName;
+        private FactSubscription subscription;
+
+        private TopicSubscriber(final String topicName) {
+            this.topicName = topicName;
+        }
+
+        @Override public void onSubscribe(final FactSubscription subscription) {
+            this.subscription = subscription;
+            synchronized (subscriptions) {
+                subscriptions.add(subscription);
+            }
+
+            if (closed) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override public void onFact(final T fact) {
+            buffer.add(new TopicFact<>(topicName, fact));
+
+            if (buffer.size() < bufferSize) {
+                subscription.request(1);
+            } else {
+                waitingTopics.add(subscription);
+                if (buffer.size() < bufferSize) {
+                    resumeWaitingTopic();
+                }
+            }
+        }
+
+        @Override public void onError(final Throwable error) {
+            if (!closed) {
+                buffer.add(new Failure(error));
+            }
+        }
+    }
+}
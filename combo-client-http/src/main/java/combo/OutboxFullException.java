@@ -0,0 +1,11 @@
+package combo;
+
+/**
+ * Thrown when a fact cannot be written to a {@link DurableOutbox} because it already holds as many facts waiting to
+ * be published as its disk allowance allows.
+ */
+public final class OutboxFullException extends RuntimeException {
+    public OutboxFullException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,348 @@
+package combo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * An append-only journal of facts waiting to be published, kept in memory-mapped segment files of a fixed size.
+ * <p>
+ * Each record is its length followed by the topic, the content type and the fact. The length is written after the
+ * rest of the record, so a record is only seen once it is complete and a record half written when the process died
+ * is written over on restart. Everything after the last complete record is zeroed on restart, so that what is left of
+ * the half written record is not mistaken for a length once shorter records are written over it. A record that does
+ * not fit in the rest of a segment starts the next one, and at most
+ * {@code maxSegments} segments are kept. A segment is deleted once every record in it has been read and committed.
+ * <p>
+ * How far the journal has been read is kept in a checkpoint file, written after each committed record. A record may
+ * be read again after a restart if the process died between publishing it and committing it.
+ * <p>
+ * Writes reach the files as soon as they are made, but only reach the disk when {@link #force()} is called. Until
+ * then the machine going down may lose them, or keep a record's length without all of the record.
+ * <p>
+ * Any number of threads may append. Records are read and committed by a single thread.
+ */
+final class OutboxJournal {
+
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String CHECKPOINT = "outbox.checkpoint";
+
+    private static final int LENGTH_BYTES = 4;
+    private static final int END_OF_SEGMENT = -1;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final MappedByteBuffer checkpoint;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    //Guarded by lock
+    private final NavigableMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private long writeSegment;
+    private int writeOffset;
+    private long readSegment;
+    private int readOffset;
+    private long unforcedSegment;
+    private boolean unforced;
+
+    OutboxJournal(final Path directory, final int segmentSize, final int maxSegments) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+
+        try {
+            Files.createDirectories(directory);
+            this.checkpoint = map(directory.resolve(CHECKPOINT), Long.BYTES + Integer.BYTES);
+            recover();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @throws OutboxFullException if the fact needs a new segment and the journal already has as many as it may
+     */
+    void append(final String topicName, final EncodedFact fact) {
+        final byte[] topic = checkLength(topicName.getBytes(UTF_8), "topic name");
+        final byte[] contentType = checkLength(fact.contentType().getBytes(UTF_8), "content type");
+        final byte[] body = fact.bytes();
+        final int length = Short.BYTES + topic.length + Short.BYTES + contentType.length + body.length;
+        if (LENGTH_BYTES + length > segmentSize) {
+            throw new IllegalArgumentException(format(
+                    "Cannot keep a fact of %d bytes in an outbox with segments of %d bytes", body.length, segmentSize));
+        }
+
+        lock.lock();
+        try {
+            if (writeOffset + LENGTH_BYTES + length > segmentSize) {
+                roll();
+            }
+
+            final MappedByteBuffer segment = segments.get(writeSegment);
+            segment.position(writeOffset + LENGTH_BYTES);
+            segment.putShort((short) topic.length).put(topic);
+            segment.putShort((short) contentType.length).put(contentType);
+            segment.put(body);
+            segment.putInt(writeOffset, length);
+
+            writeOffset += LENGTH_BYTES + length;
+            unforced = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the oldest record not yet committed, or null if none was appended within the timeout
+     */
+    Record next(final long timeoutMillis) throws InterruptedException {
+        final ByteBuffer segment;
+        final int offset;
+
+        lock.lockInterruptibly();
+        try {
+            long remainingNanos = MILLISECONDS.toNanos(timeoutMillis);
+            while (true) {
+                if (readSegment < writeSegment && endOfSegment(segments.get(readSegment), readOffset)) {
+                    deleteSegment(readSegment);
+                    readSegment++;
+                    readOffset = 0;
+                } else if (readSegment == writeSegment && readOffset == writeOffset) {
+                    if (remainingNanos <= 0L) {
+                        return null;
+                    }
+                    remainingNanos = appended.awaitNanos(remainingNanos);
+                } else {
+                    break;
+                }
+            }
+            segment = segments.get(readSegment).duplicate();
+            offset = readOffset;
+        } finally {
+            lock.unlock();
+        }
+
+        //The record is complete and never written again, so it can be read without the lock
+        final int length = segment.getInt(offset);
+        segment.position(offset + LENGTH_BYTES);
+        final String topicName = readString(segment);
+        final String contentType = readString(segment);
+        final byte[] body = new byte[offset + LENGTH_BYTES + length - segment.position()];
+        segment.get(body);
+
+        return new Record(topicName, EncodedFact.encoded(contentType, body), offset + LENGTH_BYTES + length);
+    }
+
+    /**
+     * Marks the record as published, so that it is not read again.
+     */
+    void commit(final Record record) {
+        lock.lock();
+        try {
+            readOffset = record.nextOffset;
+            checkpoint.putLong(0, readSegment);
+            checkpoint.putInt(Long.BYTES, readOffset);
+            unforced = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the records appended and the checkpoint committed since last forced through to the disk.
+     */
+    void force() {
+        final List<MappedByteBuffer> written;
+        lock.lock();
+        try {
+            if (!unforced) {
+                return;
+            }
+            written = new ArrayList<>(segments.tailMap(unforcedSegment, true).values());
+            unforcedSegment = writeSegment;
+            unforced = false;
+        } finally {
+            lock.unlock();
+        }
+
+        //Forcing waits on the disk, which appends need not wait for
+        for (final MappedByteBuffer segment : written) {
+            segment.force();
+        }
+        checkpoint.force();
+    }
+
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return readSegment == writeSegment && readOffset == writeOffset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        final NavigableMap<Long, Path> files = new TreeMap<>();
+        try (final DirectoryStream<Path> paths = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (final Path path : paths) {
+                final String name = path.getFileName().toString();
+                files.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), path);
+            }
+        }
+
+        final long checkpointSegment = checkpoint.getLong(0);
+        if (files.containsKey(checkpointSegment)) {
+            readSegment = checkpointSegment;
+            readOffset = checkpoint.getInt(Long.BYTES);
+        } else {
+            readSegment = files.isEmpty() ? 0L : files.firstKey();
+            readOffset = 0;
+        }
+
+        for (final Map.Entry<Long, Path> file : files.entrySet()) {
+            if (file.getKey() < readSegment) {
+                Files.delete(file.getValue());
+            } else {
+                segments.put(file.getKey(), map(file.getValue(), segmentSize));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(readSegment, map(segmentPath(readSegment), segmentSize));
+        }
+
+        //Only the last segment can have room left, and only it needs scanning for where to append
+        writeSegment = segments.lastKey();
+        writeOffset = writeSegment == readSegment ? readOffset : 0;
+        final MappedByteBuffer last = segments.get(writeSegment);
+        while (!endOfSegment(last, writeOffset) && complete(last, writeOffset)) {
+            writeOffset += LENGTH_BYTES + last.getInt(writeOffset);
+        }
+        zeroFrom(last, writeOffset);
+        unforcedSegment = writeSegment;
+    }
+
+    private boolean complete(final ByteBuffer segment, final int offset) {
+        final int length = segment.getInt(offset);
+        return length > 0 && length <= segmentSize - offset - LENGTH_BYTES;
+    }
+
+    /**
+     * Only writes over bytes that are not already zero, so that the untouched rest of the segment is not written.
+     */
+    private void zeroFrom(final MappedByteBuffer segment, final int offset) {
+        int position = offset;
+        for (; position + Long.BYTES <= segmentSize; position += Long.BYTES) {
+            if (segment.getLong(position) != 0L) {
+                segment.putLong(position, 0L);
+            }
+        }
+        for (; position < segmentSize; position++) {
+            segment.put(position, (byte) 0);
+        }
+    }
+
+    private void roll() {
+        if (segments.size() >= maxSegments) {
+            throw new OutboxFullException(format(
+                    "Outbox in %s already has %d segments waiting to be published", directory, segments.size()));
+        }
+
+        final MappedByteBuffer segment = segments.get(writeSegment);
+        if (writeOffset + LENGTH_BYTES <= segmentSize) {
+            segment.putInt(writeOffset, END_OF_SEGMENT);
+        }
+
+        try {
+            segments.put(writeSegment + 1, map(segmentPath(writeSegment + 1), segmentSize));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        writeSegment++;
+        writeOffset = 0;
+    }
+
+    private boolean endOfSegment(final ByteBuffer segment, final int offset) {
+        return offset + LENGTH_BYTES > segmentSize || segment.getInt(offset) == END_OF_SEGMENT;
+    }
+
+    private void deleteSegment(final long index) {
+        //The mapping is released when the buffer is collected, the file can go now. The segment is only forgotten once
+        //it has gone, so that a failure to delete it is tried again
+        try {
+            Files.deleteIfExists(segmentPath(index));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments.remove(index);
+    }
+
+    private Path segmentPath(final long index) {
+        return directory.resolve(format("%s%019d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static MappedByteBuffer map(final Path path, final int size) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+            return channel.map(READ_WRITE, 0, size);
+        }
+    }
+
+    private static byte[] checkLength(final byte[] string, final String name) {
+        if (string.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException(format(
+                    "Cannot keep a fact with a %s of %d bytes in an outbox, the most is %d", name, string.length, MAX_STRING_BYTES));
+        }
+        return string;
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    static final class Record {
+
+        private final String topicName;
+        private final EncodedFact fact;
+        private final int nextOffset;
+
+        private Record(final String topicName, final EncodedFact fact, final int nextOffset) {
+            this.topicName = topicName;
+            this.fact = fact;
+            this.nextOffset = nextOffset;
+        }
+
+        String topicName() {
+            return topicName;
+        }
+
+        EncodedFact fact() {
+            return fact;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package combo;
+
+/**
+ * Told of the facts a {@link DurableOutbox} gives up publishing, and of failures draining it, which would otherwise
+ * go unseen as the outbox is drained in the background.
+ * <p>
+ * Methods are called on the thread draining the outbox, which waits for them to return. Every method does nothing by
+ * default, implementations need only override what they are interested in. {@link #NONE}, the default, is told
+ * nothing.
+ * <p>
+ * A listener throwing does not stop the outbox being drained: a failure to take an undeliverable fact is passed to
+ * {@link #drainFailed}, and the fact is still taken out of the outbox. Failures of {@code drainFailed} are ignored.
+ */
+public interface OutboxListener {
+
+    OutboxListener NONE = new OutboxListener() {
+    };
+
+    /**
+     * The fact has been taken out of the outbox without being published, because the server rejected it with a
+     * client error, or publishing it failed as many times as the outbox allows. Keep it here if it must not be lost.
+     *
+     * @param fact    the fact as it was encoded
+     * @param failure the failure of the last attempt to publish it
+     */
+    default void undeliverable(final String topicName,
+                               final String contentType,
+                               final byte[] fact,
+                               final RuntimeException failure) {
+    }
+
+    /**
+     * Draining the outbox failed other than by publishing a fact, as when a segment of its journal could not be
+     * deleted. Draining carries on after the outbox's retry delay.
+     */
+    default void drainFailed(final RuntimeException failure) {
+    }
+}
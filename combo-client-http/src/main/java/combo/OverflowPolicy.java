@@ -0,0 +1,69 @@
+package combo;
+
+import java.util.function.Function;
+
+/**
+ * What a subscription does when its buffer of facts is full because the consumer has fallen behind.
+ */
+public final class OverflowPolicy {
+
+    private static final OverflowPolicy BLOCK = new OverflowPolicy(Kind.BLOCK, null);
+    private static final OverflowPolicy DROP_OLDEST = new OverflowPolicy(Kind.DROP_OLDEST, null);
+    private static final OverflowPolicy DROP_NEWEST = new OverflowPolicy(Kind.DROP_NEWEST, null);
+
+    enum Kind {
+        BLOCK, DROP_OLDEST, DROP_NEWEST, CONFLATE
+    }
+
+    private final Kind kind;
+    private final Function<Object, ?> key;
+
+    private OverflowPolicy(final Kind kind, final Function<Object, ?> key) {
+        this.kind = kind;
+        this.key = key;
+    }
+
+    /**
+     * Stop polling until the consumer makes room. No facts are lost, but the subscription lags behind the topic.
+     */
+    public static OverflowPolicy block() {
+        return BLOCK;
+    }
+
+    /**
+     * Throw away the oldest buffered fact to make room for the newest.
+     */
+    public static OverflowPolicy dropOldest() {
+        return DROP_OLDEST;
+    }
+
+    /**
+     * Throw away facts that arrive while the buffer is full.
+     */
+    public static OverflowPolicy dropNewest() {
+        return DROP_NEWEST;
+    }
+
+    /**
+     * Keep only the latest buffered fact for each key, for topics where only the newest value of something
+     * matters. A fact replaces the buffered fact with the same key, keeping its place in the buffer. When the buffer
+     * is full of facts with distinct keys, polling stops until the consumer makes room.
+     * <p>
+     * The key function is given the subscription's facts, so it must accept facts of the class being consumed.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> OverflowPolicy conflateBy(final Function<? super T, ?> key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot conflate facts without a key");
+        }
+        return new OverflowPolicy(Kind.CONFLATE, (Function<Object, ?>) key);
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    Function<Object, ?> key() {
+        return key;
+    }
+}
@@ -0,0 +1,53 @@
+package combo;
+
+/**
+ * Options for processing the facts of one subscription on several worker threads, see
+ * {@link HttpCombo#processFacts(String, Class, java.util.function.Function, java.util.function.Consumer, ParallelProcessing)}.
+ * <p>
+ * Each worker has a queue of {@code queueSize} facts waiting to be handled. When the queue a fact belongs on is
+ * full the subscription stops polling until there is room, so a slow worker holds back the subscription rather
+ * than letting facts pile up.
+ * <p>
+ * Instances are immutable, each {@code with} method returns a copy with the given option changed.
+ */
+public final class ParallelProcessing {
+
+    private static final ParallelProcessing DEFAULTS = new ParallelProcessing(Runtime.getRuntime().availableProcessors(), 64);
+
+    private final int workers;
+    private final int queueSize;
+
+    private ParallelProcessing(final int workers, final int queueSize) {
+        this.workers = workers;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @return options for a worker per processor, each with a queue of 64 facts
+     */
+    public static ParallelProcessing parallelProcessing() {
+        return DEFAULTS;
+    }
+
+    public ParallelProcessing withWorkers(final int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Processing facts needs at least one worker");
+        }
+        return new ParallelProcessing(workers, queueSize);
+    }
+
+    public ParallelProcessing withQueueSize(final int queueSize) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Worker queues must hold at least one fact");
+        }
+        return new ParallelProcessing(workers, queueSize);
+    }
+
+    int workers() {
+        return workers;
+    }
+
+    int queueSize() {
+        return queueSize;
+    }
+}
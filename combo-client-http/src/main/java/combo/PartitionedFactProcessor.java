@@ -0,0 +1,124 @@
+package combo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Handles the facts of one subscription on several workers. Facts are shared between the workers by their key, so
+ * facts with the same key are always handled by the same worker, one at a time and in the order they arrived.
+ * <p>
+ * One thread polls the subscription and hands each fact to its worker's queue, waiting while that queue is full.
+ * Processing stops when the subscription or a handler fails, or when the processor is closed.
+ */
+public final class PartitionedFactProcessor<T> implements AutoCloseable {
+
+    private static final Object NULL_FACT = new Object();
+
+    private final Function<? super T, ?> key;
+    private final Consumer<? super T> handler;
+    private final List<BlockingQueue<Object>> queues;
+    private final List<Future<?>> tasks;
+
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    private PartitionedFactProcessor(final Function<? super T, ?> key,
+                                     final Consumer<? super T> handler,
+                                     final ParallelProcessing processing) {
+        this.key = key;
+        this.handler = handler;
+        this.queues = new ArrayList<>(processing.workers());
+        for (int worker = 0; worker < processing.workers(); worker++) {
+            queues.add(new ArrayBlockingQueue<>(processing.queueSize()));
+        }
+        this.tasks = new ArrayList<>(processing.workers() + 1);
+    }
+
+    static <T> PartitionedFactProcessor<T> processFacts(final Supplier<? extends T> nextFact,
+                                                        final Function<? super T, ?> key,
+                                                        final Consumer<? super T> handler,
+                                                        final ParallelProcessing processing,
+                                                        final ExecutorService executor) {
+        final PartitionedFactProcessor<T> processor = new PartitionedFactProcessor<>(key, handler, processing);
+        synchronized (processor.tasks) {
+            processor.queues.forEach(queue -> processor.tasks.add(executor.submit(() -> processor.work(queue))));
+            processor.tasks.add(executor.submit(() -> processor.poll(nextFact)));
+        }
+        if (processor.closed) {
+            processor.close();
+        }
+        return processor;
+    }
+
+    /**
+     * Stops polling and handling facts. Facts waiting in the workers' queues are not handled.
+     */
+    @Override public void close() {
+        closed = true;
+        synchronized (tasks) {
+            tasks.forEach(task -> task.cancel(true));
+        }
+    }
+
+    public boolean isRunning() {
+        return !closed;
+    }
+
+    /**
+     * @return the failure of the subscription or a handler that stopped processing, or null if there was none
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    private void poll(final Supplier<? extends T> nextFact) {
+        try {
+            while (!closed) {
+                final T fact = nextFact.get();
+                queueOf(fact).put(fact == null ? NULL_FACT : fact);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Throwable t) {
+            fail(t);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void work(final BlockingQueue<Object> queue) {
+        try {
+            while (!closed) {
+                final Object fact = queue.take();
+                handler.accept(fact == NULL_FACT ? null : (T) fact);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Throwable t) {
+            fail(t);
+        }
+    }
+
+    private BlockingQueue<Object> queueOf(final T fact) {
+        if (fact == null) {
+            return queues.get(0);
+        }
+
+        final int hash = Objects.hashCode(key.apply(fact));
+        return queues.get(Math.floorMod(hash ^ (hash >>> 16), queues.size()));
+    }
+
+    private void fail(final Throwable t) {
+        if (!closed) {
+            failure = t;
+            close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package combo;
+
+/**
+ * Decides how long to wait before polling a subscription again after the combo server responded with no content.
+ * <p>
+ * The number of consecutive empty polls is reset as soon as a fact arrives, so a subscription returns to tight
+ * polling as soon as facts start flowing again.
+ */
+public interface PollStrategy {
+
+    /**
+     * @param consecutiveEmptyPolls the number of empty polls in a row, starting at 1
+     * @return the number of milliseconds to wait before polling again, zero to poll again immediately
+     */
+    long delayAfterEmptyPolls(int consecutiveEmptyPolls);
+
+    static PollStrategy noBackoff() {
+        return consecutiveEmptyPolls -> 0L;
+    }
+
+    static PollStrategy fixedDelay(final long delay) {
+        return consecutiveEmptyPolls -> delay;
+    }
+
+    static PollStrategy exponentialBackoff(final long initialDelay, final long maximumDelay) {
+        return new ExponentialBackoff(initialDelay, maximumDelay, 0.0d);
+    }
+
+    static PollStrategy exponentialBackoff(final long initialDelay, final long maximumDelay, final double jitter) {
+        return new ExponentialBackoff(initialDelay, maximumDelay, jitter);
+    }
+
+    static PollStrategy defaultPollStrategy() {
+        return exponentialBackoff(10L, 1000L, 0.2d);
+    }
+}
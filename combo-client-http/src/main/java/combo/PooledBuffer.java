@@ -0,0 +1,92 @@
+package combo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A growable byte buffer taken from a shared pool and given back once its contents have been used, so that encoding
+ * facts and writing request bodies does not allocate a new buffer, and grow it, every time.
+ * <p>
+ * Buffers that grew past {@value #MAX_POOLED_SIZE} bytes for an unusually large body are dropped rather than given
+ * back, so the pool never holds on to much more than {@value #MAX_POOLED} small buffers.
+ */
+final class PooledBuffer extends OutputStream {
+
+    private static final int INITIAL_SIZE = 4 * 1024;
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+    private static final int MAX_POOLED = 64;
+
+    private static final Queue<PooledBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private int size;
+
+    private PooledBuffer() {
+    }
+
+    static PooledBuffer acquire() {
+        final PooledBuffer pooled = POOL.poll();
+        if (pooled == null) {
+            return new PooledBuffer();
+        }
+        POOLED.decrementAndGet();
+        return pooled;
+    }
+
+    /**
+     * Gives the buffer back to the pool. It must not be used afterwards.
+     */
+    void release() {
+        size = 0;
+        if (buffer.length > MAX_POOLED_SIZE) {
+            return;
+        }
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(this);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    @Override public void write(final int b) {
+        ensureCapacity(size + 1);
+        buffer[size++] = (byte) b;
+    }
+
+    @Override public void write(final byte[] bytes, final int offset, final int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * @return the buffer's backing array, which holds {@link #size()} bytes of content and is only valid until the
+     * buffer is written to again or released
+     */
+    byte[] array() {
+        return buffer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    void writeTo(final OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package combo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Holds facts fetched in the background by a number of fetchers, each of which keeps one request in flight.
+ * <p>
+ * What fetchers do while the buffer is full depends on its {@link OverflowPolicy}. Failures are handed to the
+ * consumer in the order they happen, after which no more facts are fetched.
+ */
+final class PrefetchBuffer<T> implements AutoCloseable {
+
+    private final FactBuffer<T> buffer;
+    private final List<Future<?>> fetchers;
+
+    private volatile boolean closed;
+
+    private PrefetchBuffer(final FactBuffer<T> buffer, final int requestsInFlight) {
+        this.buffer = buffer;
+        this.fetchers = new ArrayList<>(requestsInFlight);
+    }
+
+    static <T> PrefetchBuffer<T> prefetch(final Supplier<? extends T> nextFact,
+                                          final int bufferSize,
+                                          final int requestsInFlight,
+                                          final OverflowPolicy overflowPolicy,
+                                          final Runnable dropped,
+                                          final ExecutorService executor) {
+        final PrefetchBuffer<T> prefetchBuffer = new PrefetchBuffer<>(
+                new FactBuffer<>(bufferSize, overflowPolicy, dropped), requestsInFlight);
+        for (int i = 0; i < requestsInFlight; i++) {
+            prefetchBuffer.fetchers.add(executor.submit(() -> prefetchBuffer.fetch(nextFact)));
+        }
+        return prefetchBuffer;
+    }
+
+    T next() {
+        try {
+            return buffer.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ComboInterruptedException(e);
+        } catch (final RuntimeException | Error e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override public void close() {
+        closed = true;
+        fetchers.forEach(fetcher -> fetcher.cancel(true));
+    }
+
+    private void fetch(final Supplier<? extends T> nextFact) {
+        try {
+            while (!closed) {
+                buffer.put(nextFact.get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Throwable t) {
+            if (!closed) {
+                closed = true;
+                putFailure(t);
+            }
+        }
+    }
+
+    private void putFailure(final Throwable t) {
+        try {
+            buffer.fail(t);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package combo;
+
+/**
+ * Options for publishing facts through a batching pipeline rather than with a request per call.
+ * <p>
+ * Facts are encoded on the publishing thread and queued per topic. A topic's queued facts are sent once there
+ * are {@code maxBatchFacts} of them, once they add up to {@code maxBatchBytes} encoded, or once the first of them
+ * has waited for {@code lingerMillis}, whichever comes first. Blocking publishes send their topic's queued facts
+ * straight away rather than linger.
+ * <p>
+ * The facts in a batch are posted concurrently, up to {@code maxRequestsInFlight} requests at a time across every
+ * topic. Facts published to a topic are sent in order, but only arrive in order with one request in flight.
+ * <p>
+ * Instances are immutable, each {@code with} method returns a copy with the given option changed.
+ */
+public final class PublishBatching {
+
+    private static final PublishBatching DEFAULTS = new PublishBatching(100, 64 * 1024, 5L, 4);
+
+    private final int maxBatchFacts;
+    private final long maxBatchBytes;
+    private final long lingerMillis;
+    private final int maxRequestsInFlight;
+
+    private PublishBatching(final int maxBatchFacts,
+                            final long maxBatchBytes,
+                            final long lingerMillis,
+                            final int maxRequestsInFlight) {
+        this.maxBatchFacts = maxBatchFacts;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerMillis = lingerMillis;
+        this.maxRequestsInFlight = maxRequestsInFlight;
+    }
+
+    public static PublishBatching publishBatching() {
+        return DEFAULTS;
+    }
+
+    public PublishBatching withMaxBatchFacts(final int maxBatchFacts) {
+        if (maxBatchFacts < 1) {
+            throw new IllegalArgumentException("A batch must hold at least one fact");
+        }
+        return new PublishBatching(maxBatchFacts, maxBatchBytes, lingerMillis, maxRequestsInFlight);
+    }
+
+    public PublishBatching withMaxBatchBytes(final long maxBatchBytes) {
+        if (maxBatchBytes < 1) {
+            throw new IllegalArgumentException("A batch must hold at least one byte");
+        }
+        return new PublishBatching(maxBatchFacts, maxBatchBytes, lingerMillis, maxRequestsInFlight);
+    }
+
+    public PublishBatching withLinger(final long lingerMillis) {
+        if (lingerMillis < 0) {
+            throw new IllegalArgumentException("Cannot linger for a negative amount of time");
+        }
+        return new PublishBatching(maxBatchFacts, maxBatchBytes, lingerMillis, maxRequestsInFlight);
+    }
+
+    public PublishBatching withMaxRequestsInFlight(final int maxRequestsInFlight) {
+        if (maxRequestsInFlight < 1) {
+            throw new IllegalArgumentException("Publishing needs at least one request in flight");
+        }
+        return new PublishBatching(maxBatchFacts, maxBatchBytes, lingerMillis, maxRequestsInFlight);
+    }
+
+    int maxBatchFacts() {
+        return maxBatchFacts;
+    }
+
+    long maxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    long lingerMillis() {
+        return lingerMillis;
+    }
+
+    int maxRequestsInFlight() {
+        return maxRequestsInFlight;
+    }
+}
@@ -0,0 +1,227 @@
+package combo;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Queues encoded facts per topic and sends them in batches, with a bounded number of requests in flight.
+ * <p>
+ * Publishers never take a lock: facts go onto a lock-free queue for their topic and the batch is handed to the
+ * executor when it is full or its linger time is up. Each fact in a batch is posted as soon as there is room for
+ * another request in flight, without waiting for the one before it, so a topic's facts are sent in the order they
+ * were published but may arrive out of order unless only one request may be in flight.
+ * <p>
+ * No thread ever waits for room for a request. A batch that runs out of room stops where it is and waits with the
+ * other batches doing the same, and every request that finishes hands the executor the waiting batches to carry on
+ * with. The executor may be the one that blocking clients send facts on, and may have as few as one thread.
+ * <p>
+ * Each topic's batch is only ever worked on by one thread at a time, so it takes facts from its queue in order. A
+ * publisher sending a fact now while its topic's batch is still being sent has the next batch sent as soon as that
+ * one is done, rather than after the linger time.
+ */
+final class PublishPipeline {
+
+    private final PublishBatching batching;
+    private final BiFunction<String, EncodedFact, CompletableFuture<Void>> send;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final Semaphore requestsInFlight;
+
+    private final ConcurrentMap<String, TopicBatch> batches = new ConcurrentHashMap<>();
+    private final Set<TopicBatch> waitingBatches = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param send posts a fact, completing the future once the server has accepted it
+     */
+    PublishPipeline(final PublishBatching batching,
+                    final BiFunction<String, EncodedFact, CompletableFuture<Void>> send,
+                    final ExecutorService executor,
+                    final ScheduledExecutorService scheduler) {
+        this.batching = batching;
+        this.send = send;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.requestsInFlight = new Semaphore(batching.maxRequestsInFlight());
+    }
+
+    /**
+     * @param now send the topic's batch straight away rather than waiting for it to fill or linger, for publishers
+     *            waiting for the fact to be sent
+     */
+    CompletableFuture<Void> publish(final String topicName, final EncodedFact fact, final boolean now) {
+        final PendingFact pendingFact = new PendingFact(fact);
+        batches.computeIfAbsent(topicName, TopicBatch::new).add(pendingFact, now);
+        return pendingFact.published;
+    }
+
+    private final class TopicBatch {
+
+        private final String topicName;
+        private final Queue<PendingFact> pendingFacts = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingFactCount = new AtomicInteger();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean sendRequested = new AtomicBoolean();
+        private final AtomicInteger scheduled = new AtomicInteger();
+
+        //Only touched while working on the batch, which one thread does at a time
+        private int batchFacts;
+        private long batchBytes;
+
+        private TopicBatch(final String topicName) {
+            this.topicName = topicName;
+        }
+
+        private void add(final PendingFact pendingFact, final boolean now) {
+            pendingFacts.offer(pendingFact);
+            final int facts = pendingFactCount.incrementAndGet();
+            final long bytes = pendingBytes.addAndGet(pendingFact.fact.size());
+
+            if (now) {
+                sendRequested.set(true);
+            }
+            if (now || facts >= batching.maxBatchFacts() || bytes >= batching.maxBatchBytes()) {
+                sendNow();
+            } else if (facts == 1) {
+                sendAfterLinger();
+            }
+        }
+
+        private boolean full() {
+            return pendingFactCount.get() >= batching.maxBatchFacts() || pendingBytes.get() >= batching.maxBatchBytes();
+        }
+
+        private void sendAfterLinger() {
+            scheduler.schedule(this::sendNow, batching.lingerMillis(), MILLISECONDS);
+        }
+
+        private void sendNow() {
+            if (sending.compareAndSet(false, true)) {
+                schedule();
+            }
+        }
+
+        /**
+         * Has the executor work on the batch, unless a thread already is, in which case that thread goes round again.
+         */
+        private void schedule() {
+            if (scheduled.getAndIncrement() == 0) {
+                executor.execute(this::work);
+            }
+        }
+
+        private void work() {
+            int missed = 1;
+            do {
+                sendPendingFacts();
+                missed = scheduled.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Sends facts until the batch is full or there are none left, or stops until a request finishes if there is
+         * no room for another.
+         */
+        private void sendPendingFacts() {
+            if (!sending.get()) {
+                return;
+            }
+
+            PendingFact pendingFact;
+            while (batchFacts < batching.maxBatchFacts() && batchBytes < batching.maxBatchBytes()
+                    && (pendingFact = pendingFacts.peek()) != null) {
+                if (!acquireRequest()) {
+                    return;
+                }
+                pendingFacts.poll();
+                batchFacts++;
+                batchBytes += pendingFact.fact.size();
+                pendingFactCount.decrementAndGet();
+                pendingBytes.addAndGet(-pendingFact.fact.size());
+
+                sendPendingFact(pendingFact);
+            }
+            finishBatch();
+        }
+
+        /**
+         * @return false if there is no room for another request, the batch then waits to be scheduled again
+         */
+        private boolean acquireRequest() {
+            if (requestsInFlight.tryAcquire()) {
+                return true;
+            }
+            waitingBatches.add(this);
+            //A request that finished before the batch was waiting would not have scheduled it
+            return requestsInFlight.tryAcquire();
+        }
+
+        private void finishBatch() {
+            batchFacts = 0;
+            batchBytes = 0L;
+            sending.set(false);
+            if (full() || sendRequested.getAndSet(false) && pendingFactCount.get() > 0) {
+                sendNow();
+            } else if (pendingFactCount.get() > 0) {
+                sendAfterLinger();
+            }
+        }
+
+        private void sendPendingFact(final PendingFact pendingFact) {
+            final CompletableFuture<Void> sent;
+            try {
+                sent = send.apply(topicName, pendingFact.fact);
+            } catch (final Throwable t) {
+                releaseRequest();
+                pendingFact.published.completeExceptionally(t);
+                return;
+            }
+
+            sent.whenComplete((ignored, error) -> {
+                releaseRequest();
+                if (error == null) {
+                    pendingFact.published.complete(null);
+                } else {
+                    pendingFact.published.completeExceptionally(
+                            error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                }
+            });
+        }
+    }
+
+    /**
+     * Frees room for a request and has the batches that were waiting for it carry on, the first of which takes it.
+     */
+    private void releaseRequest() {
+        requestsInFlight.release();
+        for (final TopicBatch waitingBatch : waitingBatches) {
+            if (waitingBatches.remove(waitingBatch)) {
+                waitingBatch.schedule();
+            }
+        }
+    }
+
+    private static final class PendingFact {
+
+        private final EncodedFact fact;
+        private final CompletableFuture<Void> published = new CompletableFuture<>();
+
+        private PendingFact(final EncodedFact fact) {
+            this.fact = fact;
+        }
+    }
+}
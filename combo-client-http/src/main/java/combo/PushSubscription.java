@@ -0,0 +1,159 @@
+package combo;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static combo.HttpResponse.Status.NO_CONTENT;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Polls a subscription on a scheduler while the subscriber has outstanding demand, so a subscription only occupies
+ * a thread while a request is being made, and not even then when the poll completes asynchronously.
+ * <p>
+ * At most one poll is in progress at any time, which keeps facts in order and calls to the subscriber serial.
+ * Each poll is submitted to the scheduler separately, so subscriptions sharing a scheduler take turns.
+ * <p>
+ * Requesting a non-positive number of facts cancels the subscription and signals an {@link IllegalArgumentException}
+ * to the subscriber, once any poll in progress has finished, rather than throwing to the caller.
+ */
+final class PushSubscription<S, T> implements FactSubscription {
+
+    private final Supplier<S> subscribe;
+    private final Function<S, ? extends CompletionStage<? extends HttpResponse<? extends T>>> poll;
+    private final FactSubscriber<? super T> subscriber;
+    private final PollStrategy pollStrategy;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private final AtomicReference<Throwable> invalidRequest = new AtomicReference<>();
+
+    private volatile boolean cancelled;
+    private S subscription;
+    private int consecutiveEmptyPolls;
+
+    private PushSubscription(final Supplier<S> subscribe,
+                             final Function<S, ? extends CompletionStage<? extends HttpResponse<? extends T>>> poll,
+                             final FactSubscriber<? super T> subscriber,
+                             final PollStrategy pollStrategy,
+                             final ScheduledExecutorService scheduler) {
+        this.subscribe = subscribe;
+        this.poll = poll;
+        this.subscriber = subscriber;
+        this.pollStrategy = pollStrategy;
+        this.scheduler = scheduler;
+    }
+
+    static <S, T> void pushFacts(final Supplier<S> subscribe,
+                                 final Function<S, ? extends CompletionStage<? extends HttpResponse<? extends T>>> poll,
+                                 final FactSubscriber<? super T> subscriber,
+                                 final PollStrategy pollStrategy,
+                                 final ScheduledExecutorService scheduler) {
+        final PushSubscription<S, T> pushSubscription = new PushSubscription<>(subscribe, poll, subscriber, pollStrategy, scheduler);
+        scheduler.execute(() -> subscriber.onSubscribe(pushSubscription));
+    }
+
+    @Override public void request(final long numberOfFacts) {
+        if (numberOfFacts <= 0) {
+            if (!cancelled && invalidRequest.compareAndSet(null, new IllegalArgumentException("Must request a positive number of facts, but requested " + numberOfFacts))) {
+                cancelled = true;
+                pollIfIdle();
+            }
+            return;
+        }
+
+        demand.getAndUpdate(outstanding -> outstanding + numberOfFacts < 0 ? Long.MAX_VALUE : outstanding + numberOfFacts);
+        pollIfIdle();
+    }
+
+    @Override public void cancel() {
+        cancelled = true;
+    }
+
+    private void pollIfIdle() {
+        if ((cancelled || demand.get() > 0) && polling.compareAndSet(false, true)) {
+            scheduler.execute(this::poll);
+        }
+    }
+
+    private void poll() {
+        if (cancelled) {
+            signalInvalidRequest();
+            return;
+        }
+
+        final CompletionStage<? extends HttpResponse<? extends T>> response;
+        try {
+            if (subscription == null) {
+                subscription = subscribe.get();
+            }
+            response = poll.apply(subscription);
+        } catch (final Throwable t) {
+            fail(t);
+            return;
+        }
+
+        response.whenComplete((completedResponse, error) -> {
+            if (error != null) {
+                fail(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                handle(completedResponse);
+            }
+        });
+    }
+
+    private void handle(final HttpResponse<? extends T> response) {
+        if (cancelled) {
+            signalInvalidRequest();
+            return;
+        }
+
+        if (response.getStatusCode() == NO_CONTENT) {
+            if (consecutiveEmptyPolls < Integer.MAX_VALUE) {
+                consecutiveEmptyPolls++;
+            }
+            scheduler.schedule(this::poll, pollStrategy.delayAfterEmptyPolls(consecutiveEmptyPolls), MILLISECONDS);
+            return;
+        }
+
+        consecutiveEmptyPolls = 0;
+        if (!deliver(response.getBody())) {
+            return;
+        }
+
+        if (demand.get() == Long.MAX_VALUE || demand.decrementAndGet() > 0) {
+            scheduler.execute(this::poll);
+        } else {
+            polling.set(false);
+            pollIfIdle();
+        }
+    }
+
+    private boolean deliver(final T fact) {
+        try {
+            subscriber.onFact(fact);
+            return true;
+        } catch (final Throwable t) {
+            fail(t);
+            return false;
+        }
+    }
+
+    private void signalInvalidRequest() {
+        final Throwable invalid = invalidRequest.getAndSet(null);
+        if (invalid != null) {
+            subscriber.onError(invalid);
+        }
+    }
+
+    private void fail(final Throwable t) {
+        cancelled = true;
+        subscriber.onError(t);
+    }
+}
@@ -0,0 +1,272 @@
+package combo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Shares one subscription to each topic between all of the local subscriptions to it.
+ * <p>
+ * The first local subscription to a topic subscribes to it on the server and starts polling it in the background.
+ * Every fact polled is decoded once for each class of fact asked for and handed to every local subscription, each
+ * of which buffers facts for its consumer. A local subscription sees the facts polled after it joined. When the last
+ * local subscription to a topic is closed polling stops, and the next local subscription to the topic subscribes
+ * to it afresh.
+ * <p>
+ * Subscribing on the server is done without holding the lock that guards joining and leaving, so a slow subscription
+ * to one topic holds up neither local subscriptions to other topics nor consumers closing theirs. Local subscriptions
+ * joining a topic while it is being subscribed to wait for that subscription rather than making their own.
+ * <p>
+ * Polling waits for room in the buffer of every local subscription that blocks when full, so one slow consumer holds
+ * back the others on its topic.
+ */
+final class SharedSubscriptions {
+
+    private final Function<String, Supplier<byte[]>> subscribe;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, CompletableFuture<SharedTopic>> topics = new ConcurrentHashMap<>();
+
+    /**
+     * @param subscribe subscribes to a topic on the server, returning the next fact from the subscription as it was
+     *                  sent, waiting for one if needs be
+     */
+    SharedSubscriptions(final Function<String, Supplier<byte[]>> subscribe, final ExecutorService executor) {
+        this.subscribe = subscribe;
+        this.executor = executor;
+    }
+
+    /**
+     * @param decodedAs    identifies how the decoder decodes facts, local subscriptions decoding them the same way
+     *                     share each decoded fact
+     * @param decoder      the decoder for facts, or null for String facts
+     * @param deduplicator drops facts the local subscription has seen before, or null to keep them all
+     */
+    <T> LocalSubscription<T> join(final String topicName,
+                                  final Object decodedAs,
+                                  final FactDecoder<? extends T> decoder,
+                                  final Deduplicator deduplicator,
+                                  final FactBuffer<T> buffer) {
+        while (true) {
+            final CompletableFuture<SharedTopic> subscribing = new CompletableFuture<>();
+            final CompletableFuture<SharedTopic> existing = topics.putIfAbsent(topicName, subscribing);
+            final SharedTopic topic = existing == null ? subscribe(topicName, subscribing) : awaitSubscription(existing);
+            synchronized (this) {
+                if (topic.stopped) {
+                    continue;
+                }
+                final LocalSubscription<T> local = new LocalSubscription<>(topic, decodedAs, decoder, deduplicator, buffer);
+                topic.locals.add(local);
+                if (topic.poller == null) {
+                    topic.poller = executor.submit(topic::poll);
+                }
+                return local;
+            }
+        }
+    }
+
+    private SharedTopic subscribe(final String topicName, final CompletableFuture<SharedTopic> subscribing) {
+        final SharedTopic topic;
+        try {
+            topic = new SharedTopic(topicName, subscribe.apply(topicName));
+        } catch (final RuntimeException e) {
+            topics.remove(topicName, subscribing);
+            subscribing.completeExceptionally(e);
+            throw e;
+        }
+        subscribing.complete(topic);
+        return topic;
+    }
+
+    private static SharedTopic awaitSubscription(final CompletableFuture<SharedTopic> subscribing) {
+        try {
+            return subscribing.join();
+        } catch (final CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private synchronized void leave(final LocalSubscription<?> local) {
+        final SharedTopic topic = local.topic;
+        topic.locals.remove(local);
+        if (topic.locals.isEmpty()) {
+            topic.stop();
+        }
+    }
+
+    /**
+     * Stops local subscriptions joining the topic, those joining after it has been removed subscribing afresh.
+     */
+    private synchronized void remove(final SharedTopic topic) {
+        topic.stopped = true;
+        final CompletableFuture<SharedTopic> current = topics.get(topic.topicName);
+        if (current != null && current.getNow(null) == topic) {
+            topics.remove(topic.topicName, current);
+        }
+    }
+
+    private final class SharedTopic {
+
+        private final String topicName;
+        private final Supplier<byte[]> nextFact;
+        private final List<LocalSubscription<?>> locals = new CopyOnWriteArrayList<>();
+
+        private Future<?> poller;
+        private volatile boolean stopped;
+
+        private SharedTopic(final String topicName, final Supplier<byte[]> nextFact) {
+            this.topicName = topicName;
+            this.nextFact = nextFact;
+        }
+
+        private void poll() {
+            try {
+                while (!stopped) {
+                    share(nextFact.get());
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final Throwable t) {
+                if (!stopped) {
+                    remove(this);
+                    failAll(t);
+                }
+            }
+        }
+
+        private void share(final byte[] body) throws InterruptedException {
+            final Map<Object, Object> decoded = new HashMap<>(4);
+            for (final LocalSubscription<?> local : locals) {
+                if (local.deduplicator != null && local.deduplicator.seenBefore(body)) {
+                    continue;
+                }
+                Object fact = decoded.get(local.decodedAs);
+                if (fact == null) {
+                    fact = local.decode(body);
+                    decoded.put(local.decodedAs, fact);
+                }
+                local.offer(fact);
+            }
+        }
+
+        private void failAll(final Throwable t) {
+            try {
+                for (final LocalSubscription<?> local : locals) {
+                    local.buffer.fail(t);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void stop() {
+            remove(this);
+            poller.cancel(true);
+        }
+    }
+
+    /**
+     * A consumer's share of a topic, holding the facts polled for it until it takes them.
+     */
+    final class LocalSubscription<T> implements AutoCloseable {
+
+        private final SharedTopic topic;
+        private final Object decodedAs;
+        private final FactDecoder<? extends T> decoder;
+        private final Deduplicator deduplicator;
+        private final FactBuffer<T> buffer;
+
+        private boolean closed;
+
+        private LocalSubscription(final SharedTopic topic,
+                                  final Object decodedAs,
+                                  final FactDecoder<? extends T> decoder,
+                                  final Deduplicator deduplicator,
+                                  final FactBuffer<T> buffer) {
+            this.topic = topic;
+            this.decodedAs = decodedAs;
+            this.decoder = decoder;
+            this.deduplicator = deduplicator;
+            this.buffer = buffer;
+        }
+
+        T next() {
+            try {
+                return buffer.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ComboInterruptedException(e);
+            }
+        }
+
+        @Override public void close() {
+            synchronized (SharedSubscriptions.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            leave(this);
+        }
+
+        /**
+         * @return the decoded fact, or the failure to decode it wrapped so that it can be shared like a fact
+         */
+        private Object decode(final byte[] body) {
+            try {
+                return decoder == null
+                        ? new String(body, UTF_8)
+                        : new DecodedFact(decoder.read(new ByteArrayInputStream(body)));
+            } catch (final IOException e) {
+                return new DecodeFailure(new UncheckedIOException(e));
+            } catch (final RuntimeException e) {
+                return new DecodeFailure(e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void offer(final Object fact) throws InterruptedException {
+            if (fact instanceof DecodeFailure) {
+                buffer.fail(((DecodeFailure) fact).failure);
+            } else if (fact instanceof DecodedFact) {
+                buffer.put((T) ((DecodedFact) fact).fact);
+            } else {
+                buffer.put((T) fact);
+            }
+        }
+    }
+
+    /**
+     * A decoded fact, wrapped so that a fact decoded as null is not mistaken for one not yet decoded.
+     */
+    private static final class DecodedFact {
+
+        private final Object fact;
+
+        private DecodedFact(final Object fact) {
+            this.fact = fact;
+        }
+    }
+
+    private static final class DecodeFailure {
+
+        private final RuntimeException failure;
+
+        private DecodeFailure(final RuntimeException failure) {
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package combo;
+
+/**
+ * Options that apply to a single subscription created by {@link HttpCombo#facts(String, Class, SubscriptionOptions)}.
+ * <p>
+ * Instances are immutable, each {@code with} method returns a copy with the given option changed.
+ */
+public final class SubscriptionOptions {
+
+    private static final SubscriptionOptions DEFAULTS = new SubscriptionOptions(0, 0, OverflowPolicy.block(), false, null, null);
+
+    private final int prefetchBufferSize;
+    private final int prefetchRequestsInFlight;
+    private final OverflowPolicy overflowPolicy;
+    private final boolean shared;
+    private final Deduplication deduplication;
+    private final String subscriptionName;
+
+    private SubscriptionOptions(final int prefetchBufferSize,
+                                final int prefetchRequestsInFlight,
+                                final OverflowPolicy overflowPolicy,
+                                final boolean shared,
+                                final Deduplication deduplication,
+                                final String subscriptionName) {
+        this.prefetchBufferSize = prefetchBufferSize;
+        this.prefetchRequestsInFlight = prefetchRequestsInFlight;
+        this.overflowPolicy = overflowPolicy;
+        this.shared = shared;
+        this.deduplication = deduplication;
+        this.subscriptionName = subscriptionName;
+    }
+
+    public static SubscriptionOptions subscriptionOptions() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Fetch facts in the background while the consumer is busy with the previous ones.
+     * <p>
+     * Up to {@code bufferSize} facts are held for the consumer. With more than one request in flight the server
+     * may hand facts to the requests in a different order to the one they complete in, so facts may be consumed
+     * out of order.
+     */
+    public SubscriptionOptions withPrefetch(final int bufferSize, final int requestsInFlight) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Prefetch buffer must hold at least one fact");
+        }
+        if (requestsInFlight < 1) {
+            throw new IllegalArgumentException("Prefetching needs at least one request in flight");
+        }
+        return new SubscriptionOptions(bufferSize, requestsInFlight, overflowPolicy, shared, deduplication, subscriptionName);
+    }
+
+    public SubscriptionOptions withoutPrefetch() {
+        return new SubscriptionOptions(0, 0, overflowPolicy, shared, deduplication, subscriptionName);
+    }
+
+    /**
+     * What to do when the prefetch buffer is full because the consumer has fallen behind. Defaults to
+     * {@link OverflowPolicy#block()}. Without prefetching nothing is buffered, so there is nothing to overflow.
+     */
+    public SubscriptionOptions withOverflowPolicy(final OverflowPolicy overflowPolicy) {
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("Cannot buffer facts without an overflow policy");
+        }
+        return new SubscriptionOptions(prefetchBufferSize, prefetchRequestsInFlight, overflowPolicy, shared, deduplication, subscriptionName);
+    }
+
+    /**
+     * Share one subscription on the server with every other shared subscription to the topic from the same combo,
+     * rather than subscribing afresh. The stream sees the facts polled after it was opened, and is handed them
+     * through a buffer of its own that holds the prefetch buffer size, or 256 facts without prefetching, and
+     * overflows with the overflow policy. Requests in flight do not apply, the shared subscription is polled with
+     * one request at a time.
+     * <p>
+     * Close the stream when finished with it, the subscription is polled until every stream sharing it is closed.
+     */
+    public SubscriptionOptions withSharedSubscription() {
+        return new SubscriptionOptions(prefetchBufferSize, prefetchRequestsInFlight, overflowPolicy, true, deduplication, subscriptionName);
+    }
+
+    public SubscriptionOptions withoutSharedSubscription() {
+        return new SubscriptionOptions(prefetchBufferSize, prefetchRequestsInFlight, overflowPolicy, false, deduplication, subscriptionName);
+    }
+
+    /**
+     * Drop facts this subscription has seen recently, before they are decoded.
+     */
+    public SubscriptionOptions withDeduplication(final Deduplication deduplication) {
+        if (deduplication == null) {
+            throw new IllegalArgumentException("Cannot deduplicate facts without deduplication options");
+        }
+        return new SubscriptionOptions(prefetchBufferSize, prefetchRequestsInFlight, overflowPolicy, shared, deduplication, subscriptionName);
+    }
+
+    public SubscriptionOptions withoutDeduplication() {
+        return new SubscriptionOptions(prefetchBufferSize, prefetchRequestsInFlight, overflowPolicy, shared, null, subscriptionName);
+    }
+
+    /**
+     * Name the subscription, so that its id is saved in the combo's {@link SubscriptionStore} and used again by
+     * the next subscription to the topic with the same name, even in another run of the process. Without a
+     * subscription store the name has no effect. Shared subscriptions are never saved.
+     */
+    public SubscriptionOptions withSubscriptionName(final String subscriptionName) {
+        if (subscriptionName == null) {
+            throw new IllegalArgumentException("Cannot save a subscription under a null name");
+        }
+        return new SubscriptionOptions(prefetchBufferSize, prefetchRequestsInFlight, overflowPolicy, shared, deduplication, subscriptionName);
+    }
+
+    boolean prefetching() {
+        return prefetchBufferSize > 0;
+    }
+
+    int prefetchBufferSize() {
+        return prefetchBufferSize;
+    }
+
+    int prefetchRequestsInFlight() {
+        return prefetchRequestsInFlight;
+    }
+
+    OverflowPolicy overflowPolicy() {
+        return overflowPolicy;
+    }
+
+    boolean shared() {
+        return shared;
+    }
+
+    Deduplication deduplication() {
+        return deduplication;
+    }
+
+    String subscriptionName() {
+        return subscriptionName;
+    }
+}
@@ -0,0 +1,17 @@
+package combo;
+
+/**
+ * Keeps the ids of named subscriptions between runs of a process, so that a restarted process carries on polling
+ * its subscriptions instead of subscribing again.
+ *
+ * @see SubscriptionOptions#withSubscriptionName(String)
+ */
+public interface SubscriptionStore {
+
+    /**
+     * @return the id saved for the subscription, or null if there is none
+     */
+    String load(String subscriptionKey);
+
+    void save(String subscriptionKey, String subscriptionId);
+}
@@ -0,0 +1,72 @@
+package combo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A token bucket kept as the time the bucket is next empty, so that acquiring a permit is a single compare and set.
+ * <p>
+ * Each permit moves that time on by one interval. A request is allowed once the time is no more than a burst's worth
+ * of intervals ahead of now, and waits for it to become so if it would not wait longer than the maximum wait.
+ */
+final class TokenBucketLimiter implements Limiter {
+
+    private final double permitsPerSecond;
+    private final long maxWaitMillis;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final long maxWaitNanos;
+    private final AtomicLong emptyAt = new AtomicLong(System.nanoTime());
+
+    TokenBucketLimiter(final double permitsPerSecond, final int burst, final long maxWaitMillis) {
+        if (!(permitsPerSecond > 0.0d)) {
+            throw new IllegalArgumentException("Cannot allow requests at a rate of " + permitsPerSecond + " a second");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Bursts must allow at least one request");
+        }
+        if (maxWaitMillis < 0L) {
+            throw new IllegalArgumentException("Cannot wait a negative amount of time for a request to be allowed");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.maxWaitMillis = maxWaitMillis;
+        this.intervalNanos = Math.max(1L, (long) (SECONDS.toNanos(1L) / permitsPerSecond));
+        this.burstNanos = intervalNanos * burst;
+        this.maxWaitNanos = MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    @Override public void acquire() {
+        while (true) {
+            final long now = System.nanoTime();
+            final long current = emptyAt.get();
+            final long from = Math.max(current, now);
+            final long waitNanos = from + intervalNanos - burstNanos - now;
+            if (waitNanos > maxWaitNanos) {
+                throw new LimitExceededException(format(
+                        "Request not allowed within %dms by a limit of %s requests a second", maxWaitMillis, permitsPerSecond));
+            }
+            if (emptyAt.compareAndSet(current, from + intervalNanos)) {
+                pause(waitNanos);
+                return;
+            }
+        }
+    }
+
+    @Override public void release(final long latencyNanos, final boolean succeeded) {
+    }
+
+    private static void pause(final long nanos) {
+        if (nanos <= 0L) {
+            return;
+        }
+        try {
+            Thread.sleep(nanos / 1_000_000L, (int) (nanos % 1_000_000L));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ComboInterruptedException(e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package combo;
+
+public final class TopicFact<T> {
+
+    private final String topicName;
+    private final T fact;
+
+    public TopicFact(final String topicName, final T fact) {
+        this.topicName = topicName;
+        this.fact = fact;
+    }
+
+    public String getTopicName() {
+        return topicName;
+    }
+
+    public T getFact() {
+        return fact;
+    }
+
+    @Override public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final TopicFact<?> that = (TopicFact<?>) o;
+
+        return topicName.equals(that.topicName) && !(fact != null ? !fact.equals(that.fact) : that.fact != null);
+    }
+
+    @Override public int hashCode() {
+        return 31 * topicName.hashCode() + (fact != null ? fact.hashCode() : 0);
+    }
+
+    @Override public String toString() {
+        return "TopicFact{" +
+                "topicName='" + topicName + '\'' +
+                ", fact=" + fact +
+                '}';
+    }
+}
@@ -0,0 +1,97 @@
+package combo;
+
+/**
+ * What has happened on one topic since metrics started being recorded.
+ */
+public final class TopicMetricsSnapshot {
+
+    private final long facts;
+    private final long emptyPolls;
+    private final long published;
+    private final long dropped;
+    private final long failures;
+    private final LatencySnapshot subscribeLatency;
+    private final LatencySnapshot pollLatency;
+    private final LatencySnapshot decodeLatency;
+    private final LatencySnapshot publishLatency;
+
+    TopicMetricsSnapshot(final long facts,
+                         final long emptyPolls,
+                         final long published,
+                         final long dropped,
+                         final long failures,
+                         final LatencySnapshot subscribeLatency,
+                         final LatencySnapshot pollLatency,
+                         final LatencySnapshot decodeLatency,
+                         final LatencySnapshot publishLatency) {
+        this.facts = facts;
+        this.emptyPolls = emptyPolls;
+        this.published = published;
+        this.dropped = dropped;
+        this.failures = failures;
+        this.subscribeLatency = subscribeLatency;
+        this.pollLatency = pollLatency;
+        this.decodeLatency = decodeLatency;
+        this.publishLatency = publishLatency;
+    }
+
+    /**
+     * @return the number of polls that returned a fact
+     */
+    public long getFacts() {
+        return facts;
+    }
+
+    /**
+     * @return the number of polls that returned no content
+     */
+    public long getEmptyPolls() {
+        return emptyPolls;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * @return the number of facts thrown away, or replaced by newer ones, because the consumer fell behind
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public LatencySnapshot getSubscribeLatency() {
+        return subscribeLatency;
+    }
+
+    /**
+     * @return the latency of polls, both those that returned a fact and those that returned no content
+     */
+    public LatencySnapshot getPollLatency() {
+        return pollLatency;
+    }
+
+    public LatencySnapshot getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    public LatencySnapshot getPublishLatency() {
+        return publishLatency;
+    }
+
+    @Override public String toString() {
+        return "facts=" + facts
+                + ", emptyPolls=" + emptyPolls
+                + ", published=" + published
+                + ", dropped=" + dropped
+                + ", failures=" + failures
+                + ", subscribeLatency=[" + subscribeLatency
+                + "], pollLatency=[" + pollLatency
+                + "], decodeLatency=[" + decodeLatency
+                + "], publishLatency=[" + publishLatency + "]";
+    }
+}
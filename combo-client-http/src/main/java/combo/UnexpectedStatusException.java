@@ -0,0 +1,21 @@
+package combo;
+
+import java.net.URI;
+
+/**
+ * Thrown by a {@link HttpClient} when the server responds with a status the request did not expect, as the cause of a
+ * {@link HttpClientException}, so that the status can be found with {@link HttpClient#statusOf(Throwable)}.
+ */
+public final class UnexpectedStatusException extends RuntimeException {
+
+    private final int statusCode;
+
+    public UnexpectedStatusException(final String method, final URI uri, final int statusCode) {
+        super(method + " " + uri + " responded with status " + statusCode);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
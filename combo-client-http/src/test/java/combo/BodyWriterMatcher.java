@@ -0,0 +1,49 @@
+package combo;
+
+import org.hamcrest.Description;
+import org.hamcrest.TypeSafeMatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.Matchers.argThat;
+
+/**
+ * Matches request bodies by what they write, for verifying posts made with a {@link BodyWriter}.
+ */
+final class BodyWriterMatcher extends TypeSafeMatcher<BodyWriter> {
+
+    private final String body;
+
+    private BodyWriterMatcher(final String body) {
+        this.body = body;
+    }
+
+    static BodyWriter writes(final String body) {
+        return argThat(new BodyWriterMatcher(body));
+    }
+
+    @Override protected boolean matchesSafely(final BodyWriter bodyWriter) {
+        return body.equals(written(bodyWriter));
+    }
+
+    @Override public void describeTo(final Description description) {
+        description.appendText("a body writing ").appendValue(body);
+    }
+
+    @Override protected void describeMismatchSafely(final BodyWriter bodyWriter, final Description description) {
+        description.appendText("wrote ").appendValue(written(bodyWriter));
+    }
+
+    private static String written(final BodyWriter bodyWriter) {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        try {
+            bodyWriter.write(written);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(written.toByteArray(), UTF_8);
+    }
+}
@@ -0,0 +1,29 @@
+package combo;
+
+import org.junit.Test;
+
+import static combo.Deduplication.deduplicateByBody;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public final class DeduplicatorTest {
+
+    @Test public void rememberOnlyTheMostRecentFacts() {
+        //Given
+        final Deduplicator deduplicator = new Deduplicator(deduplicateByBody().withWindow(100));
+        for (int i = 0; i < 1000; i++) {
+            deduplicator.seenBefore(fact(i));
+        }
+
+        //Then
+        for (int i = 900; i < 1000; i++) {
+            assertThat(deduplicator.seenBefore(fact(i)), is(true));
+        }
+        assertThat(deduplicator.seenBefore(fact(899)), is(false));
+    }
+
+    private static byte[] fact(final int i) {
+        return ("{\"sequence\": " + i + "}").getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,287 @@
+package combo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static combo.BodyWriterMatcher.writes;
+import static combo.DurableOutbox.durableOutboxBuilder;
+import static combo.EncodedFact.text;
+import static combo.HttpCombo.httpComboBuilder;
+import static java.lang.String.format;
+import static java.net.URI.create;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public final class DurableOutboxTest {
+
+    @Rule public final ExpectedException thrown = ExpectedException.none();
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void publishFactsInOrderOnceTheServerRecovers() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(any(URI.class), any(BodyWriter.class), anyString(), any()))
+                .willThrow(new RuntimeException("Server unavailable"))
+                .willThrow(new RuntimeException("Server unavailable"))
+                .willReturn(new HttpResponse<>(202, null));
+
+        //And
+        try (final DurableOutbox outbox = outbox(folder.getRoot().toPath())) {
+            final HttpCombo combo = httpComboBuilder(httpClient).withOutbox(outbox).build();
+
+            //When
+            combo.publishFact(topicName, "fact 1");
+            combo.publishFact(topicName, "fact 2");
+            combo.publishFactAsync(topicName, "fact 3").get();
+            awaitDrained(outbox);
+
+            //Then
+            final InOrder inOrder = inOrder(httpClient);
+            inOrder.verify(httpClient, times(3)).post(eq(create(format("/topics/%s/facts", topicName))), writes("fact 1"), eq(FactCodec.APPLICATION_JSON), eq(String.class));
+            inOrder.verify(httpClient).post(eq(create(format("/topics/%s/facts", topicName))), writes("fact 2"), eq(FactCodec.APPLICATION_JSON), eq(String.class));
+            inOrder.verify(httpClient).post(eq(create(format("/topics/%s/facts", topicName))), writes("fact 3"), eq(FactCodec.APPLICATION_JSON), eq(String.class));
+        }
+    }
+
+    @Test public void publishFactsLeftInTheOutboxWhenReopened() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final Path directory = folder.getRoot().toPath();
+        final HttpClient unavailable = mock(HttpClient.class);
+        given(unavailable.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willThrow(new RuntimeException("Server unavailable"));
+
+        //And
+        try (final DurableOutbox outbox = outbox(directory)) {
+            final HttpCombo combo = httpComboBuilder(unavailable).withOutbox(outbox).build();
+            for (int i = 1; i <= 20; i++) {
+                combo.publishFact(topicName, "fact " + i);
+            }
+        }
+
+        //When
+        final HttpClient available = mock(HttpClient.class);
+        given(available.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willReturn(new HttpResponse<>(202, null));
+        try (final DurableOutbox outbox = outbox(directory)) {
+            httpComboBuilder(available).withOutbox(outbox).build();
+            awaitDrained(outbox);
+        }
+
+        //Then
+        final InOrder inOrder = inOrder(available);
+        for (int i = 1; i <= 20; i++) {
+            inOrder.verify(available).post(eq(create(format("/topics/%s/facts", topicName))), writes("fact " + i), eq(FactCodec.APPLICATION_JSON), eq(String.class));
+        }
+    }
+
+    @Test public void rejectFactsOnceTheOutboxIsFull() {
+        //Given
+        final HttpClient unavailable = mock(HttpClient.class);
+        given(unavailable.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willThrow(new RuntimeException("Server unavailable"));
+
+        //And
+        try (final DurableOutbox outbox = durableOutboxBuilder(folder.getRoot().toPath())
+                .withSegmentSize(64)
+                .withMaxSegments(2)
+                .build()) {
+            final HttpCombo combo = httpComboBuilder(unavailable).withOutbox(outbox).build();
+            combo.publishFact("topic", "a fact of 22 bytes....");
+            combo.publishFact("topic", "a fact of 22 bytes....");
+
+            //Then
+            thrown.expect(OutboxFullException.class);
+
+            //When
+            combo.publishFact("topic", "a fact of 22 bytes....");
+        }
+    }
+
+    @Test public void giveUpOnFactsTheServerRejects() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final URI facts = create(format("/topics/%s/facts", topicName));
+        final HttpClientException badRequest = new HttpClientException(new UnexpectedStatusException("POST", facts, 400));
+        final HttpClientException unavailable = new HttpClientException(new UnexpectedStatusException("POST", facts, 503));
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(eq(facts), writes("bad fact"), anyString(), any())).willThrow(badRequest);
+        given(httpClient.post(eq(facts), writes("good fact"), anyString(), any()))
+                .willThrow(unavailable)
+                .willReturn(new HttpResponse<>(202, null));
+        given(httpClient.statusOf(badRequest)).willReturn(400);
+        given(httpClient.statusOf(unavailable)).willReturn(503);
+
+        //And
+        final List<String> undeliverable = new CopyOnWriteArrayList<>();
+        try (final DurableOutbox outbox = durableOutboxBuilder(folder.getRoot().toPath())
+                .withSegmentSize(256)
+                .withRetryDelay(1L)
+                .withListener(new OutboxListener() {
+                    @Override public void undeliverable(final String topicName, final String contentType, final byte[] fact, final RuntimeException failure) {
+                        undeliverable.add(new String(fact, UTF_8));
+                    }
+                })
+                .build()) {
+            final HttpCombo combo = httpComboBuilder(httpClient).withOutbox(outbox).build();
+
+            //When
+            combo.publishFact(topicName, "bad fact");
+            combo.publishFact(topicName, "good fact");
+            awaitDrained(outbox);
+
+            //Then
+            assertThat(undeliverable, contains("bad fact"));
+            verify(httpClient, times(1)).post(eq(facts), writes("bad fact"), anyString(), any());
+            verify(httpClient, times(2)).post(eq(facts), writes("good fact"), anyString(), any());
+        }
+    }
+
+    @Test public void giveUpOnFactsAfterTheMostAttempts() throws Exception {
+        //Given
+        final HttpClient unavailable = mock(HttpClient.class);
+        given(unavailable.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willThrow(new RuntimeException("Server unavailable"));
+
+        //And
+        final List<RuntimeException> failures = new CopyOnWriteArrayList<>();
+        try (final DurableOutbox outbox = durableOutboxBuilder(folder.getRoot().toPath())
+                .withSegmentSize(256)
+                .withRetryDelay(1L)
+                .withMaxAttempts(3)
+                .withListener(new OutboxListener() {
+                    @Override public void undeliverable(final String topicName, final String contentType, final byte[] fact, final RuntimeException failure) {
+                        failures.add(failure);
+                    }
+                })
+                .build()) {
+            final HttpCombo combo = httpComboBuilder(unavailable).withOutbox(outbox).build();
+
+            //When
+            combo.publishFact("topic", "fact");
+            awaitDrained(outbox);
+
+            //Then
+            assertThat(failures.size(), is(1));
+            assertThat(failures.get(0).getMessage(), is("Server unavailable"));
+            verify(unavailable, times(3)).post(any(URI.class), any(BodyWriter.class), anyString(), any());
+        }
+    }
+
+    @Test public void carryOnDrainingWhenTheListenerFails() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final URI facts = create(format("/topics/%s/facts", topicName));
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(eq(facts), writes("bad fact"), anyString(), any())).willThrow(new RuntimeException("Server unavailable"));
+        given(httpClient.post(eq(facts), writes("good fact"), anyString(), any())).willReturn(new HttpResponse<>(202, null));
+
+        //And
+        final List<String> drainFailures = new CopyOnWriteArrayList<>();
+        try (final DurableOutbox outbox = durableOutboxBuilder(folder.getRoot().toPath())
+                .withSegmentSize(256)
+                .withRetryDelay(1L)
+                .withMaxAttempts(1)
+                .withListener(new OutboxListener() {
+                    @Override public void undeliverable(final String topicName, final String contentType, final byte[] fact, final RuntimeException failure) {
+                        throw new IllegalStateException("Cannot keep undeliverable fact");
+                    }
+
+                    @Override public void drainFailed(final RuntimeException failure) {
+                        drainFailures.add(failure.getMessage());
+                        throw new IllegalStateException("Cannot report failure");
+                    }
+                })
+                .build()) {
+            final HttpCombo combo = httpComboBuilder(httpClient).withOutbox(outbox).build();
+
+            //When
+            combo.publishFact(topicName, "bad fact");
+            combo.publishFact(topicName, "good fact");
+            awaitDrained(outbox);
+
+            //Then
+            assertThat(drainFailures, contains("Cannot keep undeliverable fact"));
+            verify(httpClient, times(1)).post(eq(facts), writes("bad fact"), anyString(), any());
+            verify(httpClient, times(1)).post(eq(facts), writes("good fact"), anyString(), any());
+        }
+    }
+
+    @Test public void writeOverWhatIsLeftOfAHalfWrittenRecord() throws Exception {
+        //Given
+        final Path directory = folder.getRoot().toPath();
+        final Path segment = directory.resolve(format("outbox-%019d.segment", 0));
+        new OutboxJournal(directory, 256, 1).append("topic", text("the first fact"));
+
+        //And a record the process died writing, all but its length, with what looks like a length where the next
+        //record will end
+        final int nextRecordLength = Integer.BYTES + Short.BYTES + "topic".length()
+                + Short.BYTES + FactCodec.APPLICATION_JSON.length() + "fact 2".length();
+        try (final FileChannel channel = FileChannel.open(segment, READ, WRITE)) {
+            final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(length, 0);
+            final int halfWritten = Integer.BYTES + length.getInt(0);
+            final ByteBuffer rest = ByteBuffer.wrap(new byte[256 - halfWritten - Integer.BYTES]);
+            Arrays.fill(rest.array(), (byte) 0x7F);
+            rest.putInt(nextRecordLength - Integer.BYTES, 8);
+            channel.write(rest, halfWritten + Integer.BYTES);
+        }
+
+        //When
+        new OutboxJournal(directory, 256, 1).append("topic", text("fact 2"));
+        final OutboxJournal journal = new OutboxJournal(directory, 256, 1);
+
+        //Then
+        final OutboxJournal.Record first = journal.next(0L);
+        journal.commit(first);
+        final OutboxJournal.Record second = journal.next(0L);
+        journal.commit(second);
+        assertThat(new String(first.fact().bytes(), UTF_8), is("the first fact"));
+        assertThat(new String(second.fact().bytes(), UTF_8), is("fact 2"));
+        assertThat(journal.isEmpty(), is(true));
+    }
+
+    @Test public void rejectTopicNamesTooLongToKeep() {
+        //Given
+        final char[] topicName = new char[65536];
+        Arrays.fill(topicName, 't');
+
+        //Then
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Cannot keep a fact with a topic name of 65536 bytes in an outbox, the most is 65535");
+
+        //When
+        new OutboxJournal(folder.getRoot().toPath(), 256 * 1024, 1).append(new String(topicName), text("fact"));
+    }
+
+    private static DurableOutbox outbox(final Path directory) {
+        return durableOutboxBuilder(directory).withSegmentSize(256).withRetryDelay(1L).build();
+    }
+
+    private static void awaitDrained(final DurableOutbox outbox) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (!outbox.isDrained() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package combo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static combo.OverflowPolicy.conflateBy;
+import static combo.OverflowPolicy.dropNewest;
+import static combo.OverflowPolicy.dropOldest;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public final class FactBufferTest {
+
+    @Rule public final ExpectedException thrown = ExpectedException.none();
+
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    @Test public void dropOldestFactsWhenFull() throws Exception {
+        //Given
+        final FactBuffer<String> buffer = new FactBuffer<>(2, dropOldest(), dropped::incrementAndGet);
+
+        //When
+        putAll(buffer, "fact 1", "fact 2", "fact 3", "fact 4");
+
+        //Then
+        assertThat(takeAll(buffer, 2), contains("fact 3", "fact 4"));
+        assertThat(dropped.get(), is(2));
+    }
+
+    @Test public void dropNewestFactsWhenFull() throws Exception {
+        //Given
+        final FactBuffer<String> buffer = new FactBuffer<>(2, dropNewest(), dropped::incrementAndGet);
+
+        //When
+        putAll(buffer, "fact 1", "fact 2", "fact 3", "fact 4");
+
+        //Then
+        assertThat(takeAll(buffer, 2), contains("fact 1", "fact 2"));
+        assertThat(dropped.get(), is(2));
+    }
+
+    @Test public void keepOnlyLatestFactPerKeyWhenConflating() throws Exception {
+        //Given
+        final FactBuffer<String> buffer = new FactBuffer<>(2, conflateBy((String fact) -> fact.charAt(0)), dropped::incrementAndGet);
+
+        //When
+        putAll(buffer, "a1", "b1", "a2", "b2", "a3");
+
+        //Then
+        assertThat(takeAll(buffer, 2), contains("a3", "b2"));
+        assertThat(dropped.get(), is(3));
+    }
+
+    @Test public void neverDropFailures() throws Exception {
+        //Given
+        final FactBuffer<String> buffer = new FactBuffer<>(1, dropNewest(), dropped::incrementAndGet);
+        buffer.put("fact 1");
+
+        //When
+        buffer.fail(new IllegalStateException("failed"));
+
+        //Then
+        thrown.expect(IllegalStateException.class);
+        buffer.take();
+    }
+
+    private static void putAll(final FactBuffer<String> buffer, final String... facts) throws InterruptedException {
+        for (final String fact : facts) {
+            buffer.put(fact);
+        }
+    }
+
+    private static List<String> takeAll(final FactBuffer<String> buffer, final int numberOfFacts) throws InterruptedException {
+        final List<String> facts = new ArrayList<>();
+        for (int i = 0; i < numberOfFacts; i++) {
+            facts.add(buffer.take());
+        }
+        return facts;
+    }
+}
@@ -0,0 +1,204 @@
+package combo;
+
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public final class GeneratedFactCodecTest {
+
+    private final Gson gson = new Gson();
+
+    @Test public void generatedCodecIsFoundForComboFacts() {
+        //When
+        final GeneratedFactCodec<Order> codec = GeneratedFactCodec.generatedCodecFor(Order.class);
+
+        //Then
+        assertThat(codec, is(instanceOf(GeneratedFactCodecTest_Order_ComboCodec.class)));
+        assertThat(GeneratedFactCodec.generatedCodecFor(String.class), is(nullValue()));
+    }
+
+    @Test public void encodesFactsAsGsonDoes() throws IOException {
+        //Given
+        final Order order = new Order("order-" + RDG.string(10).next(), RDG.integer().next(), RDG.longVal().next(),
+                1.1f, 2.2, true, 'x', null, Boolean.FALSE, Status.SHIPPED, new Address(), "not encoded");
+        order.address.street = "Main Street \"<1>\"";
+        order.address.number = 7;
+
+        //When
+        final String encoded = encode(order);
+
+        //Then
+        assertThat(encoded, is(gson.toJson(order)));
+    }
+
+    @Test public void decodesFactsAsGsonDoes() throws IOException {
+        //Given
+        final String json = "{\"id\":\"order-1\",\"quantity\":3,\"placed\":1234567890123,\"weight\":1.5,\"price\":9.99,"
+                + "\"express\":true,\"grade\":\"A\",\"discount\":null,\"gift\":true,\"status\":\"UNKNOWN\","
+                + "\"deliver_to\":{\"street\":\"Main Street\",\"number\":7,\"extra\":[1,{\"a\":2}]},\"ignored\":\"x\"}";
+
+        //When
+        final Order decoded = GeneratedFactCodec.generatedCodecFor(Order.class).read(new ByteArrayInputStream(json.getBytes(UTF_8)));
+
+        //Then
+        assertThat(encode(decoded), is(gson.toJson(gson.fromJson(json, Order.class))));
+        assertThat(decoded.note, is(nullValue()));
+    }
+
+    @Test public void readsIntoReusedFactsFromScratch() throws IOException {
+        //Given
+        final GeneratedFactCodec<Address> codec = GeneratedFactCodec.generatedCodecFor(Address.class);
+        final Address reusedFact = new Address();
+
+        //When
+        codec.read(new ByteArrayInputStream("{\"street\":\"High Street\",\"number\":1,\"country\":\"FR\"}".getBytes(UTF_8)), reusedFact);
+        final Address decoded = codec.read(new ByteArrayInputStream("{\"street\":\"Low Street\"}".getBytes(UTF_8)), reusedFact);
+
+        //Then
+        assertThat(decoded == reusedFact, is(true));
+        assertThat(encode(decoded), is("{\"street\":\"Low Street\",\"number\":0,\"country\":\"UK\"}"));
+        assertThat(GeneratedFactCodec.generatedCodecFor(Order.class).readsInto(), is(false));
+    }
+
+    @Test public void readsIntoReusedFactsWithoutSharingNestedDefaults() throws IOException {
+        //Given
+        final GeneratedFactCodec<Delivery> codec = GeneratedFactCodec.generatedCodecFor(Delivery.class);
+        final Delivery reusedFact = new Delivery();
+
+        //And
+        final Delivery first = codec.read(new ByteArrayInputStream("{}".getBytes(UTF_8)), reusedFact);
+        first.address.street = "High Street";
+
+        //When
+        final Delivery second = codec.read(new ByteArrayInputStream("{}".getBytes(UTF_8)), reusedFact);
+
+        //Then
+        assertThat(second.address.street, is(nullValue()));
+        assertThat(new Delivery().address.street, is(nullValue()));
+    }
+
+    private static String encode(final Address address) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        GeneratedFactCodec.generatedCodecFor(Address.class).encode(address, body);
+        return new String(body.toByteArray(), UTF_8);
+    }
+
+    private static String encode(final Order order) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        GeneratedFactCodec.generatedCodecFor(Order.class).encode(order, body);
+        return new String(body.toByteArray(), UTF_8);
+    }
+
+    enum Status {
+        PLACED, SHIPPED
+    }
+
+    @ComboFact
+    static final class Order {
+
+        private final String id;
+        private final int quantity;
+        private final long placed;
+        private final float weight;
+        private final double price;
+        private final boolean express;
+        private final char grade;
+        private final Integer discount;
+        private final Boolean gift;
+        private final Status status;
+        @SerializedName("deliver_to")
+        private final Address address;
+        private final transient String note;
+
+        Order(final String id, final int quantity, final long placed, final float weight, final double price,
+              final boolean express, final char grade, final Integer discount, final Boolean gift,
+              final Status status, final Address address, final String note) {
+            this.id = id;
+            this.quantity = quantity;
+            this.placed = placed;
+            this.weight = weight;
+            this.price = price;
+            this.express = express;
+            this.grade = grade;
+            this.discount = discount;
+            this.gift = gift;
+            this.status = status;
+            this.address = address;
+            this.note = note;
+        }
+
+        Order(final String id, final int quantity, final long placed, final float weight, final double price,
+              final boolean express, final char grade, final Integer discount, final Boolean gift,
+              final Status status, final Address address) {
+            this(id, quantity, placed, weight, price, express, grade, discount, gift, status, address, null);
+        }
+
+        String getId() {
+            return id;
+        }
+
+        int getQuantity() {
+            return quantity;
+        }
+
+        long getPlaced() {
+            return placed;
+        }
+
+        float getWeight() {
+            return weight;
+        }
+
+        double getPrice() {
+            return price;
+        }
+
+        boolean isExpress() {
+            return express;
+        }
+
+        char getGrade() {
+            return grade;
+        }
+
+        Integer getDiscount() {
+            return discount;
+        }
+
+        Boolean getGift() {
+            return gift;
+        }
+
+        Status getStatus() {
+            return status;
+        }
+
+        Address getAddress() {
+            return address;
+        }
+    }
+
+    @ComboFact
+    static final class Address {
+
+        String street;
+        int number;
+        String country = "UK";
+    }
+
+    @ComboFact
+    static final class Delivery {
+
+        Address address = new Address();
+    }
+}
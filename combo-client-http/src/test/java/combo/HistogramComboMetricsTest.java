@@ -0,0 +1,66 @@
+package combo;
+
+import org.junit.Test;
+
+import static combo.HistogramComboMetrics.histogramComboMetrics;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+
+public final class HistogramComboMetricsTest {
+
+    @Test public void countPollsAndPublishesPerTopic() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String otherTopicName = RDG.topicName().next();
+        final HistogramComboMetrics metrics = histogramComboMetrics();
+
+        //When
+        metrics.polled(topicName, true, 1000L);
+        metrics.polled(topicName, false, 1000L);
+        metrics.polled(topicName, false, 1000L);
+        metrics.published(otherTopicName, 1000L);
+        metrics.failed(otherTopicName, new RuntimeException());
+
+        //Then
+        final ComboMetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getTopics().get(topicName).getFacts(), is(1L));
+        assertThat(snapshot.getTopics().get(topicName).getEmptyPolls(), is(2L));
+        assertThat(snapshot.getTopics().get(topicName).getPollLatency().getCount(), is(3L));
+        assertThat(snapshot.getTopics().get(otherTopicName).getPublished(), is(1L));
+        assertThat(snapshot.getTopics().get(otherTopicName).getFailures(), is(1L));
+    }
+
+    @Test public void percentilesAreWithinBucketPrecision() {
+        //Given
+        final HistogramComboMetrics metrics = histogramComboMetrics();
+
+        //When
+        for (long latency = 1L; latency <= 100_000L; latency++) {
+            metrics.requested(200, latency * 1000L);
+        }
+
+        //Then
+        final LatencySnapshot latency = metrics.snapshot().getRequestLatency();
+        assertThat(latency.getCount(), is(100_000L));
+        assertThat(latency.getMax(), is(100_000_000L));
+        assertThat(latency.getMean(), closeTo(50_000_500.0d, 1.0d));
+        assertThat((double) latency.getPercentile(50.0d), closeTo(50_000_000.0d, 50_000_000.0d * 0.125d));
+        assertThat((double) latency.getPercentile(99.0d), closeTo(99_000_000.0d, 99_000_000.0d * 0.125d));
+        assertThat(latency.getPercentile(100.0d), is(100_000_000L));
+    }
+
+    @Test public void countFailedRequests() {
+        //Given
+        final HistogramComboMetrics metrics = histogramComboMetrics();
+
+        //When
+        metrics.requested(200, 1L);
+        metrics.requested(204, 1L);
+        metrics.requested(500, 1L);
+        metrics.requested(0, 1L);
+
+        //Then
+        assertThat(metrics.snapshot().getFailedRequests(), is(2L));
+    }
+}
@@ -3,27 +3,66 @@ package combo;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.mockito.stubbing.Answer;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
+import static combo.BodyWriterMatcher.writes;
+import static combo.Deduplication.deduplicateByField;
+import static combo.FileSubscriptionStore.fileSubscriptionStore;
+import static combo.HistogramComboMetrics.histogramComboMetrics;
 import static combo.HttpCombo.httpCombo;
+import static combo.HttpCombo.httpComboBuilder;
+import static combo.ParallelProcessing.parallelProcessing;
+import static combo.PublishBatching.publishBatching;
+import static combo.SubscriptionOptions.subscriptionOptions;
 import static java.lang.String.format;
 import static java.net.URI.create;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @SuppressWarnings("unchecked")
 public final class HttpComboTest {
 
     @Rule public final ExpectedException thrown = ExpectedException.none();
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
 
     @Test public void publishStringFact() {
         //Given
@@ -32,13 +71,13 @@ public final class HttpComboTest {
 
         //Given
         final HttpClient httpClient = mock(HttpClient.class);
-        given(httpClient.post(create(format("/topics/%s/facts", topicName)), fact, String.class)).willReturn(ok());
+        given(httpClient.post(eq(create(format("/topics/%s/facts", topicName))), writes(fact), eq(FactCodec.APPLICATION_JSON), eq(String.class))).willReturn(ok());
 
         //When
         httpCombo(httpClient).publishFact(topicName, fact);
 
         //Then
-        verify(httpClient).post(create(format("/topics/%s/facts", topicName)), fact, String.class);
+        verify(httpClient).post(eq(create(format("/topics/%s/facts", topicName))), writes(fact), eq(FactCodec.APPLICATION_JSON), eq(String.class));
     }
 
     @Test public void publishPojoFactAsJsonString() {
@@ -48,16 +87,105 @@ public final class HttpComboTest {
 
         //Given
         final HttpClient httpClient = mock(HttpClient.class);
-        given(httpClient.post(any(URI.class), anyString(), any())).willReturn(ok());
+        given(httpClient.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willReturn(ok());
 
         //When
         httpCombo(httpClient).publishFact(topicName, fact);
 
         //Then
         verify(httpClient).post(
-                create(format("/topics/%s/facts", topicName)),
-                fact.asJsonString(),
-                String.class);
+                eq(create(format("/topics/%s/facts", topicName))),
+                writes(fact.asJsonString()),
+                eq(FactCodec.APPLICATION_JSON),
+                eq(String.class));
+    }
+
+    @Test public void rejectPublishesOverTheLimit() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willReturn(ok());
+        final HttpCombo combo = httpComboBuilder(httpClient)
+                .withPublishLimiter(Limiter.tokenBucket(0.001, 1, 0))
+                .build();
+        combo.publishFact(topicName, "first");
+
+        //Then
+        thrown.expect(LimitExceededException.class);
+
+        //When
+        try {
+            combo.publishFact(topicName, "second");
+        } finally {
+            verify(httpClient, times(1)).post(any(URI.class), any(BodyWriter.class), anyString(), any());
+        }
+    }
+
+    @Test public void pollTheSameSubscriptionAgainWhenTheLimiterRejectsAPollWhileRecovering() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId)), String.class))
+                .willReturn(ok("fact 1"), ok("fact 2"));
+
+        //And
+        final Limiter limiter = mock(Limiter.class);
+        doNothing()
+                .doThrow(new LimitExceededException("Request not allowed"))
+                .doThrow(new LimitExceededException("Request not allowed"))
+                .doNothing()
+                .when(limiter).acquire();
+
+        //When
+        final List<String> facts = httpComboBuilder(httpClient)
+                .withPollLimiter(limiter)
+                .withRecovery(PollStrategy.noBackoff())
+                .build()
+                .facts(topicName, String.class)
+                .limit(2)
+                .collect(toList());
+
+        //Then
+        assertThat(facts, contains("fact 1", "fact 2"));
+        verify(limiter, times(4)).acquire();
+        verify(httpClient, times(1)).post(create(format("/topics/%s/subscriptions", topicName)), "", String.class);
+    }
+
+    @Test public void publishAndConsumeFactsWithTopicCodec() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+        final PojoFact fact = RDG.pojoFact().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willReturn(ok());
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(new HttpResponse<>(200, jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(eq(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId))), any(BodyReader.class)))
+                .willAnswer(readBody(fact.getField()));
+
+        //And
+        final HttpCombo combo = httpComboBuilder(httpClient)
+                .withTopicCodec(topicName, new PlainTextCodec())
+                .build();
+
+        //When
+        combo.publishFact(topicName, fact);
+        final PojoFact consumed = combo.facts(topicName, PojoFact.class).findFirst().get();
+
+        //Then
+        verify(httpClient).post(
+                eq(create(format("/topics/%s/facts", topicName))),
+                writes(fact.getField()),
+                eq("text/plain"),
+                eq(String.class));
+        assertThat(consumed, is(fact));
     }
 
     @Test public void consumePojoFacts() {
@@ -72,8 +200,9 @@ public final class HttpComboTest {
 
         final PojoFact fact1 = RDG.pojoFact().next();
         final PojoFact fact2 = RDG.pojoFact().next();
-        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId)), String.class))
-                .willReturn(ok(fact1.asJsonString()), ok(fact2.asJsonString()))
+        given(httpClient.get(eq(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId))), any(BodyReader.class)))
+                .willAnswer(readBody(fact1.asJsonString()))
+                .willAnswer(readBody(fact2.asJsonString()))
                 .willThrow(new NoMoreFactsException());
 
         //When
@@ -83,6 +212,33 @@ public final class HttpComboTest {
         assertThat(facts, hasItems(fact1, fact2));
     }
 
+    @Test public void consumeFactsIntoReusedFact() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(new HttpResponse<>(200, jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(eq(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId))), any(BodyReader.class)))
+                .willAnswer(readBody("{\"street\":\"High Street\",\"number\":1}"))
+                .willAnswer(readBody("{\"street\":\"Low Street\"}"));
+
+        //And
+        final GeneratedFactCodecTest.Address reusedFact = new GeneratedFactCodecTest.Address();
+
+        //When
+        final List<String> facts = httpComboBuilder(httpClient).build()
+                .reusingFacts(topicName, reusedFact)
+                .limit(2)
+                .map(address -> (address == reusedFact) + " " + address.street + " " + address.number)
+                .collect(toList());
+
+        //Then
+        assertThat(facts, contains("true High Street 1", "true Low Street 0"));
+    }
+
     @Test public void consumeStringFacts() {
         //Given
         final String topicName = RDG.topicName().next();
@@ -125,6 +281,626 @@ public final class HttpComboTest {
         assertThat(facts, hasItems("fact 1", "fact 2", "fact 3"));
     }
 
+    @Test public void survivesLongRunsOfNoContentResponses() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+
+        final AtomicInteger polls = new AtomicInteger();
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId)), String.class))
+                .willAnswer(invocation -> {
+                    final int poll = polls.incrementAndGet();
+                    if (poll < 100000) {
+                        return noContent();
+                    }
+                    if (poll == 100000) {
+                        return ok("fact 1");
+                    }
+                    throw new NoMoreFactsException();
+                });
+
+        //When
+        final List<String> facts = collectFrom(httpComboBuilder(httpClient)
+                .withPollStrategy(PollStrategy.noBackoff())
+                .build()
+                .facts(topicName, String.class));
+
+        //Then
+        assertThat(facts, hasItems("fact 1"));
+    }
+
+    @Test public void consumePrefetchedFactsInOrder() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId)), String.class))
+                .willReturn(ok("fact 1"), noContent(), ok("fact 2"), ok("fact 3"), ok("fact 4"))
+                .willThrow(new NoMoreFactsException());
+
+        //When
+        final List<String> facts;
+        try (final Stream<String> stream = httpComboBuilder(httpClient).build()
+                .facts(topicName, String.class, subscriptionOptions().withPrefetch(2, 1))) {
+            facts = collectFrom(stream);
+        }
+
+        //Then
+        assertThat(facts, contains("fact 1", "fact 2", "fact 3", "fact 4"));
+    }
+
+    @Test public void shareOneSubscriptionBetweenStreams() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+        final PojoFact fact1 = RDG.pojoFact().next();
+        final PojoFact fact2 = RDG.pojoFact().next();
+
+        //And
+        final CountDownLatch streamsOpened = new CountDownLatch(1);
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(eq(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId))), any(BodyReader.class)))
+                .willAnswer(invocation -> {
+                    streamsOpened.await();
+                    return readBody(fact1.asJsonString()).answer(invocation);
+                })
+                .willAnswer(readBody(fact2.asJsonString()))
+                .willReturn(noContent());
+
+        //And
+        final HttpCombo combo = httpComboBuilder(httpClient).build();
+        final SubscriptionOptions shared = subscriptionOptions().withSharedSubscription();
+
+        //When
+        try (final Stream<PojoFact> first = combo.facts(topicName, PojoFact.class, shared);
+             final Stream<PojoFact> second = combo.facts(topicName, PojoFact.class, shared);
+             final Stream<String> third = combo.facts(topicName, String.class, shared)) {
+            streamsOpened.countDown();
+
+            //Then
+            assertThat(first.limit(2).collect(toList()), contains(fact1, fact2));
+            assertThat(second.limit(2).collect(toList()), contains(fact1, fact2));
+            assertThat(third.limit(2).collect(toList()), contains(fact1.asJsonString(), fact2.asJsonString()));
+            verify(httpClient, times(1)).post(create(format("/topics/%s/subscriptions", topicName)), "", String.class);
+        }
+    }
+
+    @Test public void shareSubscriptionsToOtherTopicsWhileOneIsSubscribing() throws Exception {
+        //Given
+        final String slowTopicName = RDG.topicName().next();
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final CountDownLatch subscribing = new CountDownLatch(1);
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", slowTopicName)), "", String.class))
+                .willAnswer(invocation -> {
+                    subscribing.countDown();
+                    subscribed.await();
+                    return ok(jsonMap("subscription_id", subscriptionId));
+                });
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(any(URI.class), any(BodyReader.class))).willReturn((HttpResponse) noContent());
+
+        //And
+        final HttpCombo combo = httpComboBuilder(httpClient).build();
+        final SubscriptionOptions shared = subscriptionOptions().withSharedSubscription();
+        final CompletableFuture<Stream<String>> slowStream = supplyAsync(() -> combo.facts(slowTopicName, String.class, shared));
+        subscribing.await();
+
+        //When
+        final CompletableFuture<Stream<String>> stream = supplyAsync(() -> combo.facts(topicName, String.class, shared));
+
+        //Then
+        try (final Stream<String> opened = stream.get(5, SECONDS)) {
+            subscribed.countDown();
+            slowStream.get(5, SECONDS).close();
+        }
+    }
+
+    @Test public void dropFactsSeenBeforeById() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(eq(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId))), any(BodyReader.class)))
+                .willAnswer(readBody("{\"id\": 1, \"text\": \"fact 1\"}"))
+                .willAnswer(readBody("{\"id\": 2, \"text\": \"fact 2\"}"))
+                .willAnswer(readBody("{\"text\": \"fact 1 again\", \"id\": 1}"))
+                .willAnswer(readBody("{\"id\": 3, \"text\": \"fact 3\"}"))
+                .willThrow(new NoMoreFactsException());
+
+        //When
+        final List<Map> facts = collectFrom(httpComboBuilder(httpClient).build()
+                .facts(topicName, Map.class, subscriptionOptions().withDeduplication(deduplicateByField("id"))));
+
+        //Then
+        assertThat(facts.stream().map(fact -> fact.get("text")).collect(toList()), contains("fact 1", "fact 2", "fact 3"));
+    }
+
+    @Test public void recoverBySubscribingAgain() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String lostSubscriptionId = RDG.subscriptionId().next();
+        final String newSubscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", lostSubscriptionId)), ok(jsonMap("subscription_id", newSubscriptionId)));
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, lostSubscriptionId)), String.class))
+                .willReturn(ok("fact 1"))
+                .willThrow(new HttpClientException(new IOException("Subscription not found")));
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, newSubscriptionId)), String.class))
+                .willReturn(ok("fact 2"));
+
+        //When
+        final List<String> facts = httpComboBuilder(httpClient)
+                .withRecovery(PollStrategy.noBackoff())
+                .build()
+                .facts(topicName, String.class)
+                .limit(2)
+                .collect(toList());
+
+        //Then
+        assertThat(facts, contains("fact 1", "fact 2"));
+    }
+
+    @Test public void recoverByPollingAgainAfterServerErrors() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+        final URI nextFact = create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId));
+        final HttpClientException serverError = new HttpClientException(new UnexpectedStatusException("GET", nextFact, 503));
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(nextFact, String.class))
+                .willReturn(ok("fact 1"))
+                .willThrow(serverError)
+                .willReturn(ok("fact 2"));
+        given(httpClient.statusOf(serverError)).willReturn(503);
+
+        //When
+        final List<String> facts = httpComboBuilder(httpClient)
+                .withRecovery(PollStrategy.noBackoff())
+                .build()
+                .facts(topicName, String.class)
+                .limit(2)
+                .collect(toList());
+
+        //Then
+        assertThat(facts, contains("fact 1", "fact 2"));
+        verify(httpClient, times(1)).post(create(format("/topics/%s/subscriptions", topicName)), "", String.class);
+    }
+
+    @Test public void passFactsThatCannotBeDecodedToTheConsumerWhenRecovering() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(eq(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId))), any(BodyReader.class)))
+                .willAnswer(readBody("not a pojo fact"));
+
+        //Then
+        thrown.expect(FactDecodingException.class);
+
+        //When
+        try {
+            httpComboBuilder(httpClient)
+                    .withRecovery(PollStrategy.noBackoff())
+                    .build()
+                    .facts(topicName, PojoFact.class)
+                    .findFirst();
+        } finally {
+            verify(httpClient, times(1)).post(create(format("/topics/%s/subscriptions", topicName)), "", String.class);
+        }
+    }
+
+    @Test public void carryOnPollingSavedSubscriptions() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String savedSubscriptionId = RDG.subscriptionId().next();
+        final String newSubscriptionId = RDG.subscriptionId().next();
+        final Path storeFile = folder.newFolder().toPath().resolve("subscriptions.properties");
+        fileSubscriptionStore(storeFile).save(topicName + "/consumer", savedSubscriptionId);
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", newSubscriptionId)));
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, savedSubscriptionId)), String.class))
+                .willReturn(ok("fact 1"))
+                .willThrow(new HttpClientException(new IOException("Subscription not found")));
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, newSubscriptionId)), String.class))
+                .willReturn(ok("fact 2"));
+
+        //When
+        final List<String> facts = httpComboBuilder(httpClient)
+                .withRecovery(PollStrategy.noBackoff())
+                .withSubscriptionStore(fileSubscriptionStore(storeFile))
+                .build()
+                .facts(topicName, String.class, subscriptionOptions().withSubscriptionName("consumer"))
+                .limit(2)
+                .collect(toList());
+
+        //Then
+        assertThat(facts, contains("fact 1", "fact 2"));
+        assertThat(fileSubscriptionStore(storeFile).load(topicName + "/consumer"), is(newSubscriptionId));
+    }
+
+    @Test public void decodeOnlyTheFactViewsThatAreKept() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+        final PojoFact kept = new PojoFact("keep me");
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(eq(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId))), any(BodyReader.class)))
+                .willAnswer(readBody(new PojoFact("ignore me").asJsonString()))
+                .willAnswer(readBody(new PojoFact("ignore me too").asJsonString()))
+                .willAnswer(readBody(kept.asJsonString()))
+                .willThrow(new NoMoreFactsException());
+
+        //And
+        final HistogramComboMetrics metrics = histogramComboMetrics();
+        final HttpCombo combo = httpComboBuilder(httpClient).withMetrics(metrics).build();
+
+        //When
+        final List<PojoFact> facts = collectFrom(combo.factViews(topicName, PojoFact.class)
+                .filter(view -> view.getString("field").startsWith("keep"))
+                .map(FactView::getFact));
+
+        //Then
+        assertThat(facts, contains(kept));
+        assertThat(metrics.snapshot().getTopics().get(topicName).getDecodeLatency().getCount(), is(1L));
+    }
+
+    @Test public void recordMetricsOfPollsAndPublishes() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId)), String.class))
+                .willReturn(noContent(), noContent(), ok("fact 1"));
+        given(httpClient.post(eq(create(format("/topics/%s/facts", topicName))), writes("fact 2"), eq(FactCodec.APPLICATION_JSON), eq(String.class))).willReturn(ok());
+
+        //And
+        final HistogramComboMetrics metrics = histogramComboMetrics();
+        final HttpCombo combo = httpComboBuilder(httpClient).withPollStrategy(PollStrategy.noBackoff()).withMetrics(metrics).build();
+
+        //When
+        combo.facts(topicName, String.class).findFirst();
+        combo.publishFact(topicName, "fact 2");
+
+        //Then
+        final TopicMetricsSnapshot topicMetrics = metrics.snapshot().getTopics().get(topicName);
+        assertThat(topicMetrics.getSubscribeLatency().getCount(), is(1L));
+        assertThat(topicMetrics.getFacts(), is(1L));
+        assertThat(topicMetrics.getEmptyPolls(), is(2L));
+        assertThat(topicMetrics.getPublished(), is(1L));
+        assertThat(topicMetrics.getFailures(), is(0L));
+    }
+
+    @Test public void publishFactAsynchronously() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String fact = RDG.string().next();
+
+        //Given
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(eq(create(format("/topics/%s/facts", topicName))), writes(fact), eq(FactCodec.APPLICATION_JSON), eq(String.class))).willReturn(ok());
+
+        //When
+        httpComboBuilder(httpClient).build().publishFactAsync(topicName, fact).get(5, SECONDS);
+
+        //Then
+        verify(httpClient).post(eq(create(format("/topics/%s/facts", topicName))), writes(fact), eq(FactCodec.APPLICATION_JSON), eq(String.class));
+    }
+
+    @Test public void publishBatchedFactsInOrder() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willReturn(ok());
+
+        //When
+        final HttpCombo combo = httpComboBuilder(httpClient)
+                .withPublishBatching(publishBatching().withMaxBatchFacts(4).withLinger(50L).withMaxRequestsInFlight(1))
+                .build();
+        final List<CompletableFuture<Void>> published = new LinkedList<>();
+        for (int i = 1; i <= 10; i++) {
+            published.add(combo.publishFactAsync(topicName, "fact " + i));
+        }
+        allOf(published.toArray(new CompletableFuture[published.size()])).get(5, SECONDS);
+
+        //Then
+        final InOrder inOrder = inOrder(httpClient);
+        for (int i = 1; i <= 10; i++) {
+            inOrder.verify(httpClient).post(eq(create(format("/topics/%s/facts", topicName))), writes("fact " + i), eq(FactCodec.APPLICATION_JSON), eq(String.class));
+        }
+    }
+
+    @Test public void postBatchedFactsConcurrently() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final CountDownLatch allInFlight = new CountDownLatch(4);
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willAnswer(invocation -> {
+            allInFlight.countDown();
+            //Only returns if every fact in the batch was posted without waiting for the others
+            if (!allInFlight.await(5, SECONDS)) {
+                throw new IllegalStateException("Facts were not posted concurrently");
+            }
+            return ok();
+        });
+
+        //When
+        final HttpCombo combo = httpComboBuilder(httpClient)
+                .withPublishBatching(publishBatching().withMaxBatchFacts(4).withMaxRequestsInFlight(4))
+                .build();
+        final List<CompletableFuture<Void>> published = new LinkedList<>();
+        for (int i = 1; i <= 4; i++) {
+            published.add(combo.publishFactAsync(topicName, "fact " + i));
+        }
+        allOf(published.toArray(new CompletableFuture[published.size()])).get(10, SECONDS);
+
+        //Then
+        verify(httpClient, times(4)).post(any(URI.class), any(BodyWriter.class), anyString(), any());
+    }
+
+    @Test public void blockingPublishesDoNotLinger() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willReturn(ok());
+        final HttpCombo combo = httpComboBuilder(httpClient)
+                .withPublishBatching(publishBatching().withLinger(60000L))
+                .build();
+
+        //When
+        final CompletableFuture<Void> published = runAsync(() -> combo.publishFact(topicName, "fact"));
+
+        //Then
+        published.get(5, SECONDS);
+        verify(httpClient).post(eq(create(format("/topics/%s/facts", topicName))), writes("fact"), eq(FactCodec.APPLICATION_JSON), eq(String.class));
+    }
+
+    @Test public void sendBatchesOnASingleThreadWithABlockingClient() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willReturn(ok());
+        final HttpCombo combo = httpComboBuilder(httpClient)
+                .withExecutor(newSingleThreadExecutor())
+                .withPublishBatching(publishBatching().withMaxBatchFacts(10).withMaxRequestsInFlight(1))
+                .build();
+
+        //When
+        final List<CompletableFuture<Void>> published = new LinkedList<>();
+        for (int i = 1; i <= 10; i++) {
+            published.add(combo.publishFactAsync(topicName, "fact " + i));
+        }
+
+        //Then
+        allOf(published.toArray(new CompletableFuture[published.size()])).get(5, SECONDS);
+        verify(httpClient, times(10)).post(any(URI.class), any(BodyWriter.class), anyString(), any());
+    }
+
+    @Test public void blockingPublishesDoNotLingerBehindABatchBeingSent() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final CountDownLatch posting = new CountDownLatch(1);
+        final CountDownLatch posted = new CountDownLatch(1);
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(any(URI.class), any(BodyWriter.class), anyString(), any())).willReturn(ok());
+        given(httpClient.post(any(URI.class), writes("fact 1"), anyString(), any())).willAnswer(invocation -> {
+            posting.countDown();
+            posted.await();
+            return ok();
+        });
+        final HttpCombo combo = httpComboBuilder(httpClient)
+                .withPublishBatching(publishBatching().withMaxBatchFacts(2).withLinger(60000L).withMaxRequestsInFlight(1))
+                .build();
+
+        //And a full batch, the first fact of which is being posted
+        combo.publishFactAsync(topicName, "fact 1");
+        combo.publishFactAsync(topicName, "fact 2");
+        posting.await();
+
+        //When
+        final CompletableFuture<Void> published = runAsync(() -> combo.publishFact(topicName, "fact 3"));
+        Thread.sleep(100L);
+        posted.countDown();
+
+        //Then
+        published.get(5, SECONDS);
+        verify(httpClient).post(eq(create(format("/topics/%s/facts", topicName))), writes("fact 3"), eq(FactCodec.APPLICATION_JSON), eq(String.class));
+    }
+
+    @Test public void pushOnlyRequestedFacts() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId)), String.class))
+                .willReturn(ok("fact 1"), noContent(), ok("fact 2"), ok("fact 3"))
+                .willThrow(new NoMoreFactsException());
+
+        //When
+        final List<String> facts = new CopyOnWriteArrayList<>();
+        final CountDownLatch twoFactsPushed = new CountDownLatch(2);
+        httpComboBuilder(httpClient).build().subscribe(topicName, String.class, new FactSubscriber<String>() {
+            @Override public void onSubscribe(final FactSubscription subscription) {
+                subscription.request(2);
+            }
+
+            @Override public void onFact(final String fact) {
+                facts.add(fact);
+                twoFactsPushed.countDown();
+            }
+
+            @Override public void onError(final Throwable error) {
+                facts.add(error.getMessage());
+            }
+        });
+
+        //Then
+        assertThat(twoFactsPushed.await(5, SECONDS), is(true));
+        assertThat(facts, contains("fact 1", "fact 2"));
+    }
+
+    @Test public void signalAnErrorInsteadOfThrowingWhenANonPositiveNumberOfFactsIsRequested() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId)), String.class))
+                .willReturn(ok("fact 1"));
+
+        //When
+        final List<Object> signals = new CopyOnWriteArrayList<>();
+        final CountDownLatch errorSignalled = new CountDownLatch(1);
+        httpComboBuilder(httpClient).build().subscribe(topicName, String.class, new FactSubscriber<String>() {
+            @Override public void onSubscribe(final FactSubscription subscription) {
+                subscription.request(0);
+                subscription.request(1);
+            }
+
+            @Override public void onFact(final String fact) {
+                signals.add(fact);
+            }
+
+            @Override public void onError(final Throwable error) {
+                signals.add(error);
+                errorSignalled.countDown();
+            }
+        });
+
+        //Then
+        assertThat(errorSignalled.await(5, SECONDS), is(true));
+        Thread.sleep(100L);
+        assertThat(signals.size(), is(1));
+        assertThat(signals.get(0), instanceOf(IllegalArgumentException.class));
+        verify(httpClient, times(0)).get(any(URI.class), eq(String.class));
+    }
+
+    @Test public void processFactsInOrderPerKey() throws Exception {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final String subscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", topicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", subscriptionId)));
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", topicName, subscriptionId)), String.class))
+                .willReturn(ok("a1"), ok("b1"), ok("c1"), ok("a2"), ok("b2"), ok("a3"), ok("c2"), ok("b3"), ok("c3"), noContent());
+
+        //And
+        final List<String> handled = new CopyOnWriteArrayList<>();
+        final CountDownLatch allHandled = new CountDownLatch(9);
+
+        //When
+        try (PartitionedFactProcessor<String> processor = httpComboBuilder(httpClient).build()
+                .processFacts(topicName, String.class, fact -> fact.charAt(0), fact -> {
+                    handled.add(fact);
+                    allHandled.countDown();
+                }, parallelProcessing().withWorkers(3).withQueueSize(1))) {
+
+            //Then
+            assertThat(allHandled.await(5, SECONDS), is(true));
+            assertThat(processor.getFailure(), is(nullValue()));
+        }
+        assertThat(handled.stream().filter(fact -> fact.startsWith("a")).collect(toList()), contains("a1", "a2", "a3"));
+        assertThat(handled.stream().filter(fact -> fact.startsWith("b")).collect(toList()), contains("b1", "b2", "b3"));
+        assertThat(handled.stream().filter(fact -> fact.startsWith("c")).collect(toList()), contains("c1", "c2", "c3"));
+    }
+
+    @Test public void consumeFactsFromSeveralTopicsAsOneStream() {
+        //Given
+        final String firstTopicName = RDG.topicName().next();
+        final String secondTopicName = RDG.topicName().next();
+        final String firstSubscriptionId = RDG.subscriptionId().next();
+        final String secondSubscriptionId = RDG.subscriptionId().next();
+
+        //And
+        final HttpClient httpClient = mock(HttpClient.class);
+        given(httpClient.post(create(format("/topics/%s/subscriptions", firstTopicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", firstSubscriptionId)));
+        given(httpClient.post(create(format("/topics/%s/subscriptions", secondTopicName)), "", String.class))
+                .willReturn(ok(jsonMap("subscription_id", secondSubscriptionId)));
+
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", firstTopicName, firstSubscriptionId)), String.class))
+                .willReturn(ok("fact 1"), noContent(), ok("fact 2"), noContent());
+        given(httpClient.get(create(format("/topics/%s/subscriptions/%s/next", secondTopicName, secondSubscriptionId)), String.class))
+                .willReturn(noContent(), ok("fact 3"), noContent());
+
+        //When
+        final List<TopicFact<String>> facts;
+        try (final Stream<TopicFact<String>> stream = httpComboBuilder(httpClient).build()
+                .facts(new HashSet<>(asList(firstTopicName, secondTopicName)), String.class)) {
+            facts = stream.limit(3).collect(toList());
+        }
+
+        //Then
+        assertThat(facts, containsInAnyOrder(
+                new TopicFact<>(firstTopicName, "fact 1"),
+                new TopicFact<>(firstTopicName, "fact 2"),
+                new TopicFact<>(secondTopicName, "fact 3")));
+    }
+
     @Test
     public void cannotConsumeFactsFromNullTopic() {
         //Expect
@@ -155,6 +931,31 @@ public final class HttpComboTest {
         httpCombo(mock(HttpClient.class)).publishFact(null, RDG.string().next());
     }
 
+    @Test
+    public void cannotConsumeBinaryFactsThroughClientsThatReadBodiesAsStrings() {
+        //Given
+        final String topicName = RDG.topicName().next();
+        final HttpClient stringsOnly = new HttpClient() {
+            @Override public <T> HttpResponse<T> get(final URI path, final Class<T> responseType) {
+                throw new AssertionError("Not expected to poll");
+            }
+
+            @Override public <T> HttpResponse<T> post(final URI path, final Object requestBody, final Class<T> responseType) {
+                throw new AssertionError("Not expected to subscribe");
+            }
+        };
+
+        //Expect
+        thrown.expect(UnsupportedOperationException.class);
+        thrown.expectMessage(format("Cannot consume binary facts from topic %s", topicName));
+
+        //When
+        httpComboBuilder(stringsOnly)
+                .withTopicCodec(topicName, new BinaryCodec())
+                .build()
+                .facts(topicName, PojoFact.class);
+    }
+
     private static <T> HttpResponse<T> ok() {
         return new HttpResponse<>(200, null);
     }
@@ -167,6 +968,43 @@ public final class HttpComboTest {
         return new HttpResponse<>(204, null);
     }
 
+    private static final class PlainTextCodec implements FactCodec {
+
+        @Override public String contentType() {
+            return "text/plain";
+        }
+
+        @Override public <T> FactDecoder<T> decoderFor(final Class<T> factClass) {
+            return body -> factClass.cast(new PojoFact(new Scanner(body, "UTF-8").next()));
+        }
+
+        @Override public <T> FactEncoder<T> encoderFor(final Class<T> factClass) {
+            return (fact, body) -> body.write(((PojoFact) fact).getField().getBytes(UTF_8));
+        }
+    }
+
+    private static final class BinaryCodec implements FactCodec {
+
+        @Override public String contentType() {
+            return "application/octet-stream";
+        }
+
+        @Override public <T> FactDecoder<T> decoderFor(final Class<T> factClass) {
+            return body -> null;
+        }
+
+        @Override public <T> FactEncoder<T> encoderFor(final Class<T> factClass) {
+            return (fact, body) -> body.write(0);
+        }
+    }
+
+    private static Answer<HttpResponse<?>> readBody(final String body) {
+        return invocation -> {
+            final BodyReader<?> bodyReader = (BodyReader<?>) invocation.getArguments()[1];
+            return ok(bodyReader.read(new ByteArrayInputStream(body.getBytes(UTF_8))));
+        };
+    }
+
     private static String jsonMap(final String key, final String value) {
         return "{\"" + key + "\":\"" + value + "\"}";
     }
@@ -0,0 +1,43 @@
+package combo;
+
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public final class JsonFieldsTest {
+
+    @Test public void findTopLevelFieldsSkippingNestedValues() {
+        //Given
+        final byte[] json = ("{\"nested\": {\"id\": \"inner\", \"list\": [1, {\"id\": 2}]}, " +
+                "\"text\": \"a \\\"quoted\\\" id\", \"id\": 42 }").getBytes(UTF_8);
+
+        //When
+        final long field = JsonFields.field(json, 0, json.length, "id".getBytes(UTF_8));
+
+        //Then
+        assertThat(new String(json, JsonFields.valueStart(field), JsonFields.valueEnd(field) - JsonFields.valueStart(field), UTF_8), is("42"));
+    }
+
+    @Test public void missingFieldsAndMalformedJsonAreNotFound() {
+        //Given
+        final byte[] name = "id".getBytes(UTF_8);
+        final byte[] missing = "{\"other\": \"id\"}".getBytes(UTF_8);
+        final byte[] malformed = "{\"other\": \"unclosed, \"id\": 1}".getBytes(UTF_8);
+        final byte[] notAnObject = "[\"id\", 1]".getBytes(UTF_8);
+
+        //Then
+        assertThat(JsonFields.field(missing, 0, missing.length, name), is(JsonFields.NOT_FOUND));
+        assertThat(JsonFields.field(malformed, 0, malformed.length, name), is(JsonFields.NOT_FOUND));
+        assertThat(JsonFields.field(notAnObject, 0, notAnObject.length, name), is(JsonFields.NOT_FOUND));
+    }
+
+    @Test public void unescapeStringValues() {
+        //Given
+        final byte[] json = "\"say \\\"h\\u00e9llo\\\"\\n\"".getBytes(UTF_8);
+
+        //Then
+        assertThat(JsonFields.string(json, 0, json.length), is("say \"h\u00e9llo\"\n"));
+    }
+}
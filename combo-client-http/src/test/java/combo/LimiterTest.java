@@ -0,0 +1,82 @@
+package combo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public final class LimiterTest {
+
+    @Rule public final ExpectedException thrown = ExpectedException.none();
+
+    @Test public void tokenBucketRejectsRequestsBeyondItsBurst() {
+        //Given
+        final Limiter limiter = Limiter.tokenBucket(0.001, 3, 0);
+        limiter.acquire();
+        limiter.acquire();
+        limiter.acquire();
+
+        //Then
+        thrown.expect(LimitExceededException.class);
+        thrown.expectMessage("Request not allowed within 0ms by a limit of 0.001 requests a second");
+
+        //When
+        limiter.acquire();
+    }
+
+    @Test public void tokenBucketQueuesRequestsWithinItsMaximumWait() {
+        //Given
+        final Limiter limiter = Limiter.tokenBucket(20, 1, 1000);
+        limiter.acquire();
+
+        //When
+        final long start = System.nanoTime();
+        limiter.acquire();
+        limiter.acquire();
+        final long waited = System.nanoTime() - start;
+
+        //Then
+        assertThat(waited, is(greaterThanOrEqualTo(MILLISECONDS.toNanos(90))));
+    }
+
+    @Test public void aimdGrowsWhileRequestsAreQuickAndBacksOffWhenTheyAreNot() {
+        //Given
+        final AimdLimiter limiter = new AimdLimiter(2, 4, 100, 0);
+        final long quick = MILLISECONDS.toNanos(1);
+        final long slow = MILLISECONDS.toNanos(200);
+
+        //When
+        limiter.acquire();
+        limiter.release(quick, true);
+        final int afterQuick = limiter.limit();
+        limiter.acquire();
+        limiter.release(slow, true);
+        final int afterSlow = limiter.limit();
+        limiter.acquire();
+        limiter.release(quick, false);
+        final int afterFailure = limiter.limit();
+
+        //Then
+        assertThat(afterQuick, is(3));
+        assertThat(afterSlow, is(2));
+        assertThat(afterFailure, is(2));
+    }
+
+    @Test public void aimdRejectsRequestsOverItsLimit() {
+        //Given
+        final Limiter limiter = Limiter.aimd(2, 10, 100, 0);
+        limiter.acquire();
+        limiter.acquire();
+
+        //Then
+        thrown.expect(LimitExceededException.class);
+        thrown.expectMessage("Request not allowed within 0ms by a limit of 2 requests in flight");
+
+        //When
+        limiter.acquire();
+    }
+}
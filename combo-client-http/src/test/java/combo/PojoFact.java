@@ -1,5 +1,6 @@
 package combo;
 
+@ComboFact
 final class PojoFact {
 
     private final String field;
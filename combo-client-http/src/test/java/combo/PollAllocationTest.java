@@ -0,0 +1,155 @@
+package combo;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.Iterator;
+
+import static combo.HistogramComboMetrics.histogramComboMetrics;
+import static combo.HttpCombo.httpComboBuilder;
+import static combo.HttpResponse.Status.NO_CONTENT;
+import static combo.HttpResponse.noContent;
+import static combo.PollStrategy.noBackoff;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+public final class PollAllocationTest {
+
+    private static final int WARM_UP_POLLS = 200_000;
+    private static final int MEASURED_POLLS = 100_000;
+
+    @Test public void pollingAllocatesNothingOnceWarmedUp() {
+        //Given
+        final com.sun.management.ThreadMXBean threads = allocationMeasuringThreads();
+        final Iterator<String> facts = httpComboBuilder(new PreparedResponsesHttpClient())
+                .withPollStrategy(noBackoff())
+                .build()
+                .<String>facts(RDG.topicName().next(), String.class)
+                .iterator();
+        consume(facts, WARM_UP_POLLS);
+
+        //When
+        final long allocated = allocatedBy(threads, () -> consume(facts, MEASURED_POLLS));
+
+        //Then
+        assertThat("bytes allocated per poll", (double) allocated / MEASURED_POLLS, lessThan(1.0d));
+    }
+
+    @Test public void recordingMetricsAllocatesNothingOnceWarmedUp() {
+        //Given
+        final com.sun.management.ThreadMXBean threads = allocationMeasuringThreads();
+        final Iterator<String> facts = httpComboBuilder(new PreparedResponsesHttpClient())
+                .withPollStrategy(noBackoff())
+                .withMetrics(histogramComboMetrics())
+                .build()
+                .<String>facts(RDG.topicName().next(), String.class)
+                .iterator();
+        consume(facts, WARM_UP_POLLS);
+
+        //When
+        final long allocated = allocatedBy(threads, () -> consume(facts, MEASURED_POLLS));
+
+        //Then
+        assertThat("bytes allocated per poll", (double) allocated / MEASURED_POLLS, lessThan(1.0d));
+    }
+
+    @Test public void pollingDecodedFactsAllocatesNothingButTheDecodedFactsOnceWarmedUp() {
+        //Given
+        final com.sun.management.ThreadMXBean threads = allocationMeasuringThreads();
+        final PreparedResponsesHttpClient httpClient = new PreparedResponsesHttpClient();
+        final Iterator<PojoFact> facts = httpComboBuilder(httpClient)
+                .withPollStrategy(noBackoff())
+                .build()
+                .facts(RDG.topicName().next(), PojoFact.class)
+                .iterator();
+        consume(facts, WARM_UP_POLLS);
+
+        //And what the client and decoder allocate on their own
+        final BodyReader<PojoFact> decoder = GeneratedFactCodec.generatedCodecFor(PojoFact.class)::read;
+        poll(httpClient, decoder, WARM_UP_POLLS);
+        final long allocatedPollingAndDecoding = allocatedBy(threads, () -> poll(httpClient, decoder, MEASURED_POLLS));
+
+        //When
+        final long allocated = allocatedBy(threads, () -> consume(facts, MEASURED_POLLS));
+
+        //Then
+        assertThat("bytes allocated per poll besides the client and decoder",
+                (double) (allocated - allocatedPollingAndDecoding) / MEASURED_POLLS, lessThan(1.0d));
+    }
+
+    private static long allocatedBy(final com.sun.management.ThreadMXBean threads, final Runnable work) {
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        work.run();
+        return threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+    }
+
+    private static void consume(final Iterator<?> facts, final int polls) {
+        for (int i = 0; i < polls; i++) {
+            facts.next();
+        }
+    }
+
+    /**
+     * Polls as the combo does, until each fact arrives.
+     */
+    private static void poll(final HttpClient httpClient, final BodyReader<PojoFact> decoder, final int facts) {
+        final URI next = URI.create("/next");
+        for (int i = 0; i < facts; i++) {
+            while (httpClient.get(next, decoder).getStatusCode() == NO_CONTENT) {
+                //Until the fact arrives
+            }
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationMeasuringThreads() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+
+        final com.sun.management.ThreadMXBean allocationMeasuringThreads = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocationMeasuringThreads.isThreadAllocatedMemorySupported());
+        allocationMeasuringThreads.setThreadAllocatedMemoryEnabled(true);
+        return allocationMeasuringThreads;
+    }
+
+    /**
+     * Answers polls with facts and empty responses made up front, so any allocation is down to the combo. Facts read
+     * as a stream are read from the same body every time.
+     */
+    private static final class PreparedResponsesHttpClient implements HttpClient {
+
+        private final HttpResponse<String> fact = new HttpResponse<>(200, RDG.string().next());
+        private final ByteArrayInputStream factBody = new ByteArrayInputStream(new PojoFact(RDG.string().next()).asJsonString().getBytes(UTF_8));
+        private boolean empty;
+
+        @SuppressWarnings("unchecked")
+        @Override public <T> HttpResponse<T> get(final URI path, final Class<T> responseType) {
+            empty = !empty;
+            return (HttpResponse<T>) (empty ? noContent() : fact);
+        }
+
+        @Override public <T> HttpResponse<T> get(final URI path, final BodyReader<T> bodyReader) {
+            empty = !empty;
+            if (empty) {
+                return noContent();
+            }
+            try {
+                factBody.reset();
+                return new HttpResponse<>(200, bodyReader.read(factBody));
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override public <T> HttpResponse<T> post(final URI path, final Object requestBody, final Class<T> responseType) {
+            return (HttpResponse<T>) new HttpResponse<>(200, "{\"subscription_id\":\"" + RDG.subscriptionId().next() + "\"}");
+        }
+    }
+}
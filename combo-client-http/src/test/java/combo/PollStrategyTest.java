@@ -0,0 +1,49 @@
+package combo;
+
+import org.junit.Test;
+
+import static combo.PollStrategy.exponentialBackoff;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public final class PollStrategyTest {
+
+    @Test public void exponentialBackoffDoublesTheDelayAfterEachEmptyPoll() {
+        //Given
+        final PollStrategy pollStrategy = exponentialBackoff(10L, 1000L);
+
+        //Then
+        assertThat(pollStrategy.delayAfterEmptyPolls(1), is(10L));
+        assertThat(pollStrategy.delayAfterEmptyPolls(2), is(20L));
+        assertThat(pollStrategy.delayAfterEmptyPolls(3), is(40L));
+        assertThat(pollStrategy.delayAfterEmptyPolls(4), is(80L));
+    }
+
+    @Test public void exponentialBackoffIsCappedAtTheMaximumDelay() {
+        //Given
+        final PollStrategy pollStrategy = exponentialBackoff(10L, 1000L);
+
+        //Then
+        assertThat(pollStrategy.delayAfterEmptyPolls(8), is(1000L));
+        assertThat(pollStrategy.delayAfterEmptyPolls(100), is(1000L));
+        assertThat(pollStrategy.delayAfterEmptyPolls(Integer.MAX_VALUE), is(1000L));
+    }
+
+    @Test public void jitteredBackoffStaysWithinTheJitterRange() {
+        //Given
+        final PollStrategy pollStrategy = exponentialBackoff(100L, 1000L, 0.5d);
+
+        //Then
+        for (int i = 0; i < 1000; i++) {
+            assertThat(pollStrategy.delayAfterEmptyPolls(1), is(allOf(greaterThanOrEqualTo(50L), lessThanOrEqualTo(150L))));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maximumDelayCannotBeLessThanInitialDelay() {
+        exponentialBackoff(100L, 10L);
+    }
+}
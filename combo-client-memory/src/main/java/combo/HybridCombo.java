@@ -0,0 +1,73 @@
+package combo;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * A combo that keeps some topics inside this JVM, for topics whose publishers and consumers all live here, and
+ * sends every other topic to another combo, usually a {@code HttpCombo}.
+ * <p>
+ * Facts published to a local topic reach local consumers by reference, without any requests. With mirroring,
+ * they are also published to the other combo, so consumers elsewhere still see them.
+ */
+public final class HybridCombo implements Combo {
+
+    private final Combo local;
+    private final Combo remote;
+    private final Set<String> localTopics;
+    private final boolean mirrored;
+
+    private HybridCombo(final Combo local, final Combo remote, final Set<String> localTopics, final boolean mirrored) {
+        this.local = local;
+        this.remote = remote;
+        this.localTopics = localTopics;
+        this.mirrored = mirrored;
+    }
+
+    public static HybridCombo hybridCombo(final Combo local, final Combo remote, final Set<String> localTopics) {
+        return newHybridCombo(local, remote, localTopics, false);
+    }
+
+    /**
+     * As {@link #hybridCombo(Combo, Combo, Set)}, also publishing facts on local topics to the remote combo.
+     */
+    public static HybridCombo mirroredHybridCombo(final Combo local, final Combo remote, final Set<String> localTopics) {
+        return newHybridCombo(local, remote, localTopics, true);
+    }
+
+    @Override public <T> Stream<T> facts(final String topicName, final Class<? extends T> classOfT) {
+        return isLocal(topicName) ? local.facts(topicName, classOfT) : remote.facts(topicName, classOfT);
+    }
+
+    @Override public <T> void publishFact(final String topicName, final T fact) {
+        if (!isLocal(topicName)) {
+            remote.publishFact(topicName, fact);
+            return;
+        }
+
+        local.publishFact(topicName, fact);
+        if (mirrored) {
+            remote.publishFact(topicName, fact);
+        }
+    }
+
+    private boolean isLocal(final String topicName) {
+        return topicName != null && localTopics.contains(topicName);
+    }
+
+    private static HybridCombo newHybridCombo(final Combo local,
+                                              final Combo remote,
+                                              final Set<String> localTopics,
+                                              final boolean mirrored) {
+        if (local == null || remote == null) {
+            throw new IllegalArgumentException("Cannot create a hybrid combo without both a local and a remote combo");
+        }
+        if (localTopics == null || localTopics.contains(null)) {
+            throw new IllegalArgumentException("Cannot keep null topics local");
+        }
+        return new HybridCombo(local, remote, unmodifiableSet(new HashSet<>(localTopics)), mirrored);
+    }
+}
@@ -0,0 +1,70 @@
+package combo;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import static java.util.stream.Stream.generate;
+
+/**
+ * A combo that only exists inside this JVM. Facts are handed to consumers by reference, without being serialised,
+ * through a lock-free ring buffer per topic.
+ * <p>
+ * As with a combo server, a stream sees the facts published after it was created, and every stream on a topic
+ * sees every fact. A topic holds at most {@code topicCapacity} facts that some stream has not yet consumed;
+ * publishing waits for the slowest stream to catch up beyond that. Close streams that are no longer consumed, or
+ * they will eventually hold back publishing to their topic.
+ * <p>
+ * Facts are shared between publishers and consumers, so they should be immutable, and each must be an instance of
+ * the class its consumers ask for.
+ */
+public final class InMemoryCombo implements Combo {
+
+    private static final int DEFAULT_TOPIC_CAPACITY = 1024;
+
+    private final int topicCapacity;
+    private final ConcurrentMap<String, TopicRing> topics = new ConcurrentHashMap<>();
+
+    private InMemoryCombo(final int topicCapacity) {
+        this.topicCapacity = topicCapacity;
+    }
+
+    public static InMemoryCombo inMemoryCombo() {
+        return new InMemoryCombo(DEFAULT_TOPIC_CAPACITY);
+    }
+
+    /**
+     * @param topicCapacity the number of unconsumed facts each topic can hold, a power of two
+     */
+    public static InMemoryCombo inMemoryCombo(final int topicCapacity) {
+        if (topicCapacity < 1 || Integer.bitCount(topicCapacity) != 1) {
+            throw new IllegalArgumentException("Topic capacity must be a positive power of two");
+        }
+        return new InMemoryCombo(topicCapacity);
+    }
+
+    @Override public <T> Stream<T> facts(final String topicName, final Class<? extends T> classOfT) {
+        checkNotNull(topicName, "Cannot consume facts from null topic");
+        checkNotNull(classOfT, "Cannot consume facts of an unspecified type. Use 'Object.class' if you don't have a more specific type");
+
+        final TopicRing.Reader reader = topic(topicName).newReader();
+        return generate(() -> (T) classOfT.cast(reader.next())).onClose(reader::close);
+    }
+
+    @Override public <T> void publishFact(final String topicName, final T fact) {
+        checkNotNull(topicName, "Cannot publish facts to a null topic");
+
+        topic(topicName).publish(fact);
+    }
+
+    private TopicRing topic(final String topicName) {
+        final TopicRing topic = topics.get(topicName);
+        return topic != null ? topic : topics.computeIfAbsent(topicName, name -> new TopicRing(topicCapacity));
+    }
+
+    private static void checkNotNull(final Object argument, final String message) {
+        if (argument == null) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package combo;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ring buffer of the facts published to one topic, read independently by any number of readers.
+ * <p>
+ * Publishers claim a sequence number with a single atomic increment and then fill the slot it maps to, so neither
+ * publishers nor readers take a lock. A publisher may not overwrite a slot until every reader has read past it,
+ * so a slow reader holds back publishers rather than missing facts. With no readers, facts are published to nobody.
+ * <p>
+ * Each slot records the sequence of the fact last written to it, which tells a reader whether the fact it wants
+ * has been written yet.
+ * <p>
+ * A reader waiting for a fact, or a publisher waiting for readers, spins and then yields for a while, which is all
+ * the waiting there is while facts are flowing. After that it parks until it is woken: publishers wake the readers
+ * waiting when they write a fact, and readers wake the publishers waiting when they read one, so a quiet topic
+ * costs its readers nothing. Waiters are counted, so nobody is woken, and nothing but the count is read, while no one
+ * waits.
+ */
+final class TopicRing {
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+
+    private final int mask;
+    private final Object[] facts;
+    private final AtomicLongArray written;
+    private final AtomicLong claimed = new AtomicLong();
+
+    private final AtomicInteger waitingReaders = new AtomicInteger();
+    private final AtomicInteger waitingPublishers = new AtomicInteger();
+    private final Set<Thread> parkedPublishers = ConcurrentHashMap.newKeySet();
+
+    private volatile Reader[] readers = new Reader[0];
+
+    TopicRing(final int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Topic capacity must be a power of two");
+        }
+        this.mask = capacity - 1;
+        this.facts = new Object[capacity];
+        this.written = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            written.set(slot, -1L);
+        }
+    }
+
+    void publish(final Object fact) {
+        final long sequence = claimed.getAndIncrement();
+
+        //Once a sequence is claimed it must be written or readers would wait for it forever, so this waits on
+        //through interrupts, leaving the thread interrupted
+        boolean interrupted = false;
+        int waits = 0;
+        while (sequence - facts.length >= slowestReader()) {
+            if (waits < SPINS + YIELDS) {
+                waits = pause(waits);
+            } else {
+                awaitReaders(sequence);
+            }
+            interrupted |= Thread.interrupted();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        //A volatile write, so that it cannot be reordered with reading whether any readers are waiting for it
+        final int slot = (int) sequence & mask;
+        facts[slot] = fact;
+        written.set(slot, sequence);
+        if (waitingReaders.get() > 0) {
+            wakeReaders();
+        }
+    }
+
+    /**
+     * @return a reader of facts published from now on, which holds back publishers until it is closed
+     */
+    Reader newReader() {
+        final Reader reader = new Reader(claimed.get());
+        addReader(reader);
+
+        //Any publisher that claims a sequence from here on sees this reader, so it is safe to start reading there
+        reader.next = claimed.get();
+        return reader;
+    }
+
+    private long slowestReader() {
+        long slowest = Long.MAX_VALUE;
+        for (final Reader reader : readers) {
+            slowest = Math.min(slowest, reader.next);
+        }
+        return slowest;
+    }
+
+    private synchronized void addReader(final Reader reader) {
+        final Reader[] added = Arrays.copyOf(readers, readers.length + 1);
+        added[readers.length] = reader;
+        readers = added;
+    }
+
+    private synchronized void removeReader(final Reader reader) {
+        final Reader[] current = readers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == reader) {
+                final Reader[] removed = new Reader[current.length - 1];
+                System.arraycopy(current, 0, removed, 0, i);
+                System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+                readers = removed;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Spins, then yields, so waiting is quick when facts are flowing. Waiters park once they have paused
+     * {@code SPINS + YIELDS} times.
+     */
+    private static int pause(final int waits) {
+        if (waits >= SPINS) {
+            Thread.yield();
+        }
+        return waits + 1;
+    }
+
+    /**
+     * Parks until a reader reads a fact or closes, unless one already has. Counting the publisher as waiting before
+     * looking again means a reader moving on from here sees it waiting, and wakes it.
+     */
+    private void awaitReaders(final long sequence) {
+        final Thread publisher = Thread.currentThread();
+        parkedPublishers.add(publisher);
+        waitingPublishers.incrementAndGet();
+        try {
+            if (sequence - facts.length >= slowestReader()) {
+                LockSupport.park(this);
+            }
+        } finally {
+            waitingPublishers.decrementAndGet();
+            parkedPublishers.remove(publisher);
+        }
+    }
+
+    private void wakeReaders() {
+        for (final Reader reader : readers) {
+            final Thread waiting = reader.waiting;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+    }
+
+    private void wakePublishers() {
+        if (waitingPublishers.get() > 0) {
+            for (final Thread publisher : parkedPublishers) {
+                LockSupport.unpark(publisher);
+            }
+        }
+    }
+
+    final class Reader implements AutoCloseable {
+
+        private volatile long next;
+        private volatile boolean closed;
+        private volatile Thread waiting;
+
+        private Reader(final long next) {
+            this.next = next;
+        }
+
+        Object next() {
+            if (closed) {
+                throw new IllegalStateException("Cannot read facts after the reader has been closed");
+            }
+
+            final long sequence = next;
+            final int slot = (int) sequence & mask;
+
+            int waits = 0;
+            while (written.get(slot) != sequence) {
+                if (waits < SPINS + YIELDS) {
+                    waits = pause(waits);
+                } else {
+                    awaitFact(slot, sequence);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new ComboInterruptedException(new InterruptedException());
+                }
+            }
+
+            final Object fact = facts[slot];
+            next = sequence + 1;
+            wakePublishers();
+            return fact;
+        }
+
+        @Override public void close() {
+            closed = true;
+            removeReader(this);
+            wakePublishers();
+        }
+
+        /**
+         * Parks until a publisher writes a fact, unless the fact wanted was written while getting ready to.
+         */
+        private void awaitFact(final int slot, final long sequence) {
+            waiting = Thread.currentThread();
+            waitingReaders.incrementAndGet();
+            try {
+                if (written.get(slot) != sequence) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                waitingReaders.decrementAndGet();
+                waiting = null;
+            }
+        }
+    }
+}
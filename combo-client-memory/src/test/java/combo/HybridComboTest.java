@@ -0,0 +1,71 @@
+package combo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static combo.HybridCombo.hybridCombo;
+import static combo.HybridCombo.mirroredHybridCombo;
+import static combo.InMemoryCombo.inMemoryCombo;
+import static java.util.Collections.singleton;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public final class HybridComboTest {
+
+    private final RecordingCombo remote = new RecordingCombo();
+
+    @Test public void keepLocalTopicsInProcess() {
+        //Given
+        final HybridCombo combo = hybridCombo(inMemoryCombo(), remote, singleton("local"));
+        final Stream<String> facts = combo.facts("local", String.class);
+
+        //When
+        combo.publishFact("local", "fact");
+
+        //Then
+        assertThat(facts.findFirst().get(), is("fact"));
+        assertThat(remote.published, is(empty()));
+    }
+
+    @Test public void sendOtherTopicsToRemoteCombo() {
+        //Given
+        final HybridCombo combo = hybridCombo(inMemoryCombo(), remote, singleton("local"));
+
+        //When
+        combo.publishFact("remote", "fact");
+
+        //Then
+        assertThat(remote.published, contains("remote:fact"));
+    }
+
+    @Test public void mirrorLocalTopicsToRemoteCombo() {
+        //Given
+        final HybridCombo combo = mirroredHybridCombo(inMemoryCombo(), remote, singleton("local"));
+        final Stream<String> facts = combo.facts("local", String.class);
+
+        //When
+        combo.publishFact("local", "fact");
+
+        //Then
+        assertThat(facts.findFirst().get(), is("fact"));
+        assertThat(remote.published, contains("local:fact"));
+    }
+
+    private static final class RecordingCombo implements Combo {
+
+        private final List<String> published = new ArrayList<>();
+
+        @Override public <T> Stream<T> facts(final String topicName, final Class<? extends T> classOfT) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public <T> void publishFact(final String topicName, final T fact) {
+            published.add(topicName + ":" + fact);
+        }
+    }
+}
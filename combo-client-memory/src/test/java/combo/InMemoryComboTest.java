@@ -0,0 +1,144 @@
+package combo;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static combo.InMemoryCombo.inMemoryCombo;
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public final class InMemoryComboTest {
+
+    @Test public void consumeFactsPublishedAfterSubscribingInOrder() {
+        //Given
+        final InMemoryCombo combo = inMemoryCombo();
+        combo.publishFact("topic", "before subscribing");
+
+        //When
+        try (final Stream<String> facts = combo.facts("topic", String.class)) {
+            combo.publishFact("topic", "fact 1");
+            combo.publishFact("topic", "fact 2");
+            combo.publishFact("topic", "fact 3");
+
+            //Then
+            assertThat(facts.limit(3).collect(toList()), contains("fact 1", "fact 2", "fact 3"));
+        }
+    }
+
+    @Test public void everyStreamSeesEveryFact() {
+        //Given
+        final InMemoryCombo combo = inMemoryCombo(4);
+        final Stream<String> first = combo.facts("topic", String.class);
+        final Stream<String> second = combo.facts("topic", String.class);
+
+        //When
+        combo.publishFact("topic", "fact 1");
+        combo.publishFact("topic", "fact 2");
+
+        //Then
+        assertThat(first.limit(2).collect(toList()), contains("fact 1", "fact 2"));
+        assertThat(second.limit(2).collect(toList()), contains("fact 1", "fact 2"));
+    }
+
+    @Test public void passFactsByReference() {
+        //Given
+        final InMemoryCombo combo = inMemoryCombo();
+        final Stream<Object> facts = combo.facts("topic", Object.class);
+        final Object fact = new Object();
+
+        //When
+        combo.publishFact("topic", fact);
+
+        //Then
+        assertThat(facts.findFirst().get(), is(sameInstance(fact)));
+    }
+
+    @Test public void streamsWaitingOnAQuietTopicParkUntilAFactIsPublished() throws Exception {
+        //Given
+        final InMemoryCombo combo = inMemoryCombo();
+        final Stream<String> facts = combo.facts("topic", String.class);
+        final Thread[] reader = new Thread[1];
+        final CompletableFuture<String> consumed = CompletableFuture.supplyAsync(() -> {
+            reader[0] = Thread.currentThread();
+            return facts.findFirst().get();
+        });
+
+        //When
+        Thread.sleep(100);
+        final Thread.State waiting = reader[0].getState();
+        combo.publishFact("topic", "fact");
+
+        //Then
+        assertThat(waiting, is(Thread.State.WAITING));
+        assertThat(consumed.get(5, SECONDS), is("fact"));
+    }
+
+    @Test public void slowStreamsHoldBackPublishing() throws Exception {
+        //Given
+        final InMemoryCombo combo = inMemoryCombo(2);
+        final Stream<String> facts = combo.facts("topic", String.class);
+        combo.publishFact("topic", "fact 1");
+        combo.publishFact("topic", "fact 2");
+
+        //When
+        final CompletableFuture<Void> published = runAsync(() -> combo.publishFact("topic", "fact 3"));
+        Thread.sleep(50);
+        final boolean publishedWhileFull = published.isDone();
+        final List<String> consumed = facts.limit(3).collect(toList());
+
+        //Then
+        assertThat(publishedWhileFull, is(false));
+        published.get(5, SECONDS);
+        assertThat(consumed, contains("fact 1", "fact 2", "fact 3"));
+    }
+
+    @Test public void closedStreamsNoLongerHoldBackPublishing() throws Exception {
+        //Given
+        final InMemoryCombo combo = inMemoryCombo(2);
+        final Stream<String> facts = combo.facts("topic", String.class);
+
+        //When
+        facts.close();
+
+        //Then
+        runAsync(() -> {
+            for (int i = 0; i < 10; i++) {
+                combo.publishFact("topic", "fact " + i);
+            }
+        }).get(500, MILLISECONDS);
+    }
+
+    @Test public void manyPublishersAndConsumersSeeEveryFact() throws Exception {
+        //Given
+        final InMemoryCombo combo = inMemoryCombo(8);
+        final Stream<Integer> first = combo.facts("topic", Integer.class);
+        final Stream<Integer> second = combo.facts("topic", Integer.class);
+
+        //When
+        final CompletableFuture<Long> firstTotal = CompletableFuture.supplyAsync(() -> first.limit(40_000).mapToLong(fact -> fact).sum());
+        final CompletableFuture<Long> secondTotal = CompletableFuture.supplyAsync(() -> second.limit(40_000).mapToLong(fact -> fact).sum());
+        CompletableFuture.allOf(
+                runAsync(() -> publishRange(combo, 0, 20_000)),
+                runAsync(() -> publishRange(combo, 20_000, 40_000))).get(10, SECONDS);
+
+        //Then
+        final long expectedTotal = 39_999L * 40_000L / 2L;
+        assertThat(firstTotal.get(10, SECONDS), is(expectedTotal));
+        assertThat(secondTotal.get(10, SECONDS), is(expectedTotal));
+    }
+
+    private static void publishRange(final Combo combo, final int from, final int to) {
+        for (int fact = from; fact < to; fact++) {
+            combo.publishFact("topic", fact);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package combo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.net.URI.create;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A combo server that runs inside a test, for exercising clients at realistic rates without a real server.
+ * <p>
+ * It behaves as a combo server does: a subscription sees the facts published to its topic after it was created,
+ * each fact once, and a poll of a subscription with no facts waiting responds with no content. Facts are kept as
+ * the bytes they were published as, and handed back with the content type they were published with.
+ * <p>
+ * Each subscription keeps at most {@code maxWaitingFacts} facts, dropping the oldest to make room, and a subscription
+ * not polled for {@code subscriptionTimeoutMillis} is removed, polls of it responding with not found. Subscriptions
+ * abandoned by clients therefore neither hold on to facts nor slow publishing down for long, so the server can run
+ * for as long as a soak test does.
+ * <p>
+ * Latency and errors can be injected to see how clients cope with a slow or failing server. For benchmarks of the
+ * client alone, the server can instead answer every poll with a standing fact and throw published facts away.
+ * <p>
+ * Loading this class sets the system property {@code sun.net.httpserver.nodelay} to {@code true}, unless it is
+ * already set, turning off Nagle's algorithm for every JDK HTTP server in the JVM. Set it to {@code false} beforehand
+ * to leave Nagle's algorithm on. The JDK reads it once, so it only takes effect if no JDK HTTP server has been
+ * started before.
+ */
+public final class ComboTestServer implements AutoCloseable {
+
+    private static final Pattern SUBSCRIPTIONS = Pattern.compile("/topics/([^/]+)/subscriptions");
+    private static final Pattern NEXT_FACT = Pattern.compile("/topics/([^/]+)/subscriptions/([^/]+)/next");
+    private static final Pattern FACTS = Pattern.compile("/topics/([^/]+)/facts");
+
+    static {
+        //Response headers and bodies are written separately, which without this waits on delayed acks
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long minLatencyMillis;
+    private final long maxLatencyMillis;
+    private final double errorRate;
+    private final int maxWaitingFacts;
+    private final long subscriptionTimeoutNanos;
+    private final Fact standingFact;
+
+    private final ConcurrentMap<String, Topic> topics = new ConcurrentHashMap<>();
+    private final AtomicLong subscriptionIds = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    private ComboTestServer(final int port,
+                            final int threads,
+                            final long minLatencyMillis,
+                            final long maxLatencyMillis,
+                            final double errorRate,
+                            final int maxWaitingFacts,
+                            final long subscriptionTimeoutMillis,
+                            final Fact standingFact) throws IOException {
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.errorRate = errorRate;
+        this.maxWaitingFacts = maxWaitingFacts;
+        this.subscriptionTimeoutNanos = MILLISECONDS.toNanos(subscriptionTimeoutMillis);
+        this.standingFact = standingFact;
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "combo-test-server-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.server.createContext("/topics", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public static ComboTestServer comboTestServer() throws IOException {
+        return comboTestServerBuilder().build();
+    }
+
+    public static Builder comboTestServerBuilder() {
+        return new Builder();
+    }
+
+    public URI baseUri() {
+        return create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    /**
+     * @return the number of facts published to the topic so far
+     */
+    public long publishedFacts(final String topicName) {
+        final Topic topic = topics.get(topicName);
+        return topic == null ? 0L : topic.published.get();
+    }
+
+    /**
+     * @return the number of facts published to the topic that are still waiting to be polled, across all of its
+     * subscriptions
+     */
+    public long waitingFacts(final String topicName) {
+        final Topic topic = topics.get(topicName);
+        return topic == null ? 0L : topic.subscriptions.values().stream().mapToLong(subscription -> subscription.facts.size()).sum();
+    }
+
+    /**
+     * @return the number of facts dropped from the topic's subscriptions because they were full
+     */
+    public long droppedFacts(final String topicName) {
+        final Topic topic = topics.get(topicName);
+        return topic == null ? 0L : topic.dropped.get();
+    }
+
+    /**
+     * @return the number of subscriptions to the topic, not counting those removed for not being polled
+     */
+    public int subscriptions(final String topicName) {
+        final Topic topic = topics.get(topicName);
+        return topic == null ? 0 : topic.subscriptions.size();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    @Override public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            final byte[] requestBody = readFully(exchange.getRequestBody());
+
+            injectLatency();
+            if (errorRate > 0.0d && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                respond(exchange, 503, null, null);
+                return;
+            }
+
+            route(exchange, requestBody);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, null, null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(final HttpExchange exchange, final byte[] requestBody) throws IOException {
+        final String method = exchange.getRequestMethod();
+        final String path = exchange.getRequestURI().getPath();
+
+        Matcher matcher;
+        if ("POST".equals(method) && (matcher = SUBSCRIPTIONS.matcher(path)).matches()) {
+            final String subscriptionId = Long.toString(subscriptionIds.incrementAndGet());
+            topic(matcher.group(1)).subscriptions.put(subscriptionId, new Subscription());
+            respond(exchange, 200, "application/json", ("{\"subscription_id\":\"" + subscriptionId + "\"}").getBytes(UTF_8));
+        } else if ("GET".equals(method) && (matcher = NEXT_FACT.matcher(path)).matches()) {
+            final Subscription subscription = topic(matcher.group(1)).subscriptions.get(matcher.group(2));
+            if (subscription == null) {
+                respond(exchange, 404, null, null);
+                return;
+            }
+            final Fact fact = standingFact != null ? standingFact : subscription.poll();
+            if (fact == null) {
+                respond(exchange, 204, null, null);
+            } else {
+                respond(exchange, 200, fact.contentType, fact.body);
+            }
+        } else if ("POST".equals(method) && (matcher = FACTS.matcher(path)).matches()) {
+            topic(matcher.group(1)).publish(new Fact(exchange.getRequestHeaders().getFirst("Content-Type"), requestBody));
+            respond(exchange, 202, null, null);
+        } else {
+            respond(exchange, 404, null, null);
+        }
+    }
+
+    private Topic topic(final String topicName) {
+        return topics.computeIfAbsent(topicName, name -> new Topic());
+    }
+
+    private void injectLatency() throws InterruptedException {
+        if (maxLatencyMillis <= 0L) {
+            return;
+        }
+        Thread.sleep(minLatencyMillis == maxLatencyMillis
+                ? minLatencyMillis
+                : ThreadLocalRandom.current().nextLong(minLatencyMillis, maxLatencyMillis + 1));
+    }
+
+    private static byte[] readFully(final InputStream body) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void respond(final HttpExchange exchange,
+                                final int statusCode,
+                                final String contentType,
+                                final byte[] body) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+        }
+        exchange.sendResponseHeaders(statusCode, body == null ? -1 : body.length);
+        if (body != null) {
+            try (final OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        }
+    }
+
+    private final class Topic {
+
+        private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+
+        private void publish(final Fact fact) {
+            published.incrementAndGet();
+            if (standingFact != null) {
+                return;
+            }
+
+            final long now = System.nanoTime();
+            subscriptions.values().removeIf(subscription -> subscription.expired(now));
+            subscriptions.values().forEach(subscription -> subscription.offer(fact, dropped));
+        }
+    }
+
+    private final class Subscription {
+
+        private final BlockingQueue<Fact> facts = new LinkedBlockingQueue<>(maxWaitingFacts);
+        private volatile long lastPolled = System.nanoTime();
+
+        private Fact poll() {
+            lastPolled = System.nanoTime();
+            return facts.poll();
+        }
+
+        private void offer(final Fact fact, final AtomicLong dropped) {
+            while (!facts.offer(fact)) {
+                if (facts.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+
+        private boolean expired(final long now) {
+            return now - lastPolled > subscriptionTimeoutNanos;
+        }
+    }
+
+    private static final class Fact {
+
+        private final String contentType;
+        private final byte[] body;
+
+        private Fact(final String contentType, final byte[] body) {
+            this.contentType = contentType != null ? contentType : "application/json";
+            this.body = body;
+        }
+    }
+
+    public static final class Builder {
+
+        private int port;
+        private int threads = 16;
+        private long minLatencyMillis;
+        private long maxLatencyMillis;
+        private double errorRate;
+        private int maxWaitingFacts = 10_000;
+        private long subscriptionTimeoutMillis = 60_000L;
+        private Fact standingFact;
+
+        private Builder() {
+        }
+
+        /**
+         * Listen on the given port rather than any free one.
+         */
+        public Builder withPort(final int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * The number of requests handled at once, which includes requests sleeping for injected latency.
+         */
+        public Builder withThreads(final int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("A server needs at least one thread");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Delay every response by a random time between the given bounds.
+         */
+        public Builder withLatency(final long minLatencyMillis, final long maxLatencyMillis) {
+            if (minLatencyMillis < 0L || maxLatencyMillis < minLatencyMillis) {
+                throw new IllegalArgumentException("Latency must be between a non-negative minimum and a maximum no lower than it");
+            }
+            this.minLatencyMillis = minLatencyMillis;
+            this.maxLatencyMillis = maxLatencyMillis;
+            return this;
+        }
+
+        /**
+         * Respond to the given fraction of requests, chosen at random, with 503 Service Unavailable instead of
+         * handling them.
+         */
+        public Builder withErrorRate(final double errorRate) {
+            if (errorRate < 0.0d || errorRate > 1.0d) {
+                throw new IllegalArgumentException("Error rate must be between 0 and 1");
+            }
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * The most facts a subscription keeps waiting to be polled, the oldest are dropped to make room for more.
+         * Defaults to 10,000.
+         */
+        public Builder withMaxWaitingFacts(final int maxWaitingFacts) {
+            if (maxWaitingFacts < 1) {
+                throw new IllegalArgumentException("Subscriptions must be able to keep at least one fact");
+            }
+            this.maxWaitingFacts = maxWaitingFacts;
+            return this;
+        }
+
+        /**
+         * Remove subscriptions that have not been polled for this long, as a client that has gone away will never
+         * poll them again. Defaults to 60s.
+         */
+        public Builder withSubscriptionTimeout(final long subscriptionTimeoutMillis) {
+            if (subscriptionTimeoutMillis < 1L) {
+                throw new IllegalArgumentException("Subscriptions must be kept for at least 1ms");
+            }
+            this.subscriptionTimeoutMillis = subscriptionTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Answer every poll of every subscription with the given json fact, and throw published facts away, so that
+         * benchmarks measure the client rather than the server.
+         */
+        public Builder withStandingFact(final String fact) {
+            if (fact == null) {
+                throw new IllegalArgumentException("Cannot answer polls with a null fact");
+            }
+            this.standingFact = new Fact("application/json", fact.getBytes(UTF_8));
+            return this;
+        }
+
+        public ComboTestServer build() throws IOException {
+            return new ComboTestServer(port, threads, minLatencyMillis, maxLatencyMillis, errorRate,
+                    maxWaitingFacts, subscriptionTimeoutMillis, standingFact);
+        }
+    }
+}
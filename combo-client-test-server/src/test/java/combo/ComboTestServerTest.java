@@ -0,0 +1,115 @@
+package combo;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.stream.Stream;
+
+import static combo.ComboTestServer.comboTestServer;
+import static combo.ComboTestServer.comboTestServerBuilder;
+import static combo.HttpCombo.httpComboBuilder;
+import static combo.PollStrategy.noBackoff;
+import static combo.RestTemplateHttpClient.restTemplateHttpClient;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+public final class ComboTestServerTest {
+
+    private ComboTestServer server;
+
+    @After public void closeServer() {
+        server.close();
+    }
+
+    @Test public void everySubscriptionSeesFactsPublishedAfterItWasCreated() throws Exception {
+        //Given
+        server = comboTestServer();
+        final Combo combo = combo(server);
+        combo.publishFact("topic", "before subscribing");
+
+        //And
+        final Stream<String> first = combo.facts("topic", String.class);
+        final Stream<String> second = combo.facts("topic", String.class);
+
+        //When
+        combo.publishFact("topic", "fact 1");
+        combo.publishFact("topic", "fact 2");
+
+        //Then
+        assertThat(first.limit(2).collect(toList()), contains("fact 1", "fact 2"));
+        assertThat(second.limit(2).collect(toList()), contains("fact 1", "fact 2"));
+        assertThat(server.publishedFacts("topic"), is(3L));
+        assertThat(server.waitingFacts("topic"), is(0L));
+    }
+
+    @Test public void dropTheOldestFactsWhenASubscriptionIsFull() throws Exception {
+        //Given
+        server = comboTestServerBuilder().withMaxWaitingFacts(2).build();
+        final Combo combo = combo(server);
+        final Stream<String> facts = combo.facts("topic", String.class);
+
+        //When
+        combo.publishFact("topic", "fact 1");
+        combo.publishFact("topic", "fact 2");
+        combo.publishFact("topic", "fact 3");
+
+        //Then
+        assertThat(server.waitingFacts("topic"), is(2L));
+        assertThat(server.droppedFacts("topic"), is(1L));
+        assertThat(facts.limit(2).collect(toList()), contains("fact 2", "fact 3"));
+    }
+
+    @Test public void removeSubscriptionsThatAreNotPolled() throws Exception {
+        //Given
+        server = comboTestServerBuilder().withSubscriptionTimeout(1L).build();
+        final Combo combo = combo(server);
+        combo.facts("topic", String.class);
+        assertThat(server.subscriptions("topic"), is(1));
+        Thread.sleep(10L);
+
+        //When
+        combo.publishFact("topic", "fact");
+
+        //Then
+        assertThat(server.subscriptions("topic"), is(0));
+        assertThat(server.waitingFacts("topic"), is(0L));
+    }
+
+    @Test public void injectLatency() throws Exception {
+        //Given
+        server = comboTestServerBuilder().withLatency(50L, 50L).build();
+        final Combo combo = combo(server);
+
+        //When
+        final long start = System.nanoTime();
+        combo.publishFact("topic", "fact");
+        final long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+
+        //Then
+        assertThat(elapsedMillis, is(greaterThanOrEqualTo(50L)));
+    }
+
+    @Test(expected = HttpServerErrorException.class)
+    public void injectErrors() throws Exception {
+        //Given
+        server = comboTestServerBuilder().withErrorRate(1.0d).build();
+        final Combo combo = combo(server);
+
+        //When
+        try {
+            combo.publishFact("topic", "fact");
+        } finally {
+            //Then
+            assertThat(server.injectedErrors(), is(1L));
+            assertThat(server.publishedFacts("topic"), is(0L));
+        }
+    }
+
+    private static Combo combo(final ComboTestServer server) {
+        return httpComboBuilder(restTemplateHttpClient(server.baseUri())).withPollStrategy(noBackoff()).build();
+    }
+}